@@ -0,0 +1,138 @@
+package com.prach.mashup.gpstest.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.prach.mashup.gpstest.CoordinateFormat;
+import com.prach.mashup.gpstest.CoordinateParser;
+import com.prach.mashup.gpstest.Coordinates;
+
+/**
+ * Conversion between decimal degrees and the string syntaxes, in both
+ * directions, plus the degree display used by the activity. Reported per
+ * coordinate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConvertBenchmark
+{
+	static final int POINTS = 256;
+
+	private double[] values;
+	private String[] ddmmss;
+	private String[] ddmm;
+	private byte[] ddmmssLines;
+	private char[] buf;
+	private double[] parsed;
+
+	@Setup
+	public void setup()
+	{
+		values = Points.longitudes(POINTS, 2);
+		ddmmss = new String[POINTS];
+		ddmm = new String[POINTS];
+		StringBuilder lines = new StringBuilder();
+		for (int i = 0; i < POINTS; i++)
+		{
+			ddmmss[i] = Coordinates.convert(values[i], Coordinates.DD_MM_SS);
+			ddmm[i] = Coordinates.convert(values[i], Coordinates.DD_MM);
+			lines.append(ddmmss[i]).append('\n');
+		}
+		ddmmssLines = lines.toString().getBytes();
+		buf = new char[CoordinateFormat.MAX_LENGTH];
+		parsed = new double[POINTS];
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public void convertToDdMmSs (Blackhole bh)
+	{
+		for (int i = 0; i < POINTS; i++)
+			bh.consume(Coordinates.convert(values[i], Coordinates.DD_MM_SS));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public void convertToDdMm (Blackhole bh)
+	{
+		for (int i = 0; i < POINTS; i++)
+			bh.consume(Coordinates.convert(values[i], Coordinates.DD_MM));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public void formatIntoBuffer (Blackhole bh)
+	{
+		for (int i = 0; i < POINTS; i++)
+		{
+			bh.consume(CoordinateFormat.format(values[i], Coordinates.DD_MM_SS, buf, 0));
+			bh.consume(buf);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public void convertFromDdMmSs (Blackhole bh)
+	{
+		for (int i = 0; i < POINTS; i++)
+			bh.consume(Coordinates.convert(ddmmss[i]));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public void convertFromDdMm (Blackhole bh)
+	{
+		for (int i = 0; i < POINTS; i++)
+			bh.consume(Coordinates.convert(ddmm[i]));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public double[] parseAllBytes()
+	{
+		CoordinateParser.parseAll(ddmmssLines, 0, ddmmssLines.length, '\n', parsed, 0);
+		return parsed;
+	}
+
+	/**
+	 * The split/substring formatting GPSLocatorTest.toDegree() used to do on
+	 * the result of convert(double, int).
+	 */
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public void toDegreeStrings (Blackhole bh)
+	{
+		for (int i = 0; i < POINTS; i++)
+		{
+			String[] temp = Coordinates.convert(values[i], Coordinates.DD_MM_SS).split(":");
+			bh.consume(temp[0] + "\u00b0 " + temp[1] + "\' " + temp[2].substring(0, 2) + "\"");
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public void toDegreeBuffer (Blackhole bh)
+	{
+		for (int i = 0; i < POINTS; i++)
+		{
+			bh.consume(CoordinateFormat.formatDisplay(values[i], buf, 0));
+			bh.consume(buf);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.prach.mashup.gpstest.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.prach.mashup.gpstest.Coordinates;
+import com.prach.mashup.gpstest.Float11;
+import com.prach.mashup.gpstest.GeodeticOrigin;
+
+/**
+ * Distance from one origin to many destinations. Every benchmark handles
+ * POINTS destinations per invocation and reports the cost per destination.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DistanceBenchmark
+{
+	static final int POINTS = 1024;
+
+	private double[] lats;
+	private double[] lons;
+	private Coordinates origin;
+	private Coordinates[] destinations;
+	private GeodeticOrigin precise;
+	private GeodeticOrigin fast;
+	private float[] out;
+
+	@Setup
+	public void setup()
+	{
+		lats = Points.latitudes(POINTS, 1);
+		lons = Points.longitudes(POINTS, 1);
+		origin = new Coordinates(35.681, 139.767, Float.NaN);
+		destinations = new Coordinates[POINTS];
+		for (int i = 0; i < POINTS; i++)
+			destinations[i] = new Coordinates(lats[i], lons[i], Float.NaN);
+		precise = new GeodeticOrigin(origin.getLatitude(), origin.getLongitude(), GeodeticOrigin.PRECISE);
+		fast = new GeodeticOrigin(origin.getLatitude(), origin.getLongitude(), GeodeticOrigin.FAST);
+		out = new float[POINTS];
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public void coordinatesDistance (Blackhole bh)
+	{
+		for (int i = 0; i < POINTS; i++)
+			bh.consume(origin.distance(destinations[i]));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public float[] haversineBatch()
+	{
+		Coordinates.distances(origin.getLatitude(), origin.getLongitude(), lats, lons, 0, POINTS, out, 0);
+		return out;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public float[] haversineBatchFast()
+	{
+		Coordinates.distances(origin.getLatitude(), origin.getLongitude(), lats, lons, 0, POINTS, out, 0,
+				Float11.TIER_FAST);
+		return out;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public float[] vincentyPrecise()
+	{
+		precise.distances(lats, lons, 0, POINTS, out, 0);
+		return out;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public float[] vincentyFast()
+	{
+		fast.distances(lats, lons, 0, POINTS, out, 0);
+		return out;
+	}
+}
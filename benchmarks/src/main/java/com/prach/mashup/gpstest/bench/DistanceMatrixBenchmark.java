@@ -0,0 +1,91 @@
+package com.prach.mashup.gpstest.bench;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.prach.mashup.gpstest.Coordinates;
+import com.prach.mashup.gpstest.DistanceMatrix;
+
+/**
+ * A square distance matrix between random points, computed with 1 to 8
+ * threads, against one Coordinates.distances() call per row. With threads =
+ * 1 the sequential overload is used.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DistanceMatrixBenchmark
+{
+	@Param({"1000", "4000"})
+	public int points;
+
+	@Param({"1", "2", "4", "8"})
+	public int threads;
+
+	private double[] lats;
+	private double[] lons;
+	private double[] doubles;
+	private float[] floats;
+	private ExecutorService executor;
+
+	@Setup
+	public void setup()
+	{
+		lats = Points.latitudes(points, 8);
+		lons = Points.longitudes(points, 8);
+		doubles = new double[points * points];
+		floats = new float[points * points];
+		executor = Executors.newFixedThreadPool(threads);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		executor.shutdown();
+	}
+
+	@Benchmark
+	public double[] matrix() throws InterruptedException
+	{
+		if (threads == 1)
+			DistanceMatrix.compute(lats, lons, 0, points, lats, lons, 0, points, doubles, 0);
+		else
+			DistanceMatrix.compute(lats, lons, 0, points, lats, lons, 0, points, doubles, 0, executor);
+		return doubles;
+	}
+
+	@Benchmark
+	public float[] matrixFloat() throws InterruptedException
+	{
+		if (threads == 1)
+			DistanceMatrix.compute(lats, lons, 0, points, lats, lons, 0, points, floats, 0);
+		else
+			DistanceMatrix.compute(lats, lons, 0, points, lats, lons, 0, points, floats, 0, executor);
+		return floats;
+	}
+
+	@Benchmark
+	public double[] rows()
+	{
+		for (int i = 0; i < points; i++)
+			Coordinates.distances(lats[i], lons[i], lats, lons, 0, points, doubles, i * points);
+		return doubles;
+	}
+}
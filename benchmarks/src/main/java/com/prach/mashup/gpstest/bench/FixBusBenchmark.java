@@ -0,0 +1,167 @@
+package com.prach.mashup.gpstest.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.prach.mashup.gpstest.FixBus;
+import com.prach.mashup.gpstest.FixListener;
+
+/**
+ * Fixes fanned out to 1 to 8 consumers: through a FixBus to consumer
+ * threads with either wait strategy, against calling every consumer in turn
+ * on the producing thread. Reported per published fix. The counters give the
+ * fixes delivered to and dropped by all consumers; with fewer CPUs than
+ * threads the consumers cannot keep up and drop the oldest fixes instead of
+ * holding back the producer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FixBusBenchmark
+{
+	static final int FIXES = 100000;
+	static final int CAPACITY = 1024;
+	/** Work per fix and consumer, about what a geofence or statistics update takes. */
+	static final int WORK = 16;
+
+	@Param({ "1", "2", "4", "8" })
+	public int consumers;
+
+	private double[] lats;
+	private double[] lons;
+
+	@Setup
+	public void setup()
+	{
+		lats = new double[FIXES];
+		lons = new double[FIXES];
+		Points.track(FIXES, 21, lats, lons);
+	}
+
+	/**
+	 * Fixes delivered to and dropped by the consumers.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Delivery
+	{
+		public long delivered;
+		public long dropped;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FIXES)
+	public double direct()
+	{
+		Work[] work = new Work[consumers];
+		for (int i = 0; i < consumers; i++)
+			work[i] = new Work();
+		for (int n = 0; n < FIXES; n++)
+		{
+			for (int i = 0; i < consumers; i++)
+				work[i].onFix(n, lats[n], lons[n], Double.NaN, Float.NaN, Float.NaN);
+		}
+		double sum = 0;
+		for (int i = 0; i < consumers; i++)
+			sum += work[i].sum;
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FIXES)
+	public double busBlock (Delivery delivery) throws InterruptedException
+	{
+		return bus(FixBus.BLOCK, delivery);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FIXES)
+	public double busYield (Delivery delivery) throws InterruptedException
+	{
+		return bus(FixBus.YIELD, delivery);
+	}
+
+	private double bus (int waitStrategy, Delivery delivery) throws InterruptedException
+	{
+		FixBus bus = new FixBus(CAPACITY);
+		ConsumerThread[] threads = new ConsumerThread[consumers];
+		for (int i = 0; i < consumers; i++)
+		{
+			threads[i] = new ConsumerThread(bus.subscribe(waitStrategy));
+			threads[i].start();
+		}
+		for (int n = 0; n < FIXES; n++)
+			bus.publish(n, lats[n], lons[n], Double.NaN, Float.NaN, Float.NaN);
+		bus.close();
+		double sum = 0;
+		for (int i = 0; i < consumers; i++)
+		{
+			threads[i].join();
+			sum += threads[i].work.sum;
+			delivery.delivered += threads[i].work.count;
+			delivery.dropped += threads[i].consumer.getDropped();
+		}
+		return sum;
+	}
+
+	/**
+	 * Stands in for a consumer such as the geofences.
+	 */
+	static final class Work implements FixListener
+	{
+		double sum;
+		long count;
+
+		public void onFix (long time, double latitude, double longitude, double altitude, float accuracy,
+				float speed)
+		{
+			double s = 0;
+			for (int i = 0; i < WORK; i++)
+				s += Math.sin(latitude + i) * longitude;
+			sum += s;
+			count++;
+		}
+	}
+
+	static final class ConsumerThread extends Thread
+	{
+		final FixBus.Consumer consumer;
+		final Work work = new Work();
+
+		ConsumerThread (FixBus.Consumer consumer)
+		{
+			this.consumer = consumer;
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				while (consumer.take(work, 64) >= 0)
+				{
+				}
+			}
+			catch (InterruptedException e)
+			{
+				// end of the benchmark
+			}
+		}
+	}
+}
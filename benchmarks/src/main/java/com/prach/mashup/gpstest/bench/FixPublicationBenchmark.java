@@ -0,0 +1,129 @@
+package com.prach.mashup.gpstest.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.prach.mashup.gpstest.Fix;
+import com.prach.mashup.gpstest.FixSeqlock;
+
+/**
+ * One thread publishing fixes while three read them: as two plain fields,
+ * as an immutable Fix through a volatile reference and through FixSeqlock.
+ * Every published fix has longitude = -latitude, so a reader that sees
+ * anything else has combined two fixes; the torn counter reports how often.
+ * It must stay 0 for the Fix and the seqlock.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class FixPublicationBenchmark
+{
+	private double latitude;
+	private double longitude;
+	private volatile Fix fix;
+	private final FixSeqlock seqlock = new FixSeqlock();
+
+	private long next;
+
+	@Setup
+	public void setup()
+	{
+		fix = new Fix(0, 0, -0.0, Double.NaN, Float.NaN, "gps");
+		seqlock.publish(0, 0, -0.0, Double.NaN, Float.NaN, "gps");
+	}
+
+	/**
+	 * Counts the reads that combined two fixes.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Torn
+	{
+		public long torn;
+		final double[] values = new double[4];
+	}
+
+	private double nextValue()
+	{
+		next++;
+		return (next & 0xfffff) * 1e-4;
+	}
+
+	@Benchmark
+	@Group("plain")
+	@GroupThreads(1)
+	public void plainWrite()
+	{
+		double v = nextValue();
+		latitude = v;
+		longitude = -v;
+	}
+
+	@Benchmark
+	@Group("plain")
+	@GroupThreads(3)
+	public double plainRead (Torn t)
+	{
+		double lat = latitude;
+		double lon = longitude;
+		if (lat != -lon)
+			t.torn++;
+		return lat;
+	}
+
+	@Benchmark
+	@Group("volatileFix")
+	@GroupThreads(1)
+	public void fixWrite()
+	{
+		double v = nextValue();
+		fix = new Fix(next, v, -v, Double.NaN, Float.NaN, "gps");
+	}
+
+	@Benchmark
+	@Group("volatileFix")
+	@GroupThreads(3)
+	public double fixRead (Torn t)
+	{
+		Fix f = fix;
+		if (f.getLatitude() != -f.getLongitude())
+			t.torn++;
+		return f.getLatitude();
+	}
+
+	@Benchmark
+	@Group("seqlock")
+	@GroupThreads(1)
+	public void seqlockWrite()
+	{
+		double v = nextValue();
+		seqlock.publish(next, v, -v, Double.NaN, Float.NaN, "gps");
+	}
+
+	@Benchmark
+	@Group("seqlock")
+	@GroupThreads(3)
+	public double seqlockRead (Torn t)
+	{
+		seqlock.read(t.values);
+		if (t.values[FixSeqlock.LATITUDE] != -t.values[FixSeqlock.LONGITUDE])
+			t.torn++;
+		return t.values[FixSeqlock.LATITUDE];
+	}
+}
@@ -0,0 +1,88 @@
+package com.prach.mashup.gpstest.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.prach.mashup.gpstest.Clock;
+import com.prach.mashup.gpstest.FixStreamer;
+import com.prach.mashup.gpstest.FixSubscriber;
+import com.prach.mashup.gpstest.LocationRegistrar;
+
+/**
+ * FixStreamer.onFix() per fix for a number of subscribers with mixed
+ * intervals, distances and batch sizes, on a walk with a fix per second.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FixStreamerBenchmark
+{
+	static final int FIXES = 100000;
+
+	@Param({"1", "16", "64"})
+	public int subscribers;
+
+	private FixStreamer streamer;
+	private double[] lats;
+	private double[] lons;
+	private int next;
+	private long time;
+	private int delivered;
+
+	@Setup
+	public void setup()
+	{
+		streamer = new FixStreamer(new LocationRegistrar()
+		{
+			public void requestUpdates (long minTime, float minDistance)
+			{
+			}
+
+			public void removeUpdates()
+			{
+			}
+		}, new Clock()
+		{
+			public long now()
+			{
+				return time;
+			}
+		});
+		FixSubscriber subscriber = new FixSubscriber()
+		{
+			public void onFixes (long[] times, double[] lats, double[] lons, int count)
+			{
+				delivered += count;
+			}
+		};
+		for (int i = 0; i < subscribers; i++)
+			streamer.subscribe("s" + i, subscriber, 1000L * (i % 5), 5 * (i % 3), 1 + i % 20, 30000);
+		lats = new double[FIXES];
+		lons = new double[FIXES];
+		Points.track(FIXES, 11, lats, lons);
+	}
+
+	@Benchmark
+	public int onFix()
+	{
+		int i = next;
+		next = i + 1 == FIXES ? 0 : i + 1;
+		time += 1000;
+		streamer.onFix(time, lats[i], lons[i]);
+		return delivered;
+	}
+}
@@ -0,0 +1,130 @@
+package com.prach.mashup.gpstest.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.prach.mashup.gpstest.Float11;
+
+/**
+ * Float11 functions against java.lang.Math and java.lang.StrictMath, per
+ * call. The impl parameter selects the implementation; Float11Fast runs the
+ * inverse trigonometric functions with Float11.TIER_FAST and is the same as
+ * Float11 otherwise.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Float11Benchmark
+{
+	static final int VALUES = 1024;
+
+	@Param({"Float11", "Float11Fast", "Math", "StrictMath"})
+	public String impl;
+
+	private int kind;
+	private int tier;
+	private double[] unit;
+	private double[] any;
+	private double[] positive;
+	private double[] exponents;
+
+	@Setup
+	public void setup()
+	{
+		kind = impl.startsWith("Float11") ? 0 : "Math".equals(impl) ? 1 : 2;
+		tier = "Float11Fast".equals(impl) ? Float11.TIER_FAST : Float11.TIER_PRECISE;
+		Random random = new Random(3);
+		unit = new double[VALUES];
+		any = new double[VALUES];
+		positive = new double[VALUES];
+		exponents = new double[VALUES];
+		for (int i = 0; i < VALUES; i++)
+		{
+			unit[i] = random.nextDouble() * 2 - 1;
+			any[i] = random.nextGaussian() * 10;
+			positive[i] = random.nextDouble() * 1000 + 1e-3;
+			exponents[i] = random.nextDouble() * 8 - 4;
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void atan (Blackhole bh)
+	{
+		for (int i = 0; i < VALUES; i++)
+			bh.consume(kind == 0 ? Float11.atan(any[i], tier) : kind == 1 ? Math.atan(any[i]) : StrictMath.atan(any[i]));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void asin (Blackhole bh)
+	{
+		for (int i = 0; i < VALUES; i++)
+			bh.consume(kind == 0 ? Float11.asin(unit[i], tier) : kind == 1 ? Math.asin(unit[i]) : StrictMath.asin(unit[i]));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void acos (Blackhole bh)
+	{
+		for (int i = 0; i < VALUES; i++)
+			bh.consume(kind == 0 ? Float11.acos(unit[i], tier) : kind == 1 ? Math.acos(unit[i]) : StrictMath.acos(unit[i]));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void exp (Blackhole bh)
+	{
+		for (int i = 0; i < VALUES; i++)
+			bh.consume(kind == 0 ? Float11.exp(any[i]) : kind == 1 ? Math.exp(any[i]) : StrictMath.exp(any[i]));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void log (Blackhole bh)
+	{
+		for (int i = 0; i < VALUES; i++)
+			bh.consume(kind == 0 ? Float11.log(positive[i]) : kind == 1 ? Math.log(positive[i]) : StrictMath.log(positive[i]));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void pow (Blackhole bh)
+	{
+		for (int i = 0; i < VALUES; i++)
+		{
+			double x = positive[i];
+			double y = exponents[i];
+			bh.consume(kind == 0 ? Float11.pow(x, y) : kind == 1 ? Math.pow(x, y) : StrictMath.pow(x, y));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void powInteger (Blackhole bh)
+	{
+		for (int i = 0; i < VALUES; i++)
+		{
+			double x = unit[i] + 1.5;
+			double y = (i & 63) - 16;
+			bh.consume(kind == 0 ? Float11.pow(x, y) : kind == 1 ? Math.pow(x, y) : StrictMath.pow(x, y));
+		}
+	}
+}
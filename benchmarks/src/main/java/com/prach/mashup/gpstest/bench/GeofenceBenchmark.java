@@ -0,0 +1,101 @@
+package com.prach.mashup.gpstest.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.prach.mashup.gpstest.GeofenceEngine;
+import com.prach.mashup.gpstest.GeofenceListener;
+
+/**
+ * GeofenceEngine.update() per fix, for fences of a few hundred meters spread
+ * over a city and a walk through them. A cell size of 180 degrees puts all
+ * fences into one cell, which leaves only the bounding box check.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GeofenceBenchmark
+{
+	static final int FIXES = 100000;
+
+	@Param({"10000"})
+	public int fences;
+
+	@Param({"0.01", "180"})
+	public double cellSize;
+
+	private GeofenceEngine engine;
+	private double[] lats;
+	private double[] lons;
+	private int next;
+	private long time;
+	private int transitions;
+
+	@Setup
+	public void setup()
+	{
+		engine = new GeofenceEngine(new GeofenceListener()
+		{
+			public void onTransition (int fence, int transition, long time)
+			{
+				transitions++;
+			}
+		}, cellSize, 60000);
+
+		// half circles, half polygons within 0.2 degrees of the walk's start
+		Random random = new Random(7);
+		double[] vertexLats = new double[8];
+		double[] vertexLons = new double[8];
+		for (int i = 0; i < fences; i++)
+		{
+			double lat = 48.1 + (random.nextDouble() - 0.5) * 0.4;
+			double lon = 11.5 + (random.nextDouble() - 0.5) * 0.6;
+			double size = 50 + random.nextDouble() * 450;
+			if (i % 2 == 0)
+			{
+				engine.addCircle(lat, lon, size);
+				continue;
+			}
+			int n = 3 + random.nextInt(6);
+			for (int k = 0; k < n; k++)
+			{
+				double angle = 2 * Math.PI * k / n;
+				double r = size * (0.5 + random.nextDouble() / 2) / 111195;
+				vertexLats[k] = lat + r * Math.sin(angle);
+				vertexLons[k] = lon + r * Math.cos(angle) / Math.cos(Math.toRadians(lat));
+			}
+			engine.addPolygon(vertexLats, vertexLons, 0, n);
+		}
+
+		lats = new double[FIXES];
+		lons = new double[FIXES];
+		Points.track(FIXES, 3, lats, lons);
+		// build the index outside of the measurement
+		engine.update(0, lats[0], lons[0]);
+	}
+
+	@Benchmark
+	public int update()
+	{
+		int i = next;
+		next = i + 1 == FIXES ? 0 : i + 1;
+		time += 1000;
+		engine.update(time, lats[i], lons[i]);
+		return transitions;
+	}
+}
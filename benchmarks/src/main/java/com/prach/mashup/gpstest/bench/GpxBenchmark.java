@@ -0,0 +1,148 @@
+package com.prach.mashup.gpstest.bench;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.prach.mashup.gpstest.GpxReader;
+import com.prach.mashup.gpstest.GpxWriter;
+
+/**
+ * Exporting a track as GPX: String.format() and SimpleDateFormat through a
+ * Writer against GpxWriter, plain and gzipped, and reading the document back
+ * with GpxReader. Reported per fix.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GpxBenchmark
+{
+	static final int FIXES = 10000;
+
+	private long[] times;
+	private double[] lats;
+	private double[] lons;
+	private double[] alts;
+	private byte[] document;
+	private SimpleDateFormat dateFormat;
+
+	private final long[] readTimes = new long[256];
+	private final double[] readLats = new double[256];
+	private final double[] readLons = new double[256];
+	private final double[] readAlts = new double[256];
+
+	@Setup
+	public void setup() throws IOException
+	{
+		times = new long[FIXES];
+		lats = new double[FIXES];
+		lons = new double[FIXES];
+		alts = new double[FIXES];
+		Points.track(FIXES, 13, lats, lons);
+		for (int i = 0; i < FIXES; i++)
+		{
+			times[i] = 1300000000000L + 1000L * i;
+			alts[i] = 500 + 0.37 * (i % 200);
+		}
+		dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+		dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		write(out, false);
+		document = out.toByteArray();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FIXES)
+	public void stringFormat() throws IOException
+	{
+		Writer out = new BufferedWriter(new OutputStreamWriter(new NullOutputStream(), "UTF-8"));
+		out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<gpx version=\"1.1\" creator=\"GPSLocator\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n"
+				+ "<trk>\n<trkseg>\n");
+		for (int i = 0; i < FIXES; i++)
+		{
+			out.write(String.format(Locale.US, "<trkpt lat=\"%.7f\" lon=\"%.7f\"><ele>%.2f</ele><time>%s</time></trkpt>\n",
+					lats[i], lons[i], alts[i], dateFormat.format(new Date(times[i]))));
+		}
+		out.write("</trkseg>\n</trk>\n</gpx>\n");
+		out.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FIXES)
+	public void gpxWriter() throws IOException
+	{
+		write(new NullOutputStream(), false);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FIXES)
+	public void gpxWriterGzip() throws IOException
+	{
+		write(new NullOutputStream(), true);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FIXES)
+	public double gpxReader() throws IOException
+	{
+		GpxReader reader = new GpxReader(new ByteArrayInputStream(document));
+		double sum = 0;
+		int n;
+		while ((n = reader.read(readTimes, readLats, readLons, readAlts, 0, readTimes.length)) >= 0)
+		{
+			for (int i = 0; i < n; i++)
+				sum += readLats[i];
+		}
+		reader.close();
+		return sum;
+	}
+
+	private void write (OutputStream out, boolean gzip) throws IOException
+	{
+		GpxWriter writer = new GpxWriter(out, "Benchmark", gzip);
+		for (int i = 0; i < FIXES; i++)
+			writer.add(times[i], lats[i], lons[i], alts[i]);
+		writer.close();
+	}
+
+	/**
+	 * Discards everything, so that only the formatting is measured.
+	 */
+	static final class NullOutputStream extends OutputStream
+	{
+		@Override
+		public void write (int b)
+		{
+		}
+
+		@Override
+		public void write (byte[] b, int off, int len)
+		{
+		}
+	}
+}
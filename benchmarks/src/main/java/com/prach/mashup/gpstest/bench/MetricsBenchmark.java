@@ -0,0 +1,76 @@
+package com.prach.mashup.gpstest.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.prach.mashup.gpstest.Coordinates;
+import com.prach.mashup.gpstest.Metrics;
+
+/**
+ * The cost of the metrics: a counter, a histogram value and a timed
+ * section, and Coordinates.convert() whose timing is sampled, each with the
+ * metrics switched on and off at run time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MetricsBenchmark
+{
+	@Param({ "true", "false" })
+	public boolean enabled;
+
+	private long value;
+
+	@Setup
+	public void setup()
+	{
+		Metrics.setEnabled(enabled);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		Metrics.setEnabled(true);
+		Metrics.reset();
+	}
+
+	@Benchmark
+	public void counter()
+	{
+		Metrics.HANDLER_POSTED.increment();
+	}
+
+	@Benchmark
+	public void histogram()
+	{
+		Metrics.FIX_AGE.record(value++ & 0xffff);
+	}
+
+	@Benchmark
+	public void timedSection()
+	{
+		long start = Metrics.start();
+		Metrics.REFRESH.recordSince(start);
+	}
+
+	@Benchmark
+	public String convert()
+	{
+		return Coordinates.convert(48.137154, Coordinates.DD_MM_SS);
+	}
+}
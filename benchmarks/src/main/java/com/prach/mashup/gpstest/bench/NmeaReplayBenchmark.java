@@ -0,0 +1,112 @@
+package com.prach.mashup.gpstest.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.prach.mashup.gpstest.FixListener;
+import com.prach.mashup.gpstest.NmeaReplaySource;
+
+/**
+ * Replaying an NMEA log at MAX_SPEED, per sentence. The log has a GGA and
+ * an RMC sentence per second of a walk, and a GSV sentence every tenth
+ * second.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NmeaReplayBenchmark
+{
+	static final int FIXES = 100000;
+	static final int SENTENCES = 2 * FIXES + FIXES / 10;
+
+	private File log;
+	private NmeaReplaySource source;
+	private double sum;
+	private final FixListener listener = new FixListener()
+	{
+		public void onFix (long time, double latitude, double longitude, double altitude, float accuracy,
+				float speed)
+		{
+			sum += latitude + speed;
+		}
+	};
+
+	@Setup
+	public void setup() throws IOException
+	{
+		double[] lats = new double[FIXES];
+		double[] lons = new double[FIXES];
+		Points.track(FIXES, 13, lats, lons);
+		log = File.createTempFile("replay", ".nmea");
+		Writer out = new BufferedWriter(new FileWriter(log));
+		try
+		{
+			for (int i = 0; i < FIXES; i++)
+			{
+				int s = i % 86400;
+				String time = String.format(Locale.ROOT, "%02d%02d%02d.00", s / 3600, s / 60 % 60, s % 60);
+				String lat = coordinate(lats[i], 2) + (lats[i] < 0 ? ",S" : ",N");
+				String lon = coordinate(lons[i], 3) + (lons[i] < 0 ? ",W" : ",E");
+				out.write(sentence("GPGGA," + time + "," + lat + "," + lon + ",1,08,0.9,545.4,M,46.9,M,,"));
+				out.write(sentence("GPRMC," + time + ",A," + lat + "," + lon + ",003.4,084.4,140311,003.1,W"));
+				if (i % 10 == 0)
+					out.write(sentence("GPGSV,3,1,11,03,03,111,00,04,15,270,00,06,01,010,00,13,06,292,00"));
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+		source = new NmeaReplaySource(log, NmeaReplaySource.MAX_SPEED);
+	}
+
+	private static String coordinate (double value, int degreeDigits)
+	{
+		double a = Math.abs(value);
+		int degrees = (int) a;
+		return String.format(Locale.ROOT, "%0" + degreeDigits + "d%09.6f", degrees, (a - degrees) * 60);
+	}
+
+	private static String sentence (String body)
+	{
+		int sum = 0;
+		for (int i = 0; i < body.length(); i++)
+			sum ^= body.charAt(i);
+		return String.format("$%s*%02X\r\n", body, sum);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		log.delete();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SENTENCES)
+	public double replay() throws IOException
+	{
+		source.replay(listener);
+		return sum;
+	}
+}
@@ -0,0 +1,56 @@
+package com.prach.mashup.gpstest.bench;
+
+import java.util.Random;
+
+/**
+ * Reproducible random test data shared by the benchmarks.
+ */
+final class Points
+{
+	private Points()
+	{
+	}
+
+	/**
+	 * Latitudes uniformly in [-85, 85), seeded so that every run sees the
+	 * same points.
+	 */
+	static double[] latitudes (int n, long seed)
+	{
+		Random random = new Random(seed);
+		double[] lats = new double[n];
+		for (int i = 0; i < n; i++)
+			lats[i] = random.nextDouble() * 170 - 85;
+		return lats;
+	}
+
+	/**
+	 * Longitudes uniformly in [-180, 180).
+	 */
+	static double[] longitudes (int n, long seed)
+	{
+		Random random = new Random(seed ^ 0x5DEECE66DL);
+		double[] lons = new double[n];
+		for (int i = 0; i < n; i++)
+			lons[i] = random.nextDouble() * 360 - 180;
+		return lons;
+	}
+
+	/**
+	 * A track of n points with steps of 5 m and a slowly wandering heading,
+	 * like a recorded walk.
+	 */
+	static void track (int n, long seed, double[] lats, double[] lons)
+	{
+		Random random = new Random(seed);
+		double lat = 48.1, lon = 11.5, heading = 0;
+		for (int i = 0; i < n; i++)
+		{
+			heading += random.nextGaussian() * 0.2;
+			lat += 5 * Math.cos(heading) / 111195;
+			lon += 5 * Math.sin(heading) / (111195 * Math.cos(Math.toRadians(lat)));
+			lats[i] = lat;
+			lons[i] = lon;
+		}
+	}
+}
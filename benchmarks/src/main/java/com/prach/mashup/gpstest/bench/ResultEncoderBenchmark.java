@@ -0,0 +1,115 @@
+package com.prach.mashup.gpstest.bench;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.text.NumberFormat;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.prach.mashup.gpstest.CoordinateFormat;
+import com.prach.mashup.gpstest.ResultEncoder;
+
+/**
+ * Encoding a batch of fixes for a result Intent: the NumberFormat strings
+ * and concatenated JSON of the old result against the locale-free JSON
+ * writer and the two binary payloads. Reported per fix.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResultEncoderBenchmark
+{
+	static final int FIXES = 256;
+
+	private long[] times;
+	private double[] lats;
+	private double[] lons;
+	private NumberFormat nf;
+	private char[] buf;
+
+	@Setup
+	public void setup()
+	{
+		times = new long[FIXES];
+		lats = new double[FIXES];
+		lons = new double[FIXES];
+		Points.track(FIXES, 9, lats, lons);
+		for (int i = 0; i < FIXES; i++)
+			times[i] = 1300000000000L + 1000L * i;
+		nf = NumberFormat.getInstance();
+		buf = new char[CoordinateFormat.MAX_LENGTH];
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FIXES)
+	public void numberFormat (Blackhole bh)
+	{
+		for (int i = 0; i < FIXES; i++)
+		{
+			bh.consume(nf.format(lats[i]));
+			bh.consume(nf.format(lons[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FIXES)
+	public void formatDecimal (Blackhole bh)
+	{
+		for (int i = 0; i < FIXES; i++)
+		{
+			bh.consume(CoordinateFormat.formatDecimal(lats[i], buf, 0));
+			bh.consume(CoordinateFormat.formatDecimal(lons[i], buf, 0));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FIXES)
+	public String jsonConcatenated()
+	{
+		StringBuilder json = new StringBuilder(64 * FIXES).append('[');
+		for (int i = 0; i < FIXES; i++)
+		{
+			json.append((i == 0 ? "" : ",") + "{\"time\":" + times[i] + ",\"latitude\":\"" + nf.format(lats[i])
+					+ "\",\"longitude\":\"" + nf.format(lons[i]) + "\"}");
+		}
+		return json.append(']').toString();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FIXES)
+	public String jsonWriter() throws IOException
+	{
+		StringWriter out = new StringWriter(64 * FIXES);
+		ResultEncoder.writeJson(out, times, lats, lons, 0, FIXES);
+		return out.toString();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FIXES)
+	public double[] pack()
+	{
+		return ResultEncoder.pack(times, lats, lons, 0, FIXES);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FIXES)
+	public byte[] encodeDeltas()
+	{
+		return ResultEncoder.encodeDeltas(times, lats, lons, 0, FIXES);
+	}
+}
@@ -0,0 +1,116 @@
+package com.prach.mashup.gpstest.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.prach.mashup.gpstest.Coordinates;
+import com.prach.mashup.gpstest.SpatialIndex;
+
+/**
+ * k-nearest and radius queries through SpatialIndex against a linear scan
+ * with the batch haversine, per query.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class SpatialIndexBenchmark
+{
+	static final int K = 10;
+	static final double RADIUS = 5000;
+
+	@Param({"10000", "100000", "1000000", "10000000"})
+	public int points;
+
+	private double[] lats;
+	private double[] lons;
+	private SpatialIndex index;
+	private float[] all;
+	private int[] ids;
+	private float[] distances;
+	private Random random;
+	private double queryLat;
+	private double queryLon;
+
+	@Setup
+	public void setup()
+	{
+		lats = Points.latitudes(points, 4);
+		lons = Points.longitudes(points, 4);
+		index = new SpatialIndex(lats, lons, 0, points);
+		all = new float[points];
+		ids = new int[points];
+		distances = new float[points];
+		random = new Random(5);
+	}
+
+	@Setup(Level.Invocation)
+	public void nextQuery()
+	{
+		queryLat = random.nextDouble() * 170 - 85;
+		queryLon = random.nextDouble() * 360 - 180;
+	}
+
+	@Benchmark
+	public int nearestIndex()
+	{
+		return index.nearest(queryLat, queryLon, K, ids, distances);
+	}
+
+	@Benchmark
+	public int nearestLinear()
+	{
+		Coordinates.distances(queryLat, queryLon, lats, lons, 0, points, all, 0);
+		// keep the K smallest sorted in distances[0..K)
+		int n = 0;
+		for (int i = 0; i < points; i++)
+		{
+			float d = all[i];
+			if (n == K && d >= distances[K - 1])
+				continue;
+			int j = n < K ? n++ : K - 1;
+			while (j > 0 && distances[j - 1] > d)
+			{
+				distances[j] = distances[j - 1];
+				ids[j] = ids[j - 1];
+				j--;
+			}
+			distances[j] = d;
+			ids[j] = i;
+		}
+		return n;
+	}
+
+	@Benchmark
+	public int radiusIndex()
+	{
+		return index.withinRadius(queryLat, queryLon, RADIUS * 100 / Math.sqrt(points / 10000.0), ids, distances);
+	}
+
+	@Benchmark
+	public int radiusLinear()
+	{
+		double radius = RADIUS * 100 / Math.sqrt(points / 10000.0);
+		Coordinates.distances(queryLat, queryLon, lats, lons, 0, points, all, 0);
+		int n = 0;
+		for (int i = 0; i < points; i++)
+			if (all[i] <= radius)
+				ids[n++] = i;
+		return n;
+	}
+}
@@ -0,0 +1,117 @@
+package com.prach.mashup.gpstest.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.prach.mashup.gpstest.TrackReader;
+import com.prach.mashup.gpstest.TrackRecorder;
+
+/**
+ * Appending fixes to a track file and streaming them back, per fix. The
+ * fixes are a random walk sampled about once per second.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TrackRecorderBenchmark
+{
+	static final int FIXES = 4096;
+
+	private long[] times;
+	private double[] lats;
+	private double[] lons;
+	private double[] alts;
+	private float[] accuracies;
+	private float[] speeds;
+	private long span;
+	private long timeOffset;
+
+	private File writeFile;
+	private File readFile;
+	private TrackRecorder recorder;
+
+	@Setup
+	public void setup() throws IOException
+	{
+		times = new long[FIXES];
+		lats = new double[FIXES];
+		lons = new double[FIXES];
+		alts = new double[FIXES];
+		accuracies = new float[FIXES];
+		speeds = new float[FIXES];
+		Random random = new Random(6);
+		long time = 1300000000000L;
+		double lat = 48.1, lon = 11.5;
+		for (int i = 0; i < FIXES; i++)
+		{
+			time += 990 + random.nextInt(20);
+			lat += random.nextGaussian() * 1e-4;
+			lon += random.nextGaussian() * 1e-4;
+			times[i] = time;
+			lats[i] = lat;
+			lons[i] = lon;
+			alts[i] = 520 + random.nextGaussian() * 5;
+			accuracies[i] = 4 + random.nextFloat() * 10;
+			speeds[i] = random.nextFloat() * 15;
+		}
+		span = times[FIXES - 1] - times[0] + 1000;
+		timeOffset = span;
+
+		writeFile = File.createTempFile("track", ".bin");
+		recorder = TrackRecorder.open(writeFile);
+
+		readFile = File.createTempFile("track", ".bin");
+		TrackRecorder r = TrackRecorder.open(readFile);
+		for (int i = 0; i < FIXES; i++)
+			r.append(times[i], lats[i], lons[i], alts[i], accuracies[i], speeds[i]);
+		r.close();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		recorder.close();
+		writeFile.delete();
+		readFile.delete();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FIXES)
+	public void append() throws IOException
+	{
+		long shift = timeOffset;
+		for (int i = 0; i < FIXES; i++)
+			recorder.append(times[i] + shift, lats[i], lons[i], alts[i], accuracies[i], speeds[i]);
+		timeOffset += span;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FIXES)
+	public double read() throws IOException
+	{
+		TrackReader reader = TrackReader.open(readFile);
+		double sum = 0;
+		while (reader.next())
+			sum += reader.getLatitude() + reader.getSpeed();
+		reader.close();
+		return sum;
+	}
+}
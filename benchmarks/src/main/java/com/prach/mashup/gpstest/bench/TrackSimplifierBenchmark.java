@@ -0,0 +1,90 @@
+package com.prach.mashup.gpstest.bench;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.prach.mashup.gpstest.StreamingSimplifier;
+import com.prach.mashup.gpstest.TrackSimplifier;
+
+/**
+ * Simplification of a whole track with a tolerance of 10 m: sequential and
+ * parallel Douglas-Peucker, and the streaming simplifier fed point by point.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class TrackSimplifierBenchmark
+{
+	static final double TOLERANCE = 10;
+
+	@Param({"100000", "1000000", "10000000"})
+	public int points;
+
+	@Param({"2", "4", "8"})
+	public int threads;
+
+	private double[] lats;
+	private double[] lons;
+	private int[] indices;
+	private ExecutorService executor;
+
+	@Setup
+	public void setup()
+	{
+		lats = new double[points];
+		lons = new double[points];
+		Points.track(points, 7, lats, lons);
+		indices = new int[points];
+		executor = Executors.newFixedThreadPool(threads);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		executor.shutdown();
+	}
+
+	@Benchmark
+	public int sequential()
+	{
+		return TrackSimplifier.simplify(lats, lons, 0, points, TOLERANCE, indices);
+	}
+
+	@Benchmark
+	public int parallel() throws InterruptedException
+	{
+		return TrackSimplifier.simplify(lats, lons, 0, points, TOLERANCE, indices, executor);
+	}
+
+	@Benchmark
+	public int streaming()
+	{
+		StreamingSimplifier simplifier = new StreamingSimplifier(TOLERANCE, 256);
+		int kept = 0;
+		for (int i = 0; i < points; i++)
+		{
+			if (simplifier.add(lats[i], lons[i]) != StreamingSimplifier.NONE)
+				kept++;
+		}
+		if (simplifier.finish() != StreamingSimplifier.NONE)
+			kept++;
+		return kept;
+	}
+}
@@ -0,0 +1,62 @@
+package com.prach.mashup.gpstest;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The StringBuilder forms of CoordinateFormat against the char array forms,
+ * and the rounding at the ends of the range.
+ */
+public class CoordinateFormatTest
+{
+	@Test
+	public void stringBuilderMatchesCharArray()
+	{
+		Random random = new Random(3);
+		char[] buf = new char[CoordinateFormat.MAX_LENGTH];
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100000; i++)
+		{
+			double c = i < 8 ? new double[] { 0, -0.0, 1e-9, -1e-9, 0.5, -0.5, 180, -180 }[i]
+					: (random.nextDouble() * 360 - 180) / (1 << random.nextInt(16));
+			sb.setLength(0);
+			assertEquals(new String(buf, 0, CoordinateFormat.format(c, Coordinates.DD_MM_SS, buf, 0)),
+					CoordinateFormat.format(c, Coordinates.DD_MM_SS, sb).toString());
+			sb.setLength(0);
+			assertEquals(new String(buf, 0, CoordinateFormat.format(c, Coordinates.DD_MM, buf, 0)),
+					CoordinateFormat.format(c, Coordinates.DD_MM, sb).toString());
+			sb.setLength(0);
+			assertEquals(new String(buf, 0, CoordinateFormat.formatDisplay(c, buf, 0)),
+					CoordinateFormat.formatDisplay(c, sb).toString());
+			sb.setLength(0);
+			assertEquals(new String(buf, 0, CoordinateFormat.formatDecimal(c, buf, 0)),
+					CoordinateFormat.formatDecimal(c, sb).toString());
+		}
+	}
+
+	@Test
+	public void appendsToExistingContent()
+	{
+		StringBuilder sb = new StringBuilder("lat=");
+		CoordinateFormat.formatDecimal(48.1371, sb).append(", ");
+		CoordinateFormat.format(-0.5, Coordinates.DD_MM_SS, sb);
+		assertEquals("lat=48.1371, -0:30:00.000", sb.toString());
+	}
+
+	@Test
+	public void neverRoundsUpTo180()
+	{
+		assertEquals("179:59:59.999", Coordinates.convert(179.99999999, Coordinates.DD_MM_SS));
+		assertEquals("179:59.99999", Coordinates.convert(179.99999999, Coordinates.DD_MM));
+		assertEquals("-179:59:59.999", Coordinates.convert(-179.99999999, Coordinates.DD_MM_SS));
+		assertEquals("179.9999999", CoordinateFormat.formatDecimal(179.999999999, new StringBuilder()).toString());
+		assertEquals("179\u00b0 59' 59\"", CoordinateFormat.formatDisplay(179.9999, new StringBuilder()).toString());
+		assertEquals("180:00:00.000", CoordinateFormat.format(180, Coordinates.DD_MM_SS, new StringBuilder())
+				.toString());
+		// rounding up below 180 is unaffected
+		assertEquals("90:00:00.000", Coordinates.convert(89.99999999, Coordinates.DD_MM_SS));
+	}
+}
@@ -0,0 +1,238 @@
+package com.prach.mashup.gpstest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Feeds replayed NMEA logs and device fixes through a FixGate the way the
+ * activity does: a dropped fix is ignored, a restarted time line resets the
+ * smoother, the statistics, the history and the speed of the scheduler.
+ */
+public class FixGateTest
+{
+	private static final int FIXES = 20;
+	private static final long MAX_AGE = 60000;
+	// 2011-03-14 12:00:00 UTC, the date and time of the log
+	private static final long LOG_START = 1300104000000L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private NmeaReplaySource replay;
+
+	@Before
+	public void writeLog() throws IOException
+	{
+		File file = folder.newFile("walk.nmea");
+		OutputStream out = new FileOutputStream(file);
+		try
+		{
+			for (int i = 0; i < FIXES; i++)
+			{
+				String time = String.format(Locale.ROOT, "12%02d%02d.00", i / 60, i % 60);
+				String lat = String.format(Locale.ROOT, "4807.%06d,N", 38000 + 100 * i);
+				String lon = String.format(Locale.ROOT, "01131.%06d,E", 1000 + 100 * i);
+				out.write(sentence("GPGGA," + time + "," + lat + "," + lon + ",1,08,0.9,545.4,M,46.9,M,,"));
+				out.write(sentence("GPRMC," + time + ",A," + lat + "," + lon + ",003.4,084.4,140311,003.1,W"));
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+		replay = new NmeaReplaySource(file, NmeaReplaySource.MAX_SPEED);
+	}
+
+	private static byte[] sentence (String body)
+	{
+		int sum = 0;
+		for (int i = 0; i < body.length(); i++)
+			sum ^= body.charAt(i);
+		return String.format(Locale.ROOT, "$%s*%02X\r\n", body, sum).getBytes();
+	}
+
+	@Test
+	public void replayAfterNewerCachedFix() throws IOException
+	{
+		Activity activity = new Activity(replay);
+		// a real fix from the cache, years after the log
+		assertEquals(FixGate.ACCEPTED, activity.gate.offer(System.currentTimeMillis(), 5));
+		assertEquals(FIXES, replay.replay(activity));
+		assertEquals(FIXES, activity.accepted);
+		assertEquals(1, activity.restarts);
+		assertEquals(LOG_START + (FIXES - 1) * 1000, activity.gate.getTime());
+		assertEquals(48 + 7.0399 / 60, activity.smoother.getLatitude(), 1e-4);
+	}
+
+	@Test
+	public void replayStartsOverOnEveryRegistration() throws InterruptedException
+	{
+		Activity activity = new Activity(replay);
+		replay.setListener(activity);
+		for (int pass = 1; pass <= 3; pass++)
+		{
+			activity.done = new CountDownLatch(FIXES);
+			replay.requestUpdates(0, 0);
+			assertTrue(activity.done.await(10, TimeUnit.SECONDS));
+			replay.removeUpdates();
+			assertEquals(pass * FIXES, activity.accepted);
+			assertEquals(pass - 1, activity.restarts);
+			assertEquals(LOG_START + (FIXES - 1) * 1000, activity.gate.getTime());
+			// only the last pass counts, in order
+			assertEquals(FIXES, activity.stats.getCount());
+			assertEquals((FIXES - 1) * 1000, activity.stats.getElapsedTime());
+			long[] times = new long[FIXES + 1];
+			assertEquals(FIXES, activity.history.copy(FIXES + 1, times, new double[FIXES + 1],
+					new double[FIXES + 1], 0));
+			for (int i = 0; i < FIXES; i++)
+				assertEquals(LOG_START + i * 1000, times[i]);
+		}
+	}
+
+	@Test
+	public void replayedFixIsFreshOnTheClockOfTheLog() throws IOException
+	{
+		Activity activity = new Activity(replay);
+		assertFalse(activity.gate.isFresh(MAX_AGE, Float.NaN));
+		replay.replay(activity);
+		assertTrue(activity.gate.isFresh(MAX_AGE, Float.NaN));
+		// on the clock of the device the log is years old
+		assertTrue(System.currentTimeMillis() - activity.gate.getTime() > MAX_AGE);
+	}
+
+	@Test
+	public void lateDeviceFixIsDropped()
+	{
+		FakeSource device = new FakeSource();
+		device.now = 100000;
+		Activity activity = new Activity(device);
+		assertEquals(FixGate.ACCEPTED, activity.gate.offer(90000, 5));
+		activity.onFix(80000, 48, 11, Double.NaN, 5, Float.NaN);
+		assertEquals(0, activity.accepted);
+		assertEquals(90000, activity.gate.getTime());
+		activity.onFix(95000, 48, 11, Double.NaN, 5, Float.NaN);
+		assertEquals(1, activity.accepted);
+		assertTrue(activity.gate.isFresh(5000, Float.NaN));
+		device.now = 100001;
+		assertFalse(activity.gate.isFresh(5000, Float.NaN));
+	}
+
+	@Test
+	public void inaccurateFixIsNotFresh()
+	{
+		FakeSource device = new FakeSource();
+		device.now = 100000;
+		FixGate gate = new FixGate(device);
+		gate.offer(99000, 80);
+		assertTrue(gate.isFresh(5000, Float.NaN));
+		assertFalse(gate.isFresh(5000, 50));
+		assertEquals(FixGate.ACCEPTED, gate.offer(99500, 20));
+		assertTrue(gate.isFresh(5000, 50));
+		// a dropped fix does not change the accuracy
+		assertEquals(FixGate.DROPPED, gate.offer(98000, 200));
+		assertTrue(gate.isFresh(5000, 50));
+		// an unknown accuracy only passes without a bound
+		gate.offer(99600, Float.NaN);
+		assertFalse(gate.isFresh(5000, 50));
+		assertTrue(gate.isFresh(5000, Float.NaN));
+	}
+
+	@Test
+	public void fixAheadOfTheClockIsReplaced()
+	{
+		FakeSource device = new FakeSource();
+		device.now = 100000;
+		Activity activity = new Activity(device);
+		// a cached fix from a clock that was set ahead
+		activity.gate.offer(200000, 5);
+		activity.onFix(99000, 48, 11, Double.NaN, 5, Float.NaN);
+		assertEquals(1, activity.restarts);
+		assertEquals(99000, activity.gate.getTime());
+	}
+
+	/**
+	 * The part of GPSLocatorTest.onFix() that decides on the order of the
+	 * fixes, and the state it resets when the time line starts over.
+	 */
+	private static final class Activity implements FixListener
+	{
+		final FixGate gate;
+		final KalmanSmoother smoother = new KalmanSmoother();
+		final TrackStats stats = new TrackStats();
+		final FixHistory history = new FixHistory(4 * FIXES);
+		final UpdateScheduler scheduler;
+		volatile int accepted;
+		volatile int restarts;
+		volatile CountDownLatch done;
+
+		Activity (LocationSource source)
+		{
+			gate = new FixGate(source);
+			scheduler = new UpdateScheduler(source, UpdateScheduler.MODE_BALANCED);
+		}
+
+		public void onFix (long time, double latitude, double longitude, double altitude, float accuracy,
+				float speed)
+		{
+			int order = gate.offer(time, accuracy);
+			if (order != FixGate.DROPPED)
+			{
+				if (order == FixGate.RESTARTED)
+				{
+					smoother.reset();
+					stats.reset();
+					history.clear();
+					scheduler.reset();
+					restarts++;
+				}
+				smoother.update(time, latitude, longitude, accuracy);
+				history.add(time, smoother.getLatitude(), smoother.getLongitude());
+				scheduler.onFix(time, smoother.getLatitude(), smoother.getLongitude(), speed, accuracy);
+				stats.add(time, smoother.getLatitude(), smoother.getLongitude(), altitude, speed);
+				accepted++;
+			}
+			if (done != null)
+				done.countDown();
+		}
+	}
+
+	private static final class FakeSource implements LocationSource
+	{
+		long now;
+
+		public void requestUpdates (long minTime, float minDistance)
+		{
+		}
+
+		public void removeUpdates()
+		{
+		}
+
+		public void setListener (FixListener listener)
+		{
+		}
+
+		public void deliverLastFix()
+		{
+		}
+
+		public long currentTimeMillis()
+		{
+			return now;
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package com.prach.mashup.gpstest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * One thread publishes fixes while several threads read them, through a
+ * volatile Fix and through FixSeqlock. Every published fix has longitude =
+ * -latitude and a latitude that follows from its time, so a read that sees
+ * anything else has combined two fixes and fails the test. The readers run
+ * on other CPUs than the writer only where there are several, so on a
+ * single CPU a broken publication is caught less reliably.
+ */
+public class FixPublicationTest
+{
+	/** How long each writer runs, in milliseconds. */
+	private static final long DURATION = 1000;
+	private static final int READERS = 3;
+
+	private volatile Fix fix = Fix.NONE;
+	private final FixSeqlock seqlock = new FixSeqlock();
+
+	private static double latitude (long time)
+	{
+		return (time & 0xfffff) * 1e-4;
+	}
+
+	@Test
+	public void volatileFixIsNeverTorn() throws InterruptedException
+	{
+		run(new Writer()
+		{
+			@Override
+			void publish (long time, double latitude)
+			{
+				fix = new Fix(time, latitude, -latitude, Double.NaN, Float.NaN, "gps");
+			}
+		}, new Reader()
+		{
+			@Override
+			long read (double[] values)
+			{
+				Fix f = fix;
+				check(f.getTime(), f.getLatitude(), f.getLongitude());
+				return f.getTime();
+			}
+		});
+	}
+
+	@Test
+	public void seqlockReadIsNeverTorn() throws InterruptedException
+	{
+		run(new SeqlockWriter(), new Reader()
+		{
+			@Override
+			long read (double[] values)
+			{
+				long time = seqlock.read(values);
+				if (time == FixSeqlock.NO_FIX)
+					return 0;
+				check(time, values[FixSeqlock.LATITUDE], values[FixSeqlock.LONGITUDE]);
+				return time;
+			}
+		});
+	}
+
+	@Test
+	public void seqlockSnapshotIsNeverTorn() throws InterruptedException
+	{
+		run(new SeqlockWriter(), new Reader()
+		{
+			@Override
+			long read (double[] values)
+			{
+				Fix f = seqlock.snapshot();
+				check(f.getTime(), f.getLatitude(), f.getLongitude());
+				return f.getTime();
+			}
+		});
+	}
+
+	@Test
+	public void seqlockBeforeFirstFix()
+	{
+		double[] values = { 1, 2, 3, 4 };
+		assertEquals(FixSeqlock.NO_FIX, seqlock.read(values));
+		assertEquals(1, values[0], 0);
+		assertEquals(Fix.NONE, seqlock.snapshot());
+		assertEquals(0, seqlock.getCount());
+		seqlock.publish(7, 1, 2, 3, 4, "gps");
+		assertEquals(7, seqlock.read(values));
+		assertEquals(2, values[FixSeqlock.LONGITUDE], 0);
+		assertEquals(1, seqlock.getCount());
+	}
+
+	private void run (Writer writer, Reader reader) throws InterruptedException
+	{
+		AtomicReference<String> failure = new AtomicReference<String>();
+		AtomicLong reads = new AtomicLong();
+		Thread[] readers = new Thread[READERS];
+		for (int i = 0; i < READERS; i++)
+		{
+			readers[i] = new ReaderThread(reader, writer, failure, reads);
+			readers[i].start();
+		}
+		writer.start();
+		writer.join();
+		for (int i = 0; i < READERS; i++)
+			readers[i].join();
+		if (failure.get() != null)
+			fail(failure.get());
+		assertTrue("no reads", reads.get() > 0);
+	}
+
+	private class SeqlockWriter extends Writer
+	{
+		@Override
+		void publish (long time, double latitude)
+		{
+			seqlock.publish(time, latitude, -latitude, Double.NaN, Float.NaN, "gps");
+		}
+	}
+
+	private abstract static class Writer extends Thread
+	{
+		volatile boolean done;
+
+		abstract void publish (long time, double latitude);
+
+		@Override
+		public void run()
+		{
+			long end = System.currentTimeMillis() + DURATION;
+			for (long time = 1; (time & 0xfff) != 0 || System.currentTimeMillis() < end; time++)
+				publish(time, latitude(time));
+			done = true;
+		}
+	}
+
+	private abstract static class Reader
+	{
+		/**
+		 * Reads the current fix once and checks it. Called by several
+		 * threads at once.
+		 *
+		 * @param values
+		 *            scratch space of the calling thread for FixSeqlock.read()
+		 * @return the time of the fix read
+		 * @throws java.lang.AssertionError
+		 *             if the fix combines two fixes
+		 */
+		abstract long read (double[] values);
+
+		static void check (long time, double latitude, double longitude)
+		{
+			if (longitude != -latitude || latitude != latitude(time))
+				throw new AssertionError("torn read: " + time + ", " + latitude + ", " + longitude);
+		}
+	}
+
+	private static final class ReaderThread extends Thread
+	{
+		private final Reader reader;
+		private final Writer writer;
+		private final AtomicReference<String> failure;
+		private final AtomicLong reads;
+
+		ReaderThread (Reader reader, Writer writer, AtomicReference<String> failure, AtomicLong reads)
+		{
+			this.reader = reader;
+			this.writer = writer;
+			this.failure = failure;
+			this.reads = reads;
+		}
+
+		@Override
+		public void run()
+		{
+			double[] values = new double[4];
+			long n = 0;
+			long last = 0;
+			try
+			{
+				while (!writer.done)
+				{
+					long time = reader.read(values);
+					if (time < last)
+						throw new AssertionError("went back from " + last + " to " + time);
+					last = time;
+					n++;
+				}
+			}
+			catch (AssertionError e)
+			{
+				failure.compareAndSet(null, e.getMessage());
+			}
+			reads.addAndGet(n);
+		}
+	}
+}
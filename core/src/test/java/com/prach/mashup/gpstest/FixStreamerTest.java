@@ -0,0 +1,236 @@
+package com.prach.mashup.gpstest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * FixStreamer with a fake clock and a fake LocationRegistrar: the filters of
+ * each subscriber, when batches are delivered and which registrations it
+ * makes.
+ */
+public class FixStreamerTest
+{
+	// about 11 m to the north per step
+	private static final double STEP = 1e-4;
+
+	private final FakeClock clock = new FakeClock();
+	private final FakeRegistrar registrar = new FakeRegistrar();
+	private final FixStreamer streamer = new FixStreamer(registrar, clock);
+
+	/**
+	 * Passes a fix per second, moving one STEP each, with the clock at the
+	 * time of the fix.
+	 */
+	private void walk (int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			clock.now = i * 1000L;
+			streamer.onFix(i * 1000L, 48 + i * STEP, 11);
+		}
+	}
+
+	@Test
+	public void filtersByIntervalPerSubscriber()
+	{
+		Recorder every5s = new Recorder();
+		Recorder every2s = new Recorder();
+		streamer.subscribe("5s", every5s, 5000, 0, 1, 0);
+		streamer.subscribe("2s", every2s, 2000, 0, 1, 0);
+		walk(0, 12);
+		assertArrayEquals(new long[] { 0, 5000, 10000 }, every5s.times());
+		assertArrayEquals(new long[] { 0, 2000, 4000, 6000, 8000, 10000 }, every2s.times());
+		assertEquals(3, every5s.batches.size());
+	}
+
+	@Test
+	public void filtersByDistancePerSubscriber()
+	{
+		Recorder far = new Recorder();
+		Recorder near = new Recorder();
+		streamer.subscribe("50m", far, 0, 50, 1, 0);
+		streamer.subscribe("20m", near, 0, 20, 1, 0);
+		walk(0, 11);
+		// four steps are 44 m, five are 56 m
+		assertArrayEquals(new long[] { 0, 5000, 10000 }, far.times());
+		assertArrayEquals(new long[] { 0, 2000, 4000, 6000, 8000, 10000 }, near.times());
+
+		// standing still passes nothing however long it takes
+		for (int i = 11; i < 100; i++)
+		{
+			clock.now = i * 1000L;
+			streamer.onFix(i * 1000L, 48 + 10 * STEP, 11);
+		}
+		assertEquals(3, far.times().length);
+	}
+
+	@Test
+	public void deliversFullBatches()
+	{
+		Recorder recorder = new Recorder();
+		streamer.subscribe("batch", recorder, 0, 0, 3, 60000);
+		walk(0, 7);
+		assertEquals(2, recorder.batches.size());
+		assertArrayEquals(new long[] { 0, 1000, 2000 }, recorder.batches.get(0));
+		assertArrayEquals(new long[] { 3000, 4000, 5000 }, recorder.batches.get(1));
+		assertEquals(6000 + 60000, streamer.nextDeadline());
+	}
+
+	@Test
+	public void deliversAfterTheMaxDelay()
+	{
+		Recorder recorder = new Recorder();
+		streamer.subscribe("delay", recorder, 0, 0, 10, 2500);
+		assertEquals(Long.MAX_VALUE, streamer.nextDeadline());
+		walk(0, 2);
+		assertEquals(2500, streamer.nextDeadline());
+		clock.now = 2499;
+		streamer.poll();
+		assertEquals(0, recorder.batches.size());
+		clock.now = 2500;
+		streamer.poll();
+		assertArrayEquals(new long[] { 0, 1000 }, recorder.times());
+		assertEquals(Long.MAX_VALUE, streamer.nextDeadline());
+
+		// a fix arriving after the deadline delivers the batch with it
+		walk(3, 5);
+		clock.now = 8000;
+		streamer.onFix(8000, 48 + 8 * STEP, 11);
+		assertEquals(2, recorder.batches.size());
+		assertArrayEquals(new long[] { 3000, 4000, 8000 }, recorder.batches.get(1));
+	}
+
+	@Test
+	public void registersOnlyWhenTheParametersChange()
+	{
+		Recorder recorder = new Recorder();
+		streamer.subscribe("a", recorder, 5000, 10, 1, 0);
+		registrar.assertRequested(5000, 10, 1);
+		streamer.subscribe("b", recorder, 1000, 20, 1, 0);
+		registrar.assertRequested(1000, 10, 2);
+		// within the registration that exists
+		streamer.subscribe("c", recorder, 2000, 15, 1, 0);
+		registrar.assertRequested(1000, 10, 2);
+		streamer.subscribe("a", recorder, 5000, 10, 4, 1000);
+		registrar.assertRequested(1000, 10, 2);
+
+		assertTrue(streamer.unsubscribe("b"));
+		registrar.assertRequested(2000, 10, 3);
+		assertFalse(streamer.unsubscribe("b"));
+		assertTrue(streamer.unsubscribe("a"));
+		registrar.assertRequested(2000, 15, 4);
+		assertEquals(0, registrar.removals);
+		assertTrue(streamer.unsubscribe("c"));
+		assertEquals(1, registrar.removals);
+		assertEquals(4, registrar.requests);
+		assertEquals(0, streamer.size());
+
+		streamer.subscribe("a", recorder, 5000, 10, 1, 0);
+		registrar.assertRequested(5000, 10, 5);
+	}
+
+	@Test
+	public void unsubscribeFlushesTheBatch()
+	{
+		Recorder leaving = new Recorder();
+		Recorder staying = new Recorder();
+		streamer.subscribe("leaving", leaving, 0, 0, 10, 60000);
+		streamer.subscribe("staying", staying, 0, 0, 10, 60000);
+		walk(0, 3);
+		assertTrue(streamer.unsubscribe("leaving"));
+		assertArrayEquals(new long[] { 0, 1000, 2000 }, leaving.times());
+		assertEquals(1, leaving.batches.size());
+		assertEquals(0, staying.batches.size());
+
+		// changing the parameters flushes as well
+		streamer.subscribe("staying", staying, 0, 0, 2, 60000);
+		assertArrayEquals(new long[] { 0, 1000, 2000 }, staying.times());
+		walk(3, 4);
+		streamer.close();
+		assertArrayEquals(new long[] { 3000 }, staying.batches.get(1));
+		assertEquals(1, registrar.removals);
+		assertEquals(0, streamer.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void batchSizeMustBePositive()
+	{
+		streamer.subscribe("a", new Recorder(), 0, 0, 0, 0);
+	}
+
+	/**
+	 * Keeps a copy of the times of every batch.
+	 */
+	private static final class Recorder implements FixSubscriber
+	{
+		final List<long[]> batches = new ArrayList<long[]>();
+
+		public void onFixes (long[] times, double[] lats, double[] lons, int count)
+		{
+			assertTrue(count > 0);
+			long[] copy = new long[count];
+			System.arraycopy(times, 0, copy, 0, count);
+			batches.add(copy);
+		}
+
+		long[] times()
+		{
+			int n = 0;
+			for (int i = 0; i < batches.size(); i++)
+				n += batches.get(i).length;
+			long[] all = new long[n];
+			n = 0;
+			for (int i = 0; i < batches.size(); i++)
+			{
+				long[] batch = batches.get(i);
+				System.arraycopy(batch, 0, all, n, batch.length);
+				n += batch.length;
+			}
+			return all;
+		}
+	}
+
+	private static final class FakeClock implements Clock
+	{
+		long now;
+
+		public long now()
+		{
+			return now;
+		}
+	}
+
+	private static final class FakeRegistrar implements LocationRegistrar
+	{
+		long minTime = -1;
+		float minDistance = -1;
+		int requests;
+		int removals;
+
+		public void requestUpdates (long minTime, float minDistance)
+		{
+			this.minTime = minTime;
+			this.minDistance = minDistance;
+			requests++;
+		}
+
+		public void removeUpdates()
+		{
+			removals++;
+		}
+
+		void assertRequested (long minTime, float minDistance, int requests)
+		{
+			assertEquals(minTime, this.minTime);
+			assertEquals(minDistance, this.minDistance, 0);
+			assertEquals(requests, this.requests);
+		}
+	}
+}
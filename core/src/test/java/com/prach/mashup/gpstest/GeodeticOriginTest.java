@@ -0,0 +1,72 @@
+package com.prach.mashup.gpstest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The Vincenty solver against a published example, and the FAST iteration
+ * limit against PRECISE within the documented bounds.
+ */
+public class GeodeticOriginTest
+{
+	// Flinders Peak to Buninyong, the example of Vincenty (1975)
+	private static final double LAT1 = -(37 + 57 / 60.0 + 3.72030 / 3600);
+	private static final double LON1 = 144 + 25 / 60.0 + 29.52440 / 3600;
+	private static final double LAT2 = -(37 + 39 / 60.0 + 10.15610 / 3600);
+	private static final double LON2 = 143 + 55 / 60.0 + 35.38390 / 3600;
+	private static final double DISTANCE = 54972.271;
+	private static final double AZIMUTH = 306 + 52 / 60.0 + 5.37 / 3600;
+
+	@Test
+	public void vincentyExample()
+	{
+		GeodeticOrigin origin = new GeodeticOrigin(LAT1, LON1);
+		assertEquals(DISTANCE, origin.distance(LAT2, LON2), 1e-3);
+		assertEquals(AZIMUTH, origin.azimuth(LAT2, LON2), 1e-5);
+		assertEquals(DISTANCE, GeodeticOrigin.distanceBetween(LAT1, LON1, LAT2, LON2), 1e-3);
+		assertEquals(AZIMUTH, GeodeticOrigin.azimuthBetween(LAT1, LON1, LAT2, LON2), 1e-5);
+	}
+
+	@Test
+	public void coordinatesUseTheSolver()
+	{
+		Coordinates from = new Coordinates(LAT1, LON1, Float.NaN);
+		Coordinates to = new Coordinates(LAT2, LON2, Float.NaN);
+		assertEquals((float) DISTANCE, from.distance(to), 0.01f);
+		assertEquals((float) AZIMUTH, from.azimuthTo(to), 1e-4f);
+		assertEquals(0, from.azimuthTo(from), 0);
+		assertEquals(180, new Coordinates(90, 0, Float.NaN).azimuthTo(to), 0);
+	}
+
+	@Test
+	public void fastStaysWithinItsBounds()
+	{
+		Random random = new Random(1);
+		GeodeticOrigin precise = new GeodeticOrigin(0, 0);
+		GeodeticOrigin fast = new GeodeticOrigin(0, 0, GeodeticOrigin.FAST);
+		int checked = 0;
+		for (int i = 0; i < 200000; i++)
+		{
+			double lat1 = random.nextDouble() * 180 - 90;
+			double lon1 = random.nextDouble() * 360 - 180;
+			double lat2 = random.nextDouble() * 180 - 90;
+			double lon2 = random.nextDouble() * 360 - 180;
+			precise.setOrigin(lat1, lon1);
+			fast.setOrigin(lat1, lon1);
+			double d = precise.distance(lat2, lon2);
+			double error = Math.abs(fast.distance(lat2, lon2) - d);
+			if (d <= 10000e3)
+			{
+				assertTrue(d + " m off by " + error, error <= 1.5e-3);
+				checked++;
+			}
+			else if (d <= 18000e3)
+				assertTrue(d + " m off by " + error, error <= 0.15);
+		}
+		assertTrue(checked > 0);
+	}
+}
@@ -0,0 +1,95 @@
+package com.prach.mashup.gpstest;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Merging the statistics of consecutive parts of a track, where the
+ * altitude is not known for every fix.
+ */
+public class TrackStatsTest
+{
+	// altitudes of a climb and a descent, with unknown ones at the joins
+	private static final double[] ALTITUDES = { 100, 110, Double.NaN, Double.NaN, 140, 160, Double.NaN, 150,
+			120, Double.NaN, 90, 80 };
+
+	private static void add (TrackStats stats, int from, int to)
+	{
+		for (int i = from; i < to; i++)
+			stats.add(i * 1000L, 48 + i * 1e-4, 11, ALTITUDES[i], Float.NaN);
+	}
+
+	@Test
+	public void mergeJoinsAtTheFirstKnownAltitude()
+	{
+		TrackStats whole = new TrackStats();
+		add(whole, 0, ALTITUDES.length);
+		assertEquals(60, whole.getElevationGain(), 0);
+		assertEquals(80, whole.getElevationLoss(), 0);
+
+		// every part but the first starts with an unknown altitude
+		int[] joins = { 0, 2, 6, 9, ALTITUDES.length };
+		TrackStats merged = new TrackStats();
+		for (int j = 0; j + 1 < joins.length; j++)
+		{
+			TrackStats part = new TrackStats();
+			add(part, joins[j], joins[j + 1]);
+			merged.merge(part);
+		}
+		assertEquals(whole.getCount(), merged.getCount());
+		assertEquals(whole.getDistance(), merged.getDistance(), 1e-6);
+		assertEquals(whole.getElevationGain(), merged.getElevationGain(), 0);
+		assertEquals(whole.getElevationLoss(), merged.getElevationLoss(), 0);
+	}
+
+	@Test
+	public void standingStillDoesNotRaiseTheAverageSpeed()
+	{
+		// 10 s at about 11 m/s, a minute of position noise, 10 s at 11 m/s
+		TrackStats whole = new TrackStats();
+		TrackStats first = new TrackStats();
+		TrackStats second = new TrackStats();
+		double moving = 0;
+		double lat = 48;
+		for (int i = 0; i <= 80; i++)
+		{
+			double next = i <= 10 ? 48 + i * 1e-4 : i <= 70 ? 48.001 + (i % 2) * 2e-6 : 48.001 + (i - 70) * 1e-4;
+			if (i > 0 && (i <= 10 || i > 70))
+				moving += GeodeticOrigin.distanceBetween(lat, 11, next, 11);
+			lat = next;
+			whole.add(i * 1000L, lat, 11, Double.NaN, Float.NaN);
+			(i < 40 ? first : second).add(i * 1000L, lat, 11, Double.NaN, Float.NaN);
+		}
+		assertEquals(20000, whole.getMovingTime());
+		assertEquals(moving, whole.getMovingDistance(), 1e-6);
+		assertEquals(moving / 20, whole.getAverageSpeed(), 1e-9);
+		// the noise still counts towards the distance
+		assertEquals(moving + 60 * 0.2224, whole.getDistance(), 0.01);
+
+		first.merge(second);
+		assertEquals(whole.getMovingDistance(), first.getMovingDistance(), 1e-6);
+		assertEquals(whole.getAverageSpeed(), first.getAverageSpeed(), 1e-9);
+	}
+
+	@Test
+	public void mergeOfPartsWithoutAltitudeKeepsTheFirstKnown()
+	{
+		// a part without any altitude merged into an empty accumulator
+		TrackStats left = new TrackStats();
+		TrackStats none = new TrackStats();
+		none.add(0, 48, 11, Double.NaN, Float.NaN);
+		left.merge(none);
+		TrackStats climb = new TrackStats();
+		climb.add(1000, 48.0001, 11, 100, Float.NaN);
+		climb.add(2000, 48.0002, 11, 130, Float.NaN);
+		left.merge(climb);
+
+		TrackStats right = new TrackStats();
+		right.add(3000, 48.0003, 11, Double.NaN, Float.NaN);
+		right.add(4000, 48.0004, 11, 100, Float.NaN);
+		left.merge(right);
+		assertEquals(30, left.getElevationGain(), 0);
+		assertEquals(30, left.getElevationLoss(), 0);
+	}
+}
@@ -0,0 +1,193 @@
+package com.prach.mashup.gpstest;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * UpdateScheduler driving a fake LocationRegistrar: the parameters for
+ * each state and mode, the hysteresis between the states, the accuracy
+ * bound on the distance and when it registers again.
+ */
+public class UpdateSchedulerTest
+{
+	private final FakeRegistrar registrar = new FakeRegistrar();
+	private long time;
+
+	private void fix (UpdateScheduler scheduler, float speed, float accuracy)
+	{
+		time += 1000;
+		scheduler.onFix(time, 48, 11, speed, accuracy);
+	}
+
+	private void assertRegistered (long minTime, float minDistance, int requests)
+	{
+		assertEquals(minTime, registrar.minTime);
+		assertEquals(minDistance, registrar.minDistance, 0);
+		assertEquals(requests, registrar.requests);
+	}
+
+	@Test
+	public void registersOnlyAfterStart()
+	{
+		UpdateScheduler scheduler = new UpdateScheduler(registrar, UpdateScheduler.MODE_BALANCED);
+		scheduler.setMode(UpdateScheduler.MODE_HIGH_ACCURACY);
+		fix(scheduler, 10, Float.NaN);
+		fix(scheduler, 10, Float.NaN);
+		assertEquals(0, registrar.requests);
+		assertEquals(-1, scheduler.getMinTime());
+
+		scheduler.start();
+		// the fix before start() already made it driving
+		assertRegistered(1000, 0, 1);
+		scheduler.stop();
+		assertEquals(1, registrar.removals);
+		scheduler.stop();
+		assertEquals(1, registrar.removals);
+		// start() registers again even though nothing changed
+		scheduler.start();
+		assertRegistered(1000, 0, 2);
+	}
+
+	@Test
+	public void parametersPerStateAndMode()
+	{
+		UpdateScheduler scheduler = new UpdateScheduler(registrar, UpdateScheduler.MODE_BALANCED);
+		scheduler.start();
+		// walking until the first fix
+		assertRegistered(10000, 10, 1);
+		fix(scheduler, 0, Float.NaN);
+		assertRegistered(60000, 50, 2);
+		scheduler.setMode(UpdateScheduler.MODE_LOW_POWER);
+		assertRegistered(180000, 100, 3);
+		scheduler.setMode(UpdateScheduler.MODE_HIGH_ACCURACY);
+		assertRegistered(30000, 25, 4);
+
+		// the smoothed speed reaches WALKING first, then DRIVING
+		fix(scheduler, 10, Float.NaN);
+		assertRegistered(5000, 0, 5);
+		fix(scheduler, 10, Float.NaN);
+		assertRegistered(1000, 0, 6);
+		scheduler.setMode(UpdateScheduler.MODE_BALANCED);
+		assertRegistered(2000, 20, 7);
+		scheduler.setMode(UpdateScheduler.MODE_LOW_POWER);
+		assertRegistered(6000, 40, 8);
+		assertEquals(8, scheduler.getRegistrations());
+	}
+
+	@Test
+	public void statesHaveHysteresis()
+	{
+		assertEquals(UpdateScheduler.STATIONARY, UpdateScheduler.classify(UpdateScheduler.STATIONARY, 0.69f));
+		assertEquals(UpdateScheduler.WALKING, UpdateScheduler.classify(UpdateScheduler.STATIONARY, 0.7f));
+		assertEquals(UpdateScheduler.WALKING, UpdateScheduler.classify(UpdateScheduler.WALKING, 0.5f));
+		assertEquals(UpdateScheduler.STATIONARY, UpdateScheduler.classify(UpdateScheduler.WALKING, 0.4f));
+		assertEquals(UpdateScheduler.DRIVING, UpdateScheduler.classify(UpdateScheduler.STATIONARY, 4f));
+		assertEquals(UpdateScheduler.DRIVING, UpdateScheduler.classify(UpdateScheduler.DRIVING, 3f));
+		assertEquals(UpdateScheduler.WALKING, UpdateScheduler.classify(UpdateScheduler.DRIVING, 2f));
+		assertEquals(UpdateScheduler.STATIONARY, UpdateScheduler.classify(UpdateScheduler.DRIVING, 0.2f));
+	}
+
+	@Test
+	public void speedNearAThresholdDoesNotFlip()
+	{
+		UpdateScheduler scheduler = new UpdateScheduler(registrar, UpdateScheduler.MODE_BALANCED);
+		scheduler.start();
+		fix(scheduler, 4.5f, Float.NaN);
+		assertRegistered(2000, 20, 2);
+		// around the threshold of DRIVING, but above the hysteresis
+		for (int i = 0; i < 50; i++)
+			fix(scheduler, i % 2 == 0 ? 3.5f : 4.5f, Float.NaN);
+		assertRegistered(2000, 20, 2);
+
+		// slowing down leaves DRIVING only once the smoothed speed is well
+		// below its threshold, not at the first fix below it
+		int fixes = 0;
+		while (registrar.requests == 2)
+		{
+			fix(scheduler, 0.5f, Float.NaN);
+			fixes++;
+		}
+		assertRegistered(10000, 10, 3);
+		assertEquals(2, fixes);
+		for (int i = 0; i < 50; i++)
+			fix(scheduler, 0.5f, Float.NaN);
+		assertRegistered(10000, 10, 3);
+	}
+
+	@Test
+	public void speedIsDerivedFromThePositions()
+	{
+		UpdateScheduler scheduler = new UpdateScheduler(registrar, UpdateScheduler.MODE_BALANCED);
+		scheduler.start();
+		scheduler.onFix(1000, 48, 11, Float.NaN, Float.NaN);
+		assertRegistered(10000, 10, 1);
+		// about 11 m in one second
+		scheduler.onFix(2000, 48.0001, 11, Float.NaN, Float.NaN);
+		assertRegistered(2000, 20, 2);
+	}
+
+	@Test
+	public void accuracyBoundsTheDistance()
+	{
+		UpdateScheduler scheduler = new UpdateScheduler(registrar, UpdateScheduler.MODE_BALANCED);
+		scheduler.start();
+		fix(scheduler, 1, 60);
+		assertRegistered(10000, 30, 2);
+		// 29 m round up to the same 30 m, no new registration
+		fix(scheduler, 1, 58);
+		assertRegistered(10000, 30, 2);
+		fix(scheduler, 1, 62);
+		assertRegistered(10000, 35, 3);
+		// the accuracy counts up to 100 m
+		fix(scheduler, 1, 500);
+		assertRegistered(10000, 50, 4);
+		fix(scheduler, 1, Float.NaN);
+		assertRegistered(10000, 10, 5);
+	}
+
+	@Test
+	public void resetForgetsTheSpeed()
+	{
+		UpdateScheduler scheduler = new UpdateScheduler(registrar, UpdateScheduler.MODE_BALANCED);
+		scheduler.start();
+		fix(scheduler, 10, Float.NaN);
+		fix(scheduler, 10, Float.NaN);
+		assertRegistered(2000, 20, 2);
+		// a replay starting over from standing still
+		scheduler.reset();
+		time = 0;
+		fix(scheduler, 0, Float.NaN);
+		assertRegistered(60000, 50, 3);
+		// the speed is derived again from the fixes of the new time line
+		scheduler.onFix(2000, 48, 11, Float.NaN, Float.NaN);
+		scheduler.onFix(3000, 48.0001, 11, Float.NaN, Float.NaN);
+		assertRegistered(10000, 10, 4);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownMode()
+	{
+		new UpdateScheduler(registrar, 3);
+	}
+
+	private static final class FakeRegistrar implements LocationRegistrar
+	{
+		long minTime = -1;
+		float minDistance = -1;
+		int requests;
+		int removals;
+
+		public void requestUpdates (long minTime, float minDistance)
+		{
+			this.minTime = minTime;
+			this.minDistance = minDistance;
+			requests++;
+		}
+
+		public void removeUpdates()
+		{
+			removals++;
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package com.prach.mashup.gpstest;
+
+import android.location.Location;
+import android.location.LocationListener;
+import android.location.LocationManager;
+import android.os.Bundle;
+import android.util.Log;
+
+/**
+ * The fixes of one provider of android.location.LocationManager as a
+ * LocationSource. The fixes are delivered on the thread that registered.
+ */
+public class AndroidLocationSource implements LocationSource, LocationListener {
+	private final LocationManager mLocationManager;
+	private final String mProvider;
+	private FixListener mListener;
+
+	public AndroidLocationSource(LocationManager locationManager, String provider) {
+		mLocationManager = locationManager;
+		mProvider = provider;
+	}
+
+	public void setListener(FixListener listener) {
+		mListener = listener;
+	}
+
+	public void requestUpdates(long minTime, float minDistance) {
+		Log.i("GPSLocator", "Requesting updates every " + minTime + " ms / " + minDistance + " m");
+		Metrics.REGISTRATIONS.increment();
+		mLocationManager.requestLocationUpdates(mProvider, minTime, minDistance, this);
+	}
+
+	public void removeUpdates() {
+		mLocationManager.removeUpdates(this);
+	}
+
+	public void deliverLastFix() {
+		Location location = mLocationManager.getLastKnownLocation(mProvider);
+		if (location != null)
+			onLocationChanged(location);
+	}
+
+	public long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	@Override
+	public void onLocationChanged(Location location) {
+		Metrics.FIX_AGE.record(System.currentTimeMillis() - location.getTime());
+		mListener.onFix(location.getTime(), location.getLatitude(), location.getLongitude(),
+				location.hasAltitude() ? location.getAltitude() : Double.NaN,
+				location.hasAccuracy() ? location.getAccuracy() : Float.NaN,
+				location.hasSpeed() ? location.getSpeed() : Float.NaN);
+	}
+
+	@Override
+	public void onProviderDisabled(String provider) {
+		// the registration survives provider changes, UpdateScheduler
+		// re-registers only when its parameters change
+	}
+
+	@Override
+	public void onProviderEnabled(String provider) {
+		// the registration survives provider changes, UpdateScheduler
+		// re-registers only when its parameters change
+	}
+
+	@Override
+	public void onStatusChanged(String provider, int status, Bundle extras) {
+		// the registration survives provider changes, UpdateScheduler
+		// re-registers only when its parameters change
+	}
+}
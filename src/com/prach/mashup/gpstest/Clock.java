@@ -0,0 +1,14 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * A source of the current time, so that time-dependent classes can be driven
+ * by a fake in checks. On Android SystemClock.elapsedRealtime() is a good
+ * choice, since it does not jump when the wall clock is set.
+ */
+public interface Clock
+{
+	/**
+	 * @return the current time in milliseconds
+	 */
+	long now();
+}
@@ -0,0 +1,297 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * Formats coordinates in decimal degrees into the string syntaxes of
+ * Coordinates.convert(String), or as plain decimals, without creating
+ * intermediate strings. The output does not depend on the locale.
+ *
+ * The values are rounded to fixed point integers once (thousandths of a
+ * second, or hundred-thousandths of a minute) and the digits are written from
+ * those integers, so no floating point to string conversion is involved.
+ * Negative coordinates are written as a minus sign followed by the formatted
+ * magnitude, for example -0.5 becomes "-0:30:00.000". A magnitude below 180
+ * is never rounded up to 180: 179.99999999 becomes "179:59:59.999", so the
+ * output stays within the range of Coordinates.convert(String).
+ *
+ * The StringBuilder forms append the digits directly and allocate nothing
+ * unless the StringBuilder has to grow.
+ *
+ * @see Coordinates#convert(double, int)
+ */
+public final class CoordinateFormat
+{
+	/** Maximum number of characters written by any of the format methods. */
+	public static final int MAX_LENGTH = 14;
+
+	private static final long MILLIS_PER_DEGREE = 3600000L;
+	private static final long MILLIS_PER_MINUTE = 60000L;
+	private static final long FRACTIONS_PER_DEGREE = 6000000L;
+	private static final long FRACTIONS_PER_MINUTE = 100000L;
+	private static final long DECIMALS_PER_DEGREE = 10000000L;
+	private static final int DECIMALS = 7;
+
+	private CoordinateFormat()
+	{
+	}
+
+	/**
+	 * Writes a coordinate into a char array. With DD_MM_SS the output is
+	 * "DD:MM:SS.sss", with DD_MM it is "DD:MM.mmmmm".
+	 *
+	 * @param coordinate
+	 *            the coordinate in decimal degrees, within [-180.0, 180.0]
+	 * @param outputType
+	 *            Coordinates.DD_MM_SS or Coordinates.DD_MM
+	 * @param buf
+	 *            the destination, with room for MAX_LENGTH chars at offset
+	 * @param offset
+	 *            the index of the first char to write
+	 * @return the number of chars written
+	 * @throws java.lang.IllegalArgumentException
+	 *             if the outputType is unknown or the coordinate is out of
+	 *             range or Double.NaN
+	 */
+	public static int format (double coordinate, int outputType, char[] buf, int offset)
+	{
+		checkRange(coordinate);
+		int pos = offset;
+		if (outputType == Coordinates.DD_MM_SS)
+		{
+			long t = round(coordinate, MILLIS_PER_DEGREE);
+			if (coordinate < 0 && t != 0)
+				buf[pos++] = '-';
+			pos = writeInt(buf, pos, (int) (t / MILLIS_PER_DEGREE));
+			int rem = (int) (t % MILLIS_PER_DEGREE);
+			buf[pos++] = ':';
+			pos = writeDigits(buf, pos, rem / (int) MILLIS_PER_MINUTE, 2);
+			rem %= (int) MILLIS_PER_MINUTE;
+			buf[pos++] = ':';
+			pos = writeDigits(buf, pos, rem / 1000, 2);
+			buf[pos++] = '.';
+			pos = writeDigits(buf, pos, rem % 1000, 3);
+		}
+		else if (outputType == Coordinates.DD_MM)
+		{
+			long t = round(coordinate, FRACTIONS_PER_DEGREE);
+			if (coordinate < 0 && t != 0)
+				buf[pos++] = '-';
+			pos = writeInt(buf, pos, (int) (t / FRACTIONS_PER_DEGREE));
+			int rem = (int) (t % FRACTIONS_PER_DEGREE);
+			buf[pos++] = ':';
+			pos = writeDigits(buf, pos, rem / (int) FRACTIONS_PER_MINUTE, 2);
+			buf[pos++] = '.';
+			pos = writeDigits(buf, pos, rem % (int) FRACTIONS_PER_MINUTE, 5);
+		}
+		else
+		{
+			throw new IllegalArgumentException();
+		}
+		return pos - offset;
+	}
+
+	/**
+	 * Appends a coordinate to a StringBuilder, in the same form as
+	 * format(double, int, char[], int).
+	 *
+	 * @return the StringBuilder passed in
+	 * @see #format(double, int, char[], int)
+	 */
+	public static StringBuilder format (double coordinate, int outputType, StringBuilder sb)
+	{
+		checkRange(coordinate);
+		if (outputType == Coordinates.DD_MM_SS)
+		{
+			long t = round(coordinate, MILLIS_PER_DEGREE);
+			if (coordinate < 0 && t != 0)
+				sb.append('-');
+			sb.append((int) (t / MILLIS_PER_DEGREE));
+			int rem = (int) (t % MILLIS_PER_DEGREE);
+			sb.append(':');
+			appendDigits(sb, rem / (int) MILLIS_PER_MINUTE, 2);
+			rem %= (int) MILLIS_PER_MINUTE;
+			sb.append(':');
+			appendDigits(sb, rem / 1000, 2);
+			sb.append('.');
+			return appendDigits(sb, rem % 1000, 3);
+		}
+		if (outputType == Coordinates.DD_MM)
+		{
+			long t = round(coordinate, FRACTIONS_PER_DEGREE);
+			if (coordinate < 0 && t != 0)
+				sb.append('-');
+			sb.append((int) (t / FRACTIONS_PER_DEGREE));
+			int rem = (int) (t % FRACTIONS_PER_DEGREE);
+			sb.append(':');
+			appendDigits(sb, rem / (int) FRACTIONS_PER_MINUTE, 2);
+			sb.append('.');
+			return appendDigits(sb, rem % (int) FRACTIONS_PER_MINUTE, 5);
+		}
+		throw new IllegalArgumentException();
+	}
+
+	/**
+	 * Writes a coordinate in the display form DD&deg; MM' SS" into a char
+	 * array, rounded to whole seconds.
+	 *
+	 * @param coordinate
+	 *            the coordinate in decimal degrees, within [-180.0, 180.0]
+	 * @param buf
+	 *            the destination, with room for MAX_LENGTH chars at offset
+	 * @param offset
+	 *            the index of the first char to write
+	 * @return the number of chars written
+	 * @throws java.lang.IllegalArgumentException
+	 *             if the coordinate is out of range or Double.NaN
+	 */
+	public static int formatDisplay (double coordinate, char[] buf, int offset)
+	{
+		checkRange(coordinate);
+		int pos = offset;
+		int t = (int) round(coordinate, 3600);
+		if (coordinate < 0 && t != 0)
+			buf[pos++] = '-';
+		pos = writeInt(buf, pos, t / 3600);
+		buf[pos++] = '\u00b0';
+		buf[pos++] = ' ';
+		pos = writeDigits(buf, pos, t / 60 % 60, 2);
+		buf[pos++] = '\'';
+		buf[pos++] = ' ';
+		pos = writeDigits(buf, pos, t % 60, 2);
+		buf[pos++] = '"';
+		return pos - offset;
+	}
+
+	/**
+	 * Appends a coordinate in the display form to a StringBuilder.
+	 *
+	 * @return the StringBuilder passed in
+	 * @see #formatDisplay(double, char[], int)
+	 */
+	public static StringBuilder formatDisplay (double coordinate, StringBuilder sb)
+	{
+		checkRange(coordinate);
+		int t = (int) round(coordinate, 3600);
+		if (coordinate < 0 && t != 0)
+			sb.append('-');
+		sb.append(t / 3600).append('\u00b0').append(' ');
+		appendDigits(sb, t / 60 % 60, 2).append('\'').append(' ');
+		return appendDigits(sb, t % 60, 2).append('"');
+	}
+
+	/**
+	 * Writes a coordinate as a decimal number of degrees into a char array,
+	 * for example "48.1371", with at most seven decimals (about 1 cm) and
+	 * without trailing zeros, but at least one decimal.
+	 *
+	 * @param coordinate
+	 *            the coordinate in decimal degrees, within [-180.0, 180.0]
+	 * @param buf
+	 *            the destination, with room for MAX_LENGTH chars at offset
+	 * @param offset
+	 *            the index of the first char to write
+	 * @return the number of chars written
+	 * @throws java.lang.IllegalArgumentException
+	 *             if the coordinate is out of range or Double.NaN
+	 */
+	public static int formatDecimal (double coordinate, char[] buf, int offset)
+	{
+		checkRange(coordinate);
+		int pos = offset;
+		long t = round(coordinate, DECIMALS_PER_DEGREE);
+		if (coordinate < 0 && t != 0)
+			buf[pos++] = '-';
+		pos = writeInt(buf, pos, (int) (t / DECIMALS_PER_DEGREE));
+		buf[pos++] = '.';
+		int rem = (int) (t % DECIMALS_PER_DEGREE);
+		int digits = DECIMALS;
+		while (digits > 1 && rem % 10 == 0)
+		{
+			rem /= 10;
+			digits--;
+		}
+		return writeDigits(buf, pos, rem, digits) - offset;
+	}
+
+	/**
+	 * Appends a coordinate as a decimal number to a StringBuilder.
+	 *
+	 * @return the StringBuilder passed in
+	 * @see #formatDecimal(double, char[], int)
+	 */
+	public static StringBuilder formatDecimal (double coordinate, StringBuilder sb)
+	{
+		checkRange(coordinate);
+		long t = round(coordinate, DECIMALS_PER_DEGREE);
+		if (coordinate < 0 && t != 0)
+			sb.append('-');
+		sb.append((int) (t / DECIMALS_PER_DEGREE)).append('.');
+		int rem = (int) (t % DECIMALS_PER_DEGREE);
+		int digits = DECIMALS;
+		while (digits > 1 && rem % 10 == 0)
+		{
+			rem /= 10;
+			digits--;
+		}
+		return appendDigits(sb, rem, digits);
+	}
+
+	private static void checkRange (double coordinate)
+	{
+		// also catches NaN
+		if (!(coordinate >= -180 && coordinate <= 180))
+			throw new IllegalArgumentException("Coordinate out of range: " + coordinate);
+	}
+
+	/**
+	 * Rounds the magnitude of a coordinate to a multiple of 1 / scale
+	 * degrees. A magnitude below 180 is rounded down to the last multiple
+	 * below 180 rather than up to 180.
+	 */
+	private static long round (double coordinate, long scale)
+	{
+		double magnitude = Math.abs(coordinate);
+		long t = Math.round(magnitude * scale);
+		if (t >= 180 * scale && magnitude < 180)
+			t = 180 * scale - 1;
+		return t;
+	}
+
+	/**
+	 * Writes a non-negative int without leading zeros.
+	 */
+	private static int writeInt (char[] buf, int pos, int value)
+	{
+		if (value >= 100)
+			return writeDigits(buf, pos, value, 3);
+		if (value >= 10)
+			return writeDigits(buf, pos, value, 2);
+		return writeDigits(buf, pos, value, 1);
+	}
+
+	/**
+	 * Writes the lowest digits of a non-negative int, padded with zeros.
+	 */
+	private static int writeDigits (char[] buf, int pos, int value, int digits)
+	{
+		for (int i = pos + digits - 1; i >= pos; i--)
+		{
+			buf[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		return pos + digits;
+	}
+
+	/**
+	 * Appends a non-negative int of at most the given number of digits,
+	 * padded with zeros.
+	 */
+	private static StringBuilder appendDigits (StringBuilder sb, int value, int digits)
+	{
+		for (int limit = 10; --digits > 0; limit *= 10)
+		{
+			if (value < limit)
+				sb.append('0');
+		}
+		return sb.append(value);
+	}
+}
@@ -0,0 +1,253 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * Parses the string syntaxes of Coordinates.convert(String) straight from a
+ * CharSequence or from ASCII bytes, without creating substrings.
+ *
+ * Each coordinate is validated against the BNF in a single pass. The value
+ * is accumulated as a fixed point integer (thousandths of a second, or
+ * hundred-thousandths of a minute) and divided once, so the result is the
+ * closest double to the exact decimal value. A leading minus sign applies to
+ * the whole coordinate, for example "-0:30" is -0.5.
+ *
+ * @see Coordinates#convert(String)
+ * @see CoordinateFormat
+ */
+public final class CoordinateParser
+{
+	private static final double MILLIS_PER_DEGREE = 3600000.0;
+	private static final double FRACTIONS_PER_DEGREE = 6000000.0;
+
+	private CoordinateParser()
+	{
+	}
+
+	/**
+	 * Parses one coordinate.
+	 *
+	 * @param s
+	 *            the characters, for example a String or a CharBuffer
+	 * @param offset
+	 *            the index of the first character
+	 * @param length
+	 *            the number of characters
+	 * @return the coordinate in decimal degrees
+	 * @throws java.lang.IllegalArgumentException
+	 *             if the characters do not comply with the syntax
+	 */
+	public static double parse (CharSequence s, int offset, int length)
+	{
+		return parseToken(s, offset, offset + length);
+	}
+
+	/**
+	 * Parses one coordinate from ASCII bytes.
+	 *
+	 * @see #parse(CharSequence, int, int)
+	 */
+	public static double parse (byte[] b, int offset, int length)
+	{
+		return parseToken(new AsciiSequence(b), offset, offset + length);
+	}
+
+	/**
+	 * Parses a sequence of coordinates separated by a delimiter, for example
+	 * one coordinate per line. Spaces, tabs and line breaks around a
+	 * coordinate are ignored, and so are empty tokens.
+	 *
+	 * @param s
+	 *            the characters, for example a String or a CharBuffer
+	 * @param offset
+	 *            the index of the first character
+	 * @param length
+	 *            the number of characters
+	 * @param delimiter
+	 *            the character between two coordinates, for example ',' or
+	 *            '\n'
+	 * @param values
+	 *            receives the coordinates in decimal degrees
+	 * @param valuesOffset
+	 *            the index in values for the first coordinate
+	 * @return the number of coordinates stored into values
+	 * @throws java.lang.IllegalArgumentException
+	 *             if a token does not comply with the syntax
+	 * @throws java.lang.ArrayIndexOutOfBoundsException
+	 *             if values is too small
+	 */
+	public static int parseAll (CharSequence s, int offset, int length, char delimiter,
+			double[] values, int valuesOffset)
+	{
+		int end = offset + length;
+		int count = 0;
+		int start = offset;
+		while (start <= end)
+		{
+			int stop = start;
+			while (stop < end && s.charAt(stop) != delimiter)
+				stop++;
+
+			int from = start;
+			int to = stop;
+			while (from < to && isBlank(s.charAt(from)))
+				from++;
+			while (to > from && isBlank(s.charAt(to - 1)))
+				to--;
+			if (from < to)
+				values[valuesOffset + count++] = parseToken(s, from, to);
+
+			start = stop + 1;
+		}
+		return count;
+	}
+
+	/**
+	 * Parses a sequence of coordinates from ASCII bytes.
+	 *
+	 * @see #parseAll(CharSequence, int, int, char, double[], int)
+	 */
+	public static int parseAll (byte[] b, int offset, int length, char delimiter,
+			double[] values, int valuesOffset)
+	{
+		return parseAll(new AsciiSequence(b), offset, length, delimiter, values, valuesOffset);
+	}
+
+	private static boolean isBlank (char c)
+	{
+		return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+	}
+
+	private static double parseToken (CharSequence s, int start, int end)
+	{
+		int pos = start;
+		boolean negative = pos < end && s.charAt(pos) == '-';
+		if (negative)
+			pos++;
+
+		// degreedigits = digit | nonzerodigit digit | "1" digit digit
+		int degrees = 0;
+		int digits = 0;
+		while (pos < end && digits < 3 && isDigit(s.charAt(pos)))
+		{
+			degrees = degrees * 10 + (s.charAt(pos++) - '0');
+			digits++;
+		}
+		char first = digits > 0 ? s.charAt(pos - digits) : 0;
+		if (digits == 0 || (digits > 1 && first == '0') || (digits == 3 && first != '1'))
+			throw error(s, start, end);
+
+		if (pos >= end || s.charAt(pos++) != ':')
+			throw error(s, start, end);
+		int minutes = minSec(s, pos, end, start);
+		pos += 2;
+
+		long value;
+		boolean zero;
+		double unitsPerDegree;
+		if (pos < end && s.charAt(pos) == ':')
+		{
+			// degrees ":" minutes ":" seconds ["." 1*3digit]
+			int seconds = minSec(s, pos + 1, end, start);
+			pos += 3;
+			int frac = pos < end ? fraction(s, pos, end, 3, start) : 0;
+			value = ((degrees * 60L + minutes) * 60 + seconds) * 1000 + frac;
+			zero = minutes == 0 && seconds == 0 && frac == 0;
+			unitsPerDegree = MILLIS_PER_DEGREE;
+		}
+		else
+		{
+			// degrees ":" minutes ["." 1*5digit]
+			int frac = pos < end ? fraction(s, pos, end, 5, start) : 0;
+			value = (degrees * 60L + minutes) * 100000 + frac;
+			zero = minutes == 0 && frac == 0;
+			unitsPerDegree = FRACTIONS_PER_DEGREE;
+		}
+
+		if (degrees > 179 && !(negative && degrees == 180 && zero))
+			throw error(s, start, end);
+
+		double result = value / unitsPerDegree;
+		return negative ? -result : result;
+	}
+
+	/**
+	 * Reads two digits for minutes or seconds, the first one in [0, 5].
+	 */
+	private static int minSec (CharSequence s, int pos, int end, int start)
+	{
+		if (pos + 2 > end)
+			throw error(s, start, end);
+		char c1 = s.charAt(pos);
+		char c2 = s.charAt(pos + 1);
+		if (c1 < '0' || c1 > '5' || !isDigit(c2))
+			throw error(s, start, end);
+		return (c1 - '0') * 10 + (c2 - '0');
+	}
+
+	/**
+	 * Reads "." followed by 1 to maxDigits digits up to the end of the token
+	 * and scales the result to maxDigits digits.
+	 */
+	private static int fraction (CharSequence s, int pos, int end, int maxDigits, int start)
+	{
+		int digits = end - pos - 1;
+		if (s.charAt(pos) != '.' || digits < 1 || digits > maxDigits)
+			throw error(s, start, end);
+		int frac = 0;
+		for (int i = pos + 1; i < end; i++)
+		{
+			char c = s.charAt(i);
+			if (!isDigit(c))
+				throw error(s, start, end);
+			frac = frac * 10 + (c - '0');
+		}
+		for (; digits < maxDigits; digits++)
+			frac *= 10;
+		return frac;
+	}
+
+	private static boolean isDigit (char c)
+	{
+		return c >= '0' && c <= '9';
+	}
+
+	private static IllegalArgumentException error (CharSequence s, int start, int end)
+	{
+		return new IllegalArgumentException("Incorrect format: " + s.subSequence(start, end));
+	}
+
+	/**
+	 * Read-only view of ASCII bytes as characters.
+	 */
+	private static final class AsciiSequence implements CharSequence
+	{
+		private final byte[] bytes;
+
+		AsciiSequence (byte[] bytes)
+		{
+			this.bytes = bytes;
+		}
+
+		public char charAt (int index)
+		{
+			return (char) (bytes[index] & 0xff);
+		}
+
+		public int length()
+		{
+			return bytes.length;
+		}
+
+		public CharSequence subSequence (int start, int end)
+		{
+			char[] chars = new char[end - start];
+			for (int i = 0; i < chars.length; i++)
+				chars[i] = charAt(start + i);
+			return new String(chars);
+		}
+
+		public String toString()
+		{
+			return subSequence(0, bytes.length).toString();
+		}
+	}
+}
@@ -14,6 +14,9 @@ public class Coordinates
 	 */
 	public static final int DD_MM_SS = 1;
 
+	/** Mean earth radius in meters used by the haversine formula. */
+	static final double EARTH_RADIUS = 6371000;
+
 	private double latitude;
 	private double longitude;
 	private float altitude;
@@ -182,6 +185,9 @@ public class Coordinates
 	 * corresponding syntax 1 string is "61:30:36" and the corresponding syntax
 	 * 2 string is "61:30.6".
 	 *
+	 * A leading minus sign negates the whole coordinate, so "-61:30:36" is
+	 * -61.51d.
+	 *
 	 * @param coordinate
 	 *            a String in either of the two representation specified above
 	 *
@@ -192,68 +198,14 @@ public class Coordinates
 	 *             defined syntax for the specified types
 	 * @throws java.lang.NullPointerException
 	 *             if the coordinate string is null
+	 * @see CoordinateParser
 	 */
 	public static double convert(String coordinate)
-	{   
-		try
-		{       
-			int degrees;
-			int minutes;
-			int seconds;
-			int decimalFrac;
-
-			//System.out.println("coor: " + coordinate);
-
-			if (coordinate.indexOf(':') == -1)
-				throw new IllegalArgumentException();
-
-			if (coordinate.indexOf('.') == -1)
-				coordinate = coordinate + ".0";
-
-			degrees = Integer.parseInt(coordinate.substring(0, coordinate.indexOf(':')));
-			//System.out.println("degrees: " + degrees);
-
-			if ( (degrees < -179) || (degrees > 179) )
-				throw new IllegalArgumentException();
-
-			if ((coordinate.indexOf(':', coordinate.indexOf(':')+1) == -1) &&
-					(coordinate.indexOf('.', coordinate.indexOf(':')) != -1) )
-			{
-				// decimal mode
-				minutes = Integer.parseInt(coordinate.substring(coordinate.indexOf(':')+1, coordinate.indexOf('.', coordinate.indexOf(':'))));
-
-				if ((minutes < 0) || (minutes > 59))
-					throw new IllegalArgumentException();
-
-
-				decimalFrac = Integer.parseInt(coordinate.substring(coordinate.indexOf('.', coordinate.indexOf(':'))+1, coordinate.length()));
-				if (decimalFrac < 0)
-					throw new IllegalArgumentException();
-
-				return degrees + (Double.parseDouble(minutes+"."+decimalFrac)/60D);
-			}
-
-			else if ((coordinate.indexOf(':', coordinate.indexOf(':')) != -1) &&
-					(coordinate.indexOf('.', coordinate.indexOf(':', coordinate.indexOf(':'))) != -1) )
-			{
-				minutes = Integer.parseInt(coordinate.substring(coordinate.indexOf(':')+1, coordinate.indexOf(':', coordinate.indexOf(':')+1)));
-				seconds = Integer.parseInt(coordinate.substring(coordinate.indexOf(':', coordinate.indexOf(':')+1)+1, coordinate.indexOf('.', coordinate.indexOf(':', coordinate.indexOf(':')))));
-				decimalFrac = Integer.parseInt(coordinate.substring( coordinate.indexOf('.', coordinate.indexOf(':', coordinate.indexOf(':')))+1, coordinate.length()));
-
-				return degrees + (minutes/60D) + (Double.parseDouble(seconds+"."+decimalFrac) / 3600D);
-			}
-
-			else
-			{
-				throw new IllegalArgumentException();
-			}
-		}
-		catch (NumberFormatException e)
-		{
-			throw new IllegalArgumentException("Incorrect format: " + coordinate);
-		}
-
-		//return 0;
+	{
+		long start = Metrics.CONVERT.start();
+		double value = CoordinateParser.parse(coordinate, 0, coordinate.length());
+		Metrics.CONVERT.recordSince(start);
+		return value;
 	}
 
 	/**
@@ -278,29 +230,18 @@ public class Coordinates
 	 *             defined in this class or if the coordinate value is not
 	 *             within the range [-180.0, 180.0) or is Double.NaN
 	 * @see #convert(string)
+	 * @see CoordinateFormat
 	 */
 	public static String convert (double coordinate, int outputType)
 	{
-
-		if (outputType == DD_MM)
-		{
-			int deg = (int) AuxMath.floor(coordinate);
-			float min = (float) ((coordinate - deg) * 60);
-			return deg + ":" + min;
-		}
-		else if (outputType == DD_MM_SS)
-		{
-			int deg = (int) AuxMath.floor(coordinate);
-			float min = (float) ((coordinate - deg) * 60);
-			float sec = (float) ((min - AuxMath.floor(min)) * 60);
-			return deg + ":" + ((int) min) + ":" + sec;
-		}
-		else
-		{
-			throw new IllegalArgumentException();
-		}
-
-		//return "";
+		if (coordinate == 180)
+			throw new IllegalArgumentException("Coordinate out of range: " + coordinate);
+
+		long start = Metrics.CONVERT.start();
+		char[] buf = new char[CoordinateFormat.MAX_LENGTH];
+		String value = new String(buf, 0, CoordinateFormat.format(coordinate, outputType, buf, 0));
+		Metrics.CONVERT.recordSince(start);
+		return value;
 	}
 
 	/**
@@ -325,30 +266,8 @@ public class Coordinates
 	 */
 	public float azimuthTo (Coordinates to)
 	{
-		/*
-       double lat1 = getLatitude();
-       double lon1 = getLongitude();
-       double lat2 = to.getLatitude();
-       double lon2 = to.getLongitude();
-
-       double dtor = Math.PI / 180.0;
-       double rtod = 180.0 / Math.PI;
-
-       double distance = rtod
-		 * AuxMath.acos(Math.sin(lat1 * dtor) * Math.sin(lat2 * dtor)
-               + Math.cos(lat1 * dtor) * Math.cos(lat2 * dtor)
-		 * Math.cos((lon2 - lon1) * dtor));
-
-       double cosAzimuth = (Math.cos(lat1 * dtor) * Math.sin(lat2 * dtor) - Math
-               .sin(lat1 * dtor)
-		 * Math.cos(lat2 * dtor) * Math.cos((lat2 - lon1) * dtor))
-               / Math.sin(distance * dtor);
-
-       double sinAzimuth = Math.cos(lat2 * dtor) * Math.sin((lat2 - lon1) * dtor) / Math.sin(distance * dtor);
-
-       return (float)(rtod * AuxMath.atan2(sinAzimuth, cosAzimuth));
-		 */
-		return 0;
+		return (float) GeodeticOrigin.azimuthBetween(getLatitude(), getLongitude(), to.getLatitude(),
+				to.getLongitude());
 	}
 
 	/**
@@ -365,6 +284,124 @@ public class Coordinates
 	 *             if the parameter is null
 	 */
 	public float distance (Coordinates to)
+	{
+		return (float) GeodeticOrigin.distanceBetween(getLatitude(), getLongitude(), to.getLatitude(),
+				to.getLongitude());
+	}
+
+	/**
+	 * Calculates the distances from one origin to many destinations and stores
+	 * them into a caller-supplied array. The destinations are given as two
+	 * parallel arrays of latitudes and longitudes in degrees, so no Coordinates
+	 * object is needed per point.
+	 *
+	 * The trigonometric terms of the origin are computed once per call and
+	 * nothing is allocated per point. The distances are great circle distances
+	 * on a sphere with the mean earth radius, which is accurate to about 0.5%
+	 * and cheap enough to rank many candidates. Use GeodeticOrigin for
+	 * ellipsoidal distances to many destinations.
+	 *
+	 * @param latitude
+	 *            the latitude of the origin in degrees
+	 * @param longitude
+	 *            the longitude of the origin in degrees
+	 * @param lats
+	 *            the latitudes of the destinations in degrees
+	 * @param lons
+	 *            the longitudes of the destinations in degrees
+	 * @param offset
+	 *            the index of the first destination in lats and lons
+	 * @param count
+	 *            the number of destinations
+	 * @param distances
+	 *            receives the distances in meters
+	 * @param distancesOffset
+	 *            the index in distances for the first result
+	 * @throws java.lang.ArrayIndexOutOfBoundsException
+	 *             if a range does not fit into its array
+	 * @see GeodeticOrigin#distances(double[], double[], int, int, float[], int)
+	 */
+	public static void distances (double latitude, double longitude,
+			double[] lats, double[] lons, int offset, int count,
+			float[] distances, int distancesOffset)
+	{
+		distances(latitude, longitude, lats, lons, offset, count,
+				distances, distancesOffset, Float11.TIER_PRECISE);
+	}
+
+	/**
+	 * Same as distances(double, double, double[], double[], int, int, float[],
+	 * int), with a selectable accuracy for the arc sine of the haversine
+	 * formula. Float11.TIER_FAST is meant for ranking candidates, where the
+	 * arc sine does not need to be exact; the error it adds stays below about
+	 * 260 m and shrinks for short distances.
+	 *
+	 * @param tier
+	 *            Float11.TIER_FAST or Float11.TIER_PRECISE
+	 * @see #distances(double, double, double[], double[], int, int, float[], int)
+	 */
+	public static void distances (double latitude, double longitude,
+			double[] lats, double[] lons, int offset, int count,
+			float[] distances, int distancesOffset, int tier)
+	{
+		double lat0 = Math.toRadians(latitude);
+		double lon0 = Math.toRadians(longitude);
+		double cosLat0 = Math.cos(lat0);
+
+		for (int i = 0; i < count; i++)
+		{
+			double lat = Math.toRadians(lats[offset + i]);
+			double dlon = lon0 - Math.toRadians(lons[offset + i]);
+			distances[distancesOffset + i] = (float) haversine(lat, Math.cos(lat), lat0, cosLat0, dlon, tier);
+		}
+	}
+
+	/**
+	 * Same as distances(double, double, double[], double[], int, int, float[],
+	 * int), but stores the results with double precision.
+	 *
+	 * @see #distances(double, double, double[], double[], int, int, float[], int)
+	 */
+	public static void distances (double latitude, double longitude,
+			double[] lats, double[] lons, int offset, int count,
+			double[] distances, int distancesOffset)
+	{
+		double lat0 = Math.toRadians(latitude);
+		double lon0 = Math.toRadians(longitude);
+		double cosLat0 = Math.cos(lat0);
+
+		for (int i = 0; i < count; i++)
+		{
+			double lat = Math.toRadians(lats[offset + i]);
+			double dlon = lon0 - Math.toRadians(lons[offset + i]);
+			distances[distancesOffset + i] = haversine(lat, Math.cos(lat), lat0, cosLat0, dlon, Float11.TIER_PRECISE);
+		}
+	}
+
+	/**
+	 * Converts points to unit vectors on the sphere, for the classes that
+	 * compare many points by their chord. The vector of lats[offset + i] and
+	 * lons[offset + i] is stored at xyz[3 * i], for i in [from, to).
+	 */
+	static void unitVectors (double[] lats, double[] lons, int offset, int from, int to, double[] xyz)
+	{
+		for (int i = from; i < to; i++)
+		{
+			double lat = Math.toRadians(lats[offset + i]);
+			double lon = Math.toRadians(lons[offset + i]);
+			double cosLat = Math.cos(lat);
+			xyz[3 * i] = cosLat * Math.cos(lon);
+			xyz[3 * i + 1] = cosLat * Math.sin(lon);
+			xyz[3 * i + 2] = Math.sin(lat);
+		}
+	}
+
+	/**
+	 * Haversine kernel shared by the batch distance methods.
+	 * Latitudes and the longitude difference are in radians, the result is in
+	 * meters. tier is the Float11 accuracy tier of the arc sine.
+	 */
+	static double haversine (double lat1, double cosLat1, double lat2, double cosLat2, double dlon, int tier)
 	{
 		/*
 		 * Haversine Formula (from R.W. Sinnott, "Virtues of the Haversine", Sky
@@ -373,26 +410,12 @@ public class Coordinates
 		 * See the following URL for more info on calculating distances:
 		 * http://www.census.gov/cgi-bin/geo/gisfaq?Q5.1
 		 */
+		double sinDlat = Math.sin((lat2 - lat1) / 2);
+		double sinDlon = Math.sin(dlon / 2);
 
+		double a = sinDlat * sinDlat + cosLat1 * cosLat2 * sinDlon * sinDlon;
 
-		double earthRadius = 6371; //km
-
-		double lat1 = Math.toRadians(to.getLatitude());
-		double lon1 = Math.toRadians(to.getLongitude());
-		double lat2 = Math.toRadians(getLatitude());
-		double lon2 = Math.toRadians(getLongitude());
-
-		double dlon = (lon2 - lon1);
-		double dlat = (lat2 - lat1);
-
-		double a = (Math.sin(dlat / 2)) * (Math.sin(dlat / 2))
-		+ (Math.cos(lat1) * Math.cos(lat2) * (Math.sin(dlon / 2)))
-		* (Math.cos(lat1) * Math.cos(lat2) * (Math.sin(dlon / 2)));
-
-		double c = 2 * AuxMath.asin(Math.min(1.0, Math.sqrt(a)));
-		double km = earthRadius * c;
-
-		return (float) (km * 1000);
-
-	}   
+		double c = 2 * AuxMath.asin(Math.min(1.0, Math.sqrt(a)), tier);
+		return EARTH_RADIUS * c;
+	}
 }
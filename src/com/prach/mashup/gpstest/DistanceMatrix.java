@@ -0,0 +1,273 @@
+package com.prach.mashup.gpstest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Computes the distances between every point of one set (the rows) and every
+ * point of another (the columns) into a flat row-major matrix.
+ *
+ * Distances are great circle distances on the sphere of
+ * Coordinates.EARTH_RADIUS, the same as the ones of Coordinates.distances().
+ * The trigonometry is done once per point: every point is turned into a unit
+ * vector, and the distance of a pair follows from their chord as
+ * 2 * asin(chord / 2). The matrix is filled in tiles of a few rows by a few
+ * hundred columns, so the column vectors of a tile stay in the cache while
+ * the rows of the tile are computed.
+ *
+ * The results can be stored as doubles, or as floats to halve the memory of
+ * large matrices. The overloads that take an ExecutorService split the rows
+ * into blocks that are computed in parallel.
+ */
+public final class DistanceMatrix
+{
+	// columns in a tile: 256 unit vectors take 6 kB
+	private static final int TILE_COLUMNS = 256;
+	// rows in a tile
+	private static final int TILE_ROWS = 16;
+	// number of row blocks per thread, so that uneven blocks still balance out
+	private static final int TASKS_PER_THREAD = 4;
+
+	private DistanceMatrix()
+	{
+	}
+
+	/**
+	 * Computes a distance matrix.
+	 *
+	 * @param rowLats
+	 *            the latitudes of the row points in degrees
+	 * @param rowLons
+	 *            the longitudes of the row points in degrees
+	 * @param rowOffset
+	 *            the index of the first row point in rowLats and rowLons
+	 * @param rows
+	 *            the number of row points
+	 * @param colLats
+	 *            the latitudes of the column points in degrees
+	 * @param colLons
+	 *            the longitudes of the column points in degrees
+	 * @param colOffset
+	 *            the index of the first column point in colLats and colLons
+	 * @param cols
+	 *            the number of column points
+	 * @param matrix
+	 *            receives the distances in meters, the distance from row
+	 *            point i to column point j at matrixOffset + i * cols + j
+	 * @param matrixOffset
+	 *            the index in matrix of the first distance
+	 */
+	public static void compute (double[] rowLats, double[] rowLons, int rowOffset, int rows,
+			double[] colLats, double[] colLons, int colOffset, int cols,
+			double[] matrix, int matrixOffset)
+	{
+		Job job = new Job(rowLats, rowLons, rowOffset, rows, colLats, colLons, colOffset, cols,
+				matrix, null, matrixOffset);
+		job.run(0, rows);
+	}
+
+	/**
+	 * Same as compute(double[], double[], int, int, double[], double[], int,
+	 * int, double[], int), but stores the distances as floats.
+	 *
+	 * @see #compute(double[], double[], int, int, double[], double[], int, int, double[], int)
+	 */
+	public static void compute (double[] rowLats, double[] rowLons, int rowOffset, int rows,
+			double[] colLats, double[] colLons, int colOffset, int cols,
+			float[] matrix, int matrixOffset)
+	{
+		Job job = new Job(rowLats, rowLons, rowOffset, rows, colLats, colLons, colOffset, cols,
+				null, matrix, matrixOffset);
+		job.run(0, rows);
+	}
+
+	/**
+	 * Computes a distance matrix in parallel.
+	 *
+	 * @param executor
+	 *            computes the blocks of rows
+	 * @throws java.lang.InterruptedException
+	 *             if the thread is interrupted while waiting for the blocks
+	 * @see #compute(double[], double[], int, int, double[], double[], int, int, double[], int)
+	 */
+	public static void compute (double[] rowLats, double[] rowLons, int rowOffset, int rows,
+			double[] colLats, double[] colLons, int colOffset, int cols,
+			double[] matrix, int matrixOffset, ExecutorService executor) throws InterruptedException
+	{
+		Job job = new Job(rowLats, rowLons, rowOffset, rows, colLats, colLons, colOffset, cols,
+				matrix, null, matrixOffset);
+		job.run(executor);
+	}
+
+	/**
+	 * Computes a distance matrix in parallel and stores the distances as
+	 * floats.
+	 *
+	 * @param executor
+	 *            computes the blocks of rows
+	 * @throws java.lang.InterruptedException
+	 *             if the thread is interrupted while waiting for the blocks
+	 * @see #compute(double[], double[], int, int, double[], double[], int, int, double[], int)
+	 */
+	public static void compute (double[] rowLats, double[] rowLons, int rowOffset, int rows,
+			double[] colLats, double[] colLons, int colOffset, int cols,
+			float[] matrix, int matrixOffset, ExecutorService executor) throws InterruptedException
+	{
+		Job job = new Job(rowLats, rowLons, rowOffset, rows, colLats, colLons, colOffset, cols,
+				null, matrix, matrixOffset);
+		job.run(executor);
+	}
+
+	/**
+	 * Unit vectors of both sets and the destination of one matrix.
+	 */
+	private static final class Job
+	{
+		final double[] rowLats;
+		final double[] rowLons;
+		final int rowOffset;
+		final int rows;
+		final double[] colLats;
+		final double[] colLons;
+		final int colOffset;
+		final int cols;
+		final double[] doubles;
+		final float[] floats;
+		final int matrixOffset;
+
+		// x, y, z of each point
+		final double[] rowXyz;
+		final double[] colXyz;
+
+		Job (double[] rowLats, double[] rowLons, int rowOffset, int rows,
+				double[] colLats, double[] colLons, int colOffset, int cols,
+				double[] doubles, float[] floats, int matrixOffset)
+		{
+			this.rowLats = rowLats;
+			this.rowLons = rowLons;
+			this.rowOffset = rowOffset;
+			this.rows = rows;
+			this.colLats = colLats;
+			this.colLons = colLons;
+			this.colOffset = colOffset;
+			this.cols = cols;
+			this.doubles = doubles;
+			this.floats = floats;
+			this.matrixOffset = matrixOffset;
+			rowXyz = new double[3 * rows];
+			colXyz = new double[3 * cols];
+		}
+
+		/**
+		 * Computes the rows in [from, to) on the calling thread.
+		 */
+		void run (int from, int to)
+		{
+			Coordinates.unitVectors(colLats, colLons, colOffset, 0, cols, colXyz);
+			Coordinates.unitVectors(rowLats, rowLons, rowOffset, from, to, rowXyz);
+			fill(from, to);
+		}
+
+		void run (ExecutorService executor) throws InterruptedException
+		{
+			int threads = Runtime.getRuntime().availableProcessors();
+			int tasks = Math.max(1, Math.min(TASKS_PER_THREAD * threads, (rows + TILE_ROWS - 1) / TILE_ROWS));
+			int block = (rows + tasks - 1) / tasks;
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+
+			// the columns are shared by all blocks, project them in slices
+			int slice = (cols + tasks - 1) / tasks;
+			for (int from = 0; from < cols; from += slice)
+				futures.add(executor.submit(projectTask(colLats, colLons, colOffset, from, Math.min(from + slice, cols), colXyz)));
+			Tasks.await(futures);
+
+			for (int from = 0; from < rows; from += block)
+				futures.add(executor.submit(rowTask(from, Math.min(from + block, rows))));
+			Tasks.await(futures);
+		}
+
+		Callable<Void> projectTask (final double[] lats, final double[] lons, final int offset,
+				final int from, final int to, final double[] xyz)
+		{
+			return new Callable<Void>()
+			{
+				public Void call()
+				{
+					Coordinates.unitVectors(lats, lons, offset, from, to, xyz);
+					return null;
+				}
+			};
+		}
+
+		Callable<Void> rowTask (final int from, final int to)
+		{
+			return new Callable<Void>()
+			{
+				public Void call()
+				{
+					Coordinates.unitVectors(rowLats, rowLons, rowOffset, from, to, rowXyz);
+					fill(from, to);
+					return null;
+				}
+			};
+		}
+
+		/**
+		 * Computes the rows in [from, to) tile by tile.
+		 */
+		void fill (int from, int to)
+		{
+			for (int r0 = from; r0 < to; r0 += TILE_ROWS)
+			{
+				int r1 = Math.min(r0 + TILE_ROWS, to);
+				for (int c0 = 0; c0 < cols; c0 += TILE_COLUMNS)
+				{
+					int c1 = Math.min(c0 + TILE_COLUMNS, cols);
+					for (int i = r0; i < r1; i++)
+					{
+						if (doubles != null)
+							row(i, c0, c1, doubles);
+						else
+							row(i, c0, c1, floats);
+					}
+				}
+			}
+		}
+
+		private void row (int i, int c0, int c1, double[] out)
+		{
+			double x = rowXyz[3 * i], y = rowXyz[3 * i + 1], z = rowXyz[3 * i + 2];
+			double[] c = colXyz;
+			int base = matrixOffset + i * cols;
+			for (int j = c0; j < c1; j++)
+			{
+				double dx = c[3 * j] - x, dy = c[3 * j + 1] - y, dz = c[3 * j + 2] - z;
+				out[base + j] = arc(dx * dx + dy * dy + dz * dz);
+			}
+		}
+
+		private void row (int i, int c0, int c1, float[] out)
+		{
+			double x = rowXyz[3 * i], y = rowXyz[3 * i + 1], z = rowXyz[3 * i + 2];
+			double[] c = colXyz;
+			int base = matrixOffset + i * cols;
+			for (int j = c0; j < c1; j++)
+			{
+				double dx = c[3 * j] - x, dy = c[3 * j + 1] - y, dz = c[3 * j + 2] - z;
+				out[base + j] = (float) arc(dx * dx + dy * dy + dz * dz);
+			}
+		}
+	}
+
+	/**
+	 * @return the great circle distance in meters for a squared chord between
+	 *         unit vectors
+	 */
+	private static double arc (double chord2)
+	{
+		return 2 * Coordinates.EARTH_RADIUS * AuxMath.asin(Math.min(1.0, Math.sqrt(chord2) / 2), Float11.TIER_PRECISE);
+	}
+}
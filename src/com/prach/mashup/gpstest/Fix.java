@@ -0,0 +1,100 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * An immutable position fix. All fields are final, so a Fix published
+ * through a volatile reference is seen complete by every thread that reads
+ * the reference: a reader gets the latitude and the longitude of the same
+ * fix, without locking and in a single read. Publishing allocates one
+ * object per fix; FixSeqlock publishes without allocating.
+ */
+public final class Fix
+{
+	/** Stands for the position before the first fix: time 0, at 0, 0. */
+	public static final Fix NONE = new Fix(0, 0, 0, Double.NaN, Float.NaN, null);
+
+	private final long time;
+	private final double latitude;
+	private final double longitude;
+	private final double altitude;
+	private final float accuracy;
+	private final String provider;
+
+	/**
+	 * @param time
+	 *            the UTC time of the fix in milliseconds since the epoch
+	 * @param latitude
+	 *            the latitude in degrees
+	 * @param longitude
+	 *            the longitude in degrees
+	 * @param altitude
+	 *            the altitude in meters, or Double.NaN if it is unknown
+	 * @param accuracy
+	 *            the accuracy in meters, or Float.NaN if it is unknown
+	 * @param provider
+	 *            the name of the provider of the fix, or null
+	 */
+	public Fix (long time, double latitude, double longitude, double altitude, float accuracy, String provider)
+	{
+		this.time = time;
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.altitude = altitude;
+		this.accuracy = accuracy;
+		this.provider = provider;
+	}
+
+	/**
+	 * @return the UTC time of the fix in milliseconds since the epoch
+	 */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * @return the latitude in degrees
+	 */
+	public double getLatitude()
+	{
+		return latitude;
+	}
+
+	/**
+	 * @return the longitude in degrees
+	 */
+	public double getLongitude()
+	{
+		return longitude;
+	}
+
+	/**
+	 * @return the altitude in meters, or Double.NaN if it is unknown
+	 */
+	public double getAltitude()
+	{
+		return altitude;
+	}
+
+	/**
+	 * @return the accuracy in meters, or Float.NaN if it is unknown
+	 */
+	public float getAccuracy()
+	{
+		return accuracy;
+	}
+
+	/**
+	 * @return the name of the provider of the fix, or null
+	 */
+	public String getProvider()
+	{
+		return provider;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Fix[" + time + ", " + latitude + ", " + longitude + ", " + altitude + ", " + accuracy + ", "
+				+ provider + "]";
+	}
+}
@@ -0,0 +1,320 @@
+package com.prach.mashup.gpstest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands every fix from one producer, typically the location callback, to
+ * any number of consumers on threads of their own, so that the recorder,
+ * the geofences or the statistics do not run one after the other on the
+ * thread of the callback.
+ *
+ * The fixes go into a ring of preallocated slots. Fix number n, counted
+ * from 0, goes into slot n modulo the capacity, and the slot is stamped
+ * with n once it is written. Each consumer follows its own cursor, the
+ * number of the next fix it wants, and reads the slot only if its stamp
+ * matches before and after reading, so it never sees a half written or
+ * overwritten fix.
+ *
+ * The producer never waits for a consumer. A consumer that falls behind by
+ * more than the capacity loses its oldest fixes: its cursor jumps to the
+ * oldest fix still in the ring, and the lost ones are counted. getLag() and
+ * getDropped() show how far each consumer is behind. A consumer that has
+ * read everything either blocks until the next fix (BLOCK), which costs a
+ * wake-up per batch but no CPU while waiting, or spins with Thread.yield()
+ * (YIELD), which reacts faster but keeps a CPU busy.
+ *
+ * publish() must be called by one thread at a time. Each Consumer must be
+ * used by one thread at a time; different consumers can run concurrently.
+ */
+public final class FixBus
+{
+	/** A waiting consumer parks until the producer wakes it. */
+	public static final int BLOCK = 0;
+	/** A waiting consumer spins with Thread.yield(). */
+	public static final int YIELD = 1;
+
+	// stamp of a slot that is being written or was never written
+	private static final long BUSY = -1;
+	// longs per slot in data
+	private static final int FIELDS = 6;
+
+	private final int mask;
+	// time, latitude, longitude, altitude, accuracy and speed as raw bits
+	private final AtomicLongArray data;
+	private final AtomicLongArray stamps;
+	// number of fixes published, the number of the next fix
+	private final AtomicLong published = new AtomicLong();
+	private volatile Consumer[] consumers = new Consumer[0];
+	private volatile boolean closed;
+
+	/**
+	 * @param capacity
+	 *            the number of slots, a power of two
+	 * @throws java.lang.IllegalArgumentException
+	 *             if capacity is not a positive power of two
+	 */
+	public FixBus (int capacity)
+	{
+		if (capacity <= 0 || (capacity & (capacity - 1)) != 0)
+			throw new IllegalArgumentException("capacity: " + capacity);
+		mask = capacity - 1;
+		data = new AtomicLongArray(capacity * FIELDS);
+		stamps = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++)
+			stamps.set(i, BUSY);
+	}
+
+	/**
+	 * Adds a consumer that receives the fixes published from now on.
+	 *
+	 * @param waitStrategy
+	 *            BLOCK or YIELD
+	 * @return the consumer
+	 * @throws java.lang.IllegalArgumentException
+	 *             if waitStrategy is not BLOCK or YIELD
+	 */
+	public synchronized Consumer subscribe (int waitStrategy)
+	{
+		if (waitStrategy != BLOCK && waitStrategy != YIELD)
+			throw new IllegalArgumentException("waitStrategy: " + waitStrategy);
+		Consumer consumer = new Consumer(waitStrategy, published.get());
+		Consumer[] old = consumers;
+		Consumer[] grown = new Consumer[old.length + 1];
+		System.arraycopy(old, 0, grown, 0, old.length);
+		grown[old.length] = consumer;
+		consumers = grown;
+		return consumer;
+	}
+
+	/**
+	 * Removes a consumer, which then no longer counts as waiting.
+	 *
+	 * @param consumer
+	 *            a consumer of this bus
+	 * @return false if it was not subscribed
+	 */
+	public synchronized boolean unsubscribe (Consumer consumer)
+	{
+		Consumer[] old = consumers;
+		for (int i = 0; i < old.length; i++)
+		{
+			if (old[i] == consumer)
+			{
+				Consumer[] shrunk = new Consumer[old.length - 1];
+				System.arraycopy(old, 0, shrunk, 0, i);
+				System.arraycopy(old, i + 1, shrunk, i, old.length - i - 1);
+				consumers = shrunk;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Publishes a fix to all consumers, overwriting the oldest slot. Does not
+	 * block and does not allocate.
+	 *
+	 * @param time
+	 *            the time of the fix in milliseconds since 1970 UTC
+	 * @param latitude
+	 *            the latitude in degrees
+	 * @param longitude
+	 *            the longitude in degrees
+	 * @param altitude
+	 *            the altitude in meters, or Double.NaN if unknown
+	 * @param accuracy
+	 *            the accuracy in meters, or Float.NaN if unknown
+	 * @param speed
+	 *            the speed in m/s, or Float.NaN if unknown
+	 */
+	public void publish (long time, double latitude, double longitude, double altitude, float accuracy,
+			float speed)
+	{
+		long n = published.get();
+		int slot = (int) n & mask;
+		int base = slot * FIELDS;
+		// the ordered writes keep the BUSY stamp ahead of the fields and the
+		// fields ahead of the new stamp
+		stamps.lazySet(slot, BUSY);
+		data.lazySet(base, time);
+		data.lazySet(base + 1, Double.doubleToRawLongBits(latitude));
+		data.lazySet(base + 2, Double.doubleToRawLongBits(longitude));
+		data.lazySet(base + 3, Double.doubleToRawLongBits(altitude));
+		data.lazySet(base + 4, Float.floatToRawIntBits(accuracy));
+		data.lazySet(base + 5, Float.floatToRawIntBits(speed));
+		stamps.lazySet(slot, n);
+		// a full write, so that a consumer going to sleep either sees the
+		// new count or is seen as waiting below
+		published.set(n + 1);
+		wakeUp();
+	}
+
+	/**
+	 * @return the number of fixes published so far
+	 */
+	public long getPublished()
+	{
+		return published.get();
+	}
+
+	/**
+	 * @return the number of slots
+	 */
+	public int capacity()
+	{
+		return mask + 1;
+	}
+
+	/**
+	 * Ends the stream: consumers read what is left, then take() returns -1.
+	 */
+	public void close()
+	{
+		closed = true;
+		wakeUp();
+	}
+
+	private void wakeUp()
+	{
+		Consumer[] waiting = consumers;
+		for (int i = 0; i < waiting.length; i++)
+		{
+			Consumer consumer = waiting[i];
+			Thread waiter = consumer.waiter;
+			if (waiter != null)
+			{
+				// one wake-up per wait is enough, the next publish does not
+				// need to wake the consumer again before it has run; if the
+				// consumer started a new wait meanwhile, the unpark below
+				// ends that one and it waits once more
+				consumer.waiter = null;
+				LockSupport.unpark(waiter);
+			}
+		}
+	}
+
+	/**
+	 * The cursor of one consumer into the ring.
+	 */
+	public final class Consumer
+	{
+		private final int waitStrategy;
+		// the number of the next fix to read, written only by the consumer
+		private volatile long cursor;
+		private volatile long dropped;
+		volatile Thread waiter;
+
+		Consumer (int waitStrategy, long start)
+		{
+			this.waitStrategy = waitStrategy;
+			cursor = start;
+		}
+
+		/**
+		 * Passes the fixes that are available, without waiting.
+		 *
+		 * @param listener
+		 *            receives the fixes, oldest first
+		 * @param max
+		 *            the largest number of fixes to pass
+		 * @return the number of fixes passed
+		 */
+		public int poll (FixListener listener, int max)
+		{
+			long next = cursor;
+			long available = published.get();
+			int n = 0;
+			while (n < max && next < available)
+			{
+				if (available - next > mask + 1)
+				{
+					// overrun, continue with the oldest fix still in the ring
+					dropped += available - (mask + 1) - next;
+					next = available - (mask + 1);
+				}
+				int slot = (int) next & mask;
+				int base = slot * FIELDS;
+				if (stamps.get(slot) == next)
+				{
+					long time = data.get(base);
+					double latitude = Double.longBitsToDouble(data.get(base + 1));
+					double longitude = Double.longBitsToDouble(data.get(base + 2));
+					double altitude = Double.longBitsToDouble(data.get(base + 3));
+					float accuracy = Float.intBitsToFloat((int) data.get(base + 4));
+					float speed = Float.intBitsToFloat((int) data.get(base + 5));
+					if (stamps.get(slot) == next)
+					{
+						next++;
+						n++;
+						listener.onFix(time, latitude, longitude, altitude, accuracy, speed);
+						continue;
+					}
+				}
+				// the producer is overwriting the slot with a newer fix, so
+				// the fix is lost; wait until that write is published
+				available = published.get();
+				if (available - next <= mask + 1)
+					Thread.yield();
+			}
+			cursor = next;
+			return n;
+		}
+
+		/**
+		 * Passes the fixes that are available, waiting with the wait
+		 * strategy of the consumer until there is at least one.
+		 *
+		 * @param listener
+		 *            receives the fixes, oldest first
+		 * @param max
+		 *            the largest number of fixes to pass, at least 1
+		 * @return the number of fixes passed, or -1 if the bus is closed and
+		 *         all fixes have been passed
+		 * @throws java.lang.InterruptedException
+		 *             if the thread is interrupted while waiting
+		 */
+		public int take (FixListener listener, int max) throws InterruptedException
+		{
+			while (true)
+			{
+				boolean last = closed;
+				int n = poll(listener, max);
+				if (n > 0)
+					return n;
+				if (last)
+					return -1;
+				if (waitStrategy == YIELD)
+					Thread.yield();
+				else
+				{
+					waiter = Thread.currentThread();
+					if (published.get() == cursor && !closed)
+						LockSupport.park(this);
+					waiter = null;
+				}
+				if (Thread.interrupted())
+					throw new InterruptedException();
+			}
+		}
+
+		/**
+		 * @return the number of published fixes this consumer has not read
+		 *         yet, including those it is going to lose
+		 */
+		public long getLag()
+		{
+			return published.get() - cursor;
+		}
+
+		/**
+		 * @return the number of fixes this consumer lost because it fell
+		 *         behind by more than the capacity
+		 */
+		public long getDropped()
+		{
+			return dropped;
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package com.prach.mashup.gpstest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Keeps the last fix in a small memory-mapped file, so that a freshly
+ * started process can answer with a recent position before the location
+ * provider delivers its first fix.
+ *
+ * The snapshot is read once when the cache is opened, which only touches one
+ * page of the file. Every store() writes the fix into the mapping; the
+ * operating system writes it back to disk, so a crash of the process does
+ * not lose it. A sequence number that is odd while a store is in progress and
+ * a checksum over the fields let open() reject a snapshot that was torn by a
+ * crash.
+ *
+ * Instances are not thread safe.
+ */
+public final class FixCache
+{
+	/** Default maximum age of a fix in milliseconds. */
+	public static final long DEFAULT_MAX_AGE = 10 * 60 * 1000;
+
+	private static final int MAGIC = 0x47464958; // "GFIX"
+	private static final int VERSION = 1;
+
+	// layout of the snapshot
+	private static final int OFF_MAGIC = 0;
+	private static final int OFF_VERSION = 4;
+	private static final int OFF_SEQUENCE = 8;
+	private static final int OFF_TIME = 16;
+	private static final int OFF_LATITUDE = 24;
+	private static final int OFF_LONGITUDE = 32;
+	private static final int OFF_ALTITUDE = 40;
+	private static final int OFF_ACCURACY = 48;
+	private static final int OFF_CHECKSUM = 56;
+	private static final int SIZE = 64;
+
+	private final MappedByteBuffer buffer;
+	private final RandomAccessFile file;
+
+	private long sequence;
+	private boolean valid;
+	private long time;
+	private double latitude;
+	private double longitude;
+	private double altitude;
+	private float accuracy;
+
+	private FixCache (RandomAccessFile file, MappedByteBuffer buffer)
+	{
+		this.file = file;
+		this.buffer = buffer;
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		load();
+	}
+
+	/**
+	 * Opens the cache file, creating it if it does not exist, and reads the
+	 * snapshot.
+	 *
+	 * @param path
+	 *            the cache file
+	 * @return the cache
+	 * @throws java.io.IOException
+	 *             if the file cannot be opened or mapped
+	 */
+	public static FixCache open (File path) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(path, "rw");
+		try
+		{
+			file.setLength(SIZE);
+			MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+			return new FixCache(file, buffer);
+		}
+		catch (IOException e)
+		{
+			file.close();
+			throw e;
+		}
+	}
+
+	private void load()
+	{
+		sequence = buffer.getLong(OFF_SEQUENCE);
+		time = buffer.getLong(OFF_TIME);
+		latitude = buffer.getDouble(OFF_LATITUDE);
+		longitude = buffer.getDouble(OFF_LONGITUDE);
+		altitude = buffer.getDouble(OFF_ALTITUDE);
+		accuracy = buffer.getFloat(OFF_ACCURACY);
+		valid = buffer.getInt(OFF_MAGIC) == MAGIC
+			&& buffer.getInt(OFF_VERSION) == VERSION
+			&& (sequence & 1) == 0
+			&& buffer.getLong(OFF_CHECKSUM) == checksum();
+		if ((sequence & 1) != 0)
+			sequence++;
+	}
+
+	/**
+	 * Replaces the snapshot with a new fix.
+	 *
+	 * @param time
+	 *            the UTC time of the fix in milliseconds since the epoch
+	 * @param latitude
+	 *            the latitude in degrees
+	 * @param longitude
+	 *            the longitude in degrees
+	 * @param altitude
+	 *            the altitude in meters, or Double.NaN if unknown
+	 * @param accuracy
+	 *            the accuracy in meters, or Float.NaN if unknown
+	 */
+	public void store (long time, double latitude, double longitude, double altitude, float accuracy)
+	{
+		this.time = time;
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.altitude = altitude;
+		this.accuracy = accuracy;
+		valid = true;
+
+		buffer.putLong(OFF_SEQUENCE, ++sequence);
+		buffer.putInt(OFF_MAGIC, MAGIC);
+		buffer.putInt(OFF_VERSION, VERSION);
+		buffer.putLong(OFF_TIME, time);
+		buffer.putDouble(OFF_LATITUDE, latitude);
+		buffer.putDouble(OFF_LONGITUDE, longitude);
+		buffer.putDouble(OFF_ALTITUDE, altitude);
+		buffer.putFloat(OFF_ACCURACY, accuracy);
+		buffer.putLong(OFF_CHECKSUM, checksum());
+		buffer.putLong(OFF_SEQUENCE, ++sequence);
+	}
+
+	/**
+	 * @return true if the cache holds a complete fix
+	 */
+	public boolean isValid()
+	{
+		return valid;
+	}
+
+	/**
+	 * @return the UTC time of the cached fix in milliseconds since the epoch
+	 */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * @return the latitude of the cached fix in degrees
+	 */
+	public double getLatitude()
+	{
+		return latitude;
+	}
+
+	/**
+	 * @return the longitude of the cached fix in degrees
+	 */
+	public double getLongitude()
+	{
+		return longitude;
+	}
+
+	/**
+	 * @return the altitude of the cached fix in meters, or Double.NaN
+	 */
+	public double getAltitude()
+	{
+		return altitude;
+	}
+
+	/**
+	 * @return the accuracy of the cached fix in meters, or Float.NaN
+	 */
+	public float getAccuracy()
+	{
+		return accuracy;
+	}
+
+	/**
+	 * Writes the snapshot to disk and closes the file. The cache must not be
+	 * used afterwards.
+	 *
+	 * @throws java.io.IOException
+	 *             if the file cannot be closed
+	 */
+	public void close() throws IOException
+	{
+		buffer.force();
+		file.close();
+	}
+
+	private long checksum()
+	{
+		long h = time;
+		h = h * 31 + Double.doubleToRawLongBits(latitude);
+		h = h * 31 + Double.doubleToRawLongBits(longitude);
+		h = h * 31 + Double.doubleToRawLongBits(altitude);
+		h = h * 31 + Float.floatToRawIntBits(accuracy);
+		return h ^ (h >>> 29);
+	}
+}
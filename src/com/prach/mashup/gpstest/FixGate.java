@@ -0,0 +1,94 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * Decides which fixes of a LocationSource become the current fix, and
+ * whether the current fix is fresh and accurate enough to answer a request.
+ *
+ * A fix older than the current one is normally a late delivery, such as the
+ * last known location of the provider arriving after a newer fix from the
+ * FixCache, and is dropped. The times are judged by the clock of the source,
+ * though: if the current fix lies ahead of that clock, it belongs to another
+ * time line, for example a replayed log that started over or a cached fix
+ * that is newer than a replayed log, and the older fix starts a new time line
+ * instead of being dropped. The age of the current fix is measured on the same
+ * clock, so the fixes of a replayed log are fresh while they are replayed.
+ *
+ * Instances are not thread safe.
+ */
+public final class FixGate
+{
+	/** Returned by offer() for a fix that is dropped. */
+	public static final int DROPPED = 0;
+	/** Returned by offer() for a fix that follows the current one. */
+	public static final int ACCEPTED = 1;
+	/**
+	 * Returned by offer() for a fix that starts a new time line; whatever
+	 * depends on the order of the fixes, such as a KalmanSmoother, has to
+	 * start over as well.
+	 */
+	public static final int RESTARTED = 2;
+
+	private final LocationSource source;
+	private boolean valid;
+	private long time;
+	private float accuracy;
+
+	/**
+	 * @param source
+	 *            the source of the fixes, whose clock judges their times
+	 */
+	public FixGate (LocationSource source)
+	{
+		this.source = source;
+	}
+
+	/**
+	 * Offers a fix to become the current one.
+	 *
+	 * @param time
+	 *            the UTC time of the fix in milliseconds since the epoch
+	 * @param accuracy
+	 *            the accuracy of the fix in meters, or Float.NaN if unknown
+	 * @return DROPPED, ACCEPTED or RESTARTED
+	 */
+	public int offer (long time, float accuracy)
+	{
+		int order = ACCEPTED;
+		if (valid && time < this.time)
+		{
+			if (this.time <= source.currentTimeMillis())
+				return DROPPED;
+			order = RESTARTED;
+		}
+		valid = true;
+		this.time = time;
+		this.accuracy = accuracy;
+		return order;
+	}
+
+	/**
+	 * @param maxAge
+	 *            the maximum age of the fix in milliseconds
+	 * @param maxAccuracy
+	 *            the largest acceptable accuracy radius in meters, or
+	 *            Float.NaN to accept any accuracy
+	 * @return true if there is a current fix, it is at most maxAge old on
+	 *         the clock of the source and, unless maxAccuracy is Float.NaN,
+	 *         its accuracy is known and at most maxAccuracy
+	 */
+	public boolean isFresh (long maxAge, float maxAccuracy)
+	{
+		long now = source.currentTimeMillis();
+		if (!valid || now == Long.MIN_VALUE || now - time > maxAge)
+			return false;
+		return Float.isNaN(maxAccuracy) || accuracy <= maxAccuracy;
+	}
+
+	/**
+	 * @return the time of the current fix, or Long.MIN_VALUE if there is none
+	 */
+	public long getTime()
+	{
+		return valid ? time : Long.MIN_VALUE;
+	}
+}
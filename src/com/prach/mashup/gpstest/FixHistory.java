@@ -0,0 +1,110 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * Remembers the most recent fixes in a ring of fixed capacity, so that a
+ * request can be answered with a batch of points at once.
+ *
+ * add() overwrites the oldest fix when the ring is full and does not
+ * allocate. Instances are not thread safe.
+ */
+public final class FixHistory
+{
+	private final long[] times;
+	private final double[] lats;
+	private final double[] lons;
+	// index of the next fix to write
+	private int head;
+	private int size;
+
+	/**
+	 * @param capacity
+	 *            the number of fixes kept, at least 1
+	 * @throws java.lang.IllegalArgumentException
+	 *             if capacity is less than 1
+	 */
+	public FixHistory (int capacity)
+	{
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity: " + capacity);
+		times = new long[capacity];
+		lats = new double[capacity];
+		lons = new double[capacity];
+	}
+
+	/**
+	 * Adds the newest fix.
+	 *
+	 * @param time
+	 *            the time of the fix in milliseconds
+	 * @param latitude
+	 *            the latitude in degrees
+	 * @param longitude
+	 *            the longitude in degrees
+	 */
+	public void add (long time, double latitude, double longitude)
+	{
+		times[head] = time;
+		lats[head] = latitude;
+		lons[head] = longitude;
+		head = head + 1 == times.length ? 0 : head + 1;
+		if (size < times.length)
+			size++;
+	}
+
+	/**
+	 * @return the number of fixes held
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return the number of fixes that can be held
+	 */
+	public int capacity()
+	{
+		return times.length;
+	}
+
+	/**
+	 * Copies the newest fixes, oldest first.
+	 *
+	 * @param count
+	 *            the largest number of fixes to copy
+	 * @param outTimes
+	 *            receives the times in milliseconds
+	 * @param outLats
+	 *            receives the latitudes in degrees
+	 * @param outLons
+	 *            receives the longitudes in degrees
+	 * @param offset
+	 *            the index in the arrays for the first fix
+	 * @return the number of fixes copied, the smaller of count and size()
+	 */
+	public int copy (int count, long[] outTimes, double[] outLats, double[] outLons, int offset)
+	{
+		int n = Math.max(0, Math.min(count, size));
+		int start = head - n;
+		if (start < 0)
+			start += times.length;
+		// at most two runs: up to the end of the ring and from its start
+		int first = Math.min(n, times.length - start);
+		System.arraycopy(times, start, outTimes, offset, first);
+		System.arraycopy(lats, start, outLats, offset, first);
+		System.arraycopy(lons, start, outLons, offset, first);
+		System.arraycopy(times, 0, outTimes, offset + first, n - first);
+		System.arraycopy(lats, 0, outLats, offset + first, n - first);
+		System.arraycopy(lons, 0, outLons, offset + first, n - first);
+		return n;
+	}
+
+	/**
+	 * Forgets all fixes.
+	 */
+	public void clear()
+	{
+		head = 0;
+		size = 0;
+	}
+}
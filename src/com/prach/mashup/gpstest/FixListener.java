@@ -0,0 +1,25 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * Receives the fixes of a LocationSource.
+ */
+public interface FixListener
+{
+	/**
+	 * Called for every new fix.
+	 *
+	 * @param time
+	 *            the time of the fix in milliseconds since 1970 UTC
+	 * @param latitude
+	 *            the latitude in degrees
+	 * @param longitude
+	 *            the longitude in degrees
+	 * @param altitude
+	 *            the altitude in meters, or Double.NaN if unknown
+	 * @param accuracy
+	 *            the accuracy in meters, or Float.NaN if unknown
+	 * @param speed
+	 *            the speed in m/s, or Float.NaN if unknown
+	 */
+	void onFix (long time, double latitude, double longitude, double altitude, float accuracy, float speed);
+}
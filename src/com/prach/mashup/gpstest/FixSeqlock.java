@@ -0,0 +1,151 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * Publishes the current fix to concurrent readers without allocating, as a
+ * sequence lock over primitive fields.
+ *
+ * The writer makes the sequence number odd, writes the fields and makes it
+ * even again. A reader reads the sequence number, the fields and the
+ * sequence number once more, and keeps the values only if both numbers are
+ * the same and even, so it never combines fields of two fixes. Readers do
+ * not write shared state, so any number of them do not slow the writer or
+ * each other down; a reader only retries while a write is under way.
+ *
+ * publish() is wait free, but the reads are not: a reader that meets a
+ * write retries until the writer has finished it, so it waits as long as
+ * the writer is preempted in the middle of a fix, and it can in principle
+ * retry for as long as the writer keeps writing. With a few fields written
+ * once per fix that is rare and short, but where a read must finish in a
+ * bounded number of steps, publish a Fix through a volatile reference
+ * instead, at the price of one allocation per fix.
+ *
+ * All fields are volatile, which orders the reads of a reader between its
+ * two reads of the sequence number on any Java version, at the price of a
+ * few barriers in publish().
+ *
+ * publish() must be called by one thread at a time; the read methods can be
+ * called by any number of threads.
+ *
+ * @see Fix
+ */
+public final class FixSeqlock
+{
+	/** Returned by read() before the first fix is published. */
+	public static final long NO_FIX = Long.MIN_VALUE;
+
+	/** Index of the latitude in the array of read(). */
+	public static final int LATITUDE = 0;
+	/** Index of the longitude in the array of read(). */
+	public static final int LONGITUDE = 1;
+	/** Index of the altitude in the array of read(). */
+	public static final int ALTITUDE = 2;
+	/** Index of the accuracy in the array of read(). */
+	public static final int ACCURACY = 3;
+
+	// odd while a write is under way, 0 before the first one
+	private volatile long sequence;
+	private volatile long time;
+	private volatile double latitude;
+	private volatile double longitude;
+	private volatile double altitude;
+	private volatile float accuracy;
+	private volatile String provider;
+
+	/**
+	 * Publishes a new fix.
+	 *
+	 * @param time
+	 *            the UTC time of the fix in milliseconds since the epoch
+	 * @param latitude
+	 *            the latitude in degrees
+	 * @param longitude
+	 *            the longitude in degrees
+	 * @param altitude
+	 *            the altitude in meters, or Double.NaN if it is unknown
+	 * @param accuracy
+	 *            the accuracy in meters, or Float.NaN if it is unknown
+	 * @param provider
+	 *            the name of the provider of the fix, or null
+	 */
+	public void publish (long time, double latitude, double longitude, double altitude, float accuracy,
+			String provider)
+	{
+		long s = sequence;
+		sequence = s + 1;
+		this.time = time;
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.altitude = altitude;
+		this.accuracy = accuracy;
+		this.provider = provider;
+		sequence = s + 2;
+	}
+
+	/**
+	 * Reads the current fix without allocating. The provider is left out.
+	 * Retries, yielding to the writer, while a write is under way.
+	 *
+	 * @param out
+	 *            receives the latitude, longitude, altitude and accuracy at
+	 *            the indices LATITUDE, LONGITUDE, ALTITUDE and ACCURACY
+	 * @return the time of the fix, or NO_FIX if none was published, in which
+	 *         case out is not changed
+	 */
+	public long read (double[] out)
+	{
+		while (true)
+		{
+			long s = sequence;
+			if ((s & 1) == 0)
+			{
+				long t = time;
+				double lat = latitude;
+				double lon = longitude;
+				double alt = altitude;
+				float acc = accuracy;
+				if (sequence == s)
+				{
+					if (s == 0)
+						return NO_FIX;
+					out[LATITUDE] = lat;
+					out[LONGITUDE] = lon;
+					out[ALTITUDE] = alt;
+					out[ACCURACY] = acc;
+					return t;
+				}
+			}
+			// the writer is in the middle of a fix, let it finish
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Reads the current fix into a new object. Retries, yielding to the
+	 * writer, while a write is under way.
+	 *
+	 * @return the fix, or Fix.NONE if none was published
+	 */
+	public Fix snapshot()
+	{
+		while (true)
+		{
+			long s = sequence;
+			if ((s & 1) == 0)
+			{
+				Fix fix = s == 0 ? Fix.NONE : new Fix(time, latitude, longitude, altitude, accuracy, provider);
+				if (sequence == s)
+					return fix;
+			}
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * @return the number of fixes published so far; a reader can compare it
+	 *         with an earlier value to see whether there is a new fix
+	 */
+	public long getCount()
+	{
+		return sequence / 2;
+	}
+}
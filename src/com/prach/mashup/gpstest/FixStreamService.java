@@ -0,0 +1,144 @@
+package com.prach.mashup.gpstest;
+
+import android.app.Service;
+import android.content.Intent;
+import android.location.Location;
+import android.location.LocationListener;
+import android.location.LocationManager;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Streams fixes to the subscribers of ACTIVE mode. A subscriber is started
+ * with ACTION_SUBSCRIBE and names a REPLY_ACTION; its batches are sent as
+ * broadcasts with that action, with the fixes in FIXES as a packed double[]
+ * of ResultEncoder.pack(), or with ENCODING=DELTA as a byte[] of
+ * ResultEncoder.encodeDeltas(). The service stops itself when the last
+ * subscriber leaves.
+ */
+public class FixStreamService extends Service implements LocationListener {
+	public static final String ACTION_SUBSCRIBE = "com.prach.mashup.gpstest.SUBSCRIBE";
+	public static final String ACTION_UNSUBSCRIBE = "com.prach.mashup.gpstest.UNSUBSCRIBE";
+
+	/** Default minimum time between two fixes in milliseconds. */
+	private static final long INTERVAL = 1000;
+	/** Default number of fixes per broadcast. */
+	private static final int BATCH_SIZE = 10;
+	/** Default longest time a fix waits for its batch in milliseconds. */
+	private static final long MAX_DELAY = 30000;
+
+	private LocationManager mLocationManager;
+	private FixStreamer mStreamer;
+	private final Handler mHandler = new Handler();
+	private final Runnable mPoll = new Runnable() {
+		public void run() {
+			mStreamer.poll();
+			schedulePoll();
+		}
+	};
+
+	@Override
+	public void onCreate() {
+		super.onCreate();
+		mLocationManager = (LocationManager) getSystemService(LOCATION_SERVICE);
+		mStreamer = new FixStreamer(new LocationRegistrar() {
+			public void requestUpdates(long minTime, float minDistance) {
+				Log.i("GPSLocator", "Streaming updates every " + minTime + " ms / " + minDistance + " m");
+				Metrics.REGISTRATIONS.increment();
+				mLocationManager.requestLocationUpdates(
+						LocationManager.GPS_PROVIDER, minTime, minDistance, FixStreamService.this);
+			}
+			public void removeUpdates() {
+				mLocationManager.removeUpdates(FixStreamService.this);
+			}
+		}, new Clock() {
+			public long now() {
+				return SystemClock.elapsedRealtime();
+			}
+		});
+	}
+
+	@Override
+	public void onStart(Intent intent, int startId) {
+		super.onStart(intent, startId);
+		String reply = intent != null ? intent.getStringExtra("REPLY_ACTION") : null;
+		if (reply != null) {
+			if (ACTION_SUBSCRIBE.equals(intent.getAction())) {
+				boolean delta = "DELTA".equals(intent.getStringExtra("ENCODING"));
+				mStreamer.subscribe(reply, new Broadcaster(reply, delta),
+						intent.getLongExtra("INTERVAL", INTERVAL),
+						intent.getFloatExtra("DISTANCE", 0),
+						Math.max(1, intent.getIntExtra("BATCH_SIZE", BATCH_SIZE)),
+						intent.getLongExtra("MAX_DELAY", MAX_DELAY));
+			} else if (ACTION_UNSUBSCRIBE.equals(intent.getAction())) {
+				mStreamer.unsubscribe(reply);
+			}
+		}
+		schedulePoll();
+		if (mStreamer.size() == 0)
+			stopSelf();
+	}
+
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+		mHandler.removeCallbacks(mPoll);
+		mStreamer.close();
+	}
+
+	@Override
+	public IBinder onBind(Intent intent) {
+		return null;
+	}
+
+	private void schedulePoll() {
+		mHandler.removeCallbacks(mPoll);
+		long deadline = mStreamer.nextDeadline();
+		if (deadline != Long.MAX_VALUE)
+			mHandler.postDelayed(mPoll, Math.max(0, deadline - SystemClock.elapsedRealtime()));
+	}
+
+	@Override
+	public void onLocationChanged(Location location) {
+		Metrics.FIX_AGE.record(System.currentTimeMillis() - location.getTime());
+		mStreamer.onFix(location.getTime(), location.getLatitude(), location.getLongitude());
+		schedulePoll();
+	}
+
+	@Override
+	public void onProviderDisabled(String provider) {
+	}
+
+	@Override
+	public void onProviderEnabled(String provider) {
+	}
+
+	@Override
+	public void onStatusChanged(String provider, int status, Bundle extras) {
+	}
+
+	/**
+	 * Sends the batches of one subscriber as broadcasts.
+	 */
+	private final class Broadcaster implements FixSubscriber {
+		private final String mAction;
+		private final boolean mDelta;
+
+		Broadcaster(String action, boolean delta) {
+			mAction = action;
+			mDelta = delta;
+		}
+
+		public void onFixes(long[] times, double[] lats, double[] lons, int count) {
+			Intent intent = new Intent(mAction);
+			if (mDelta)
+				intent.putExtra("FIXES", ResultEncoder.encodeDeltas(times, lats, lons, 0, count));
+			else
+				intent.putExtra("FIXES", ResultEncoder.pack(times, lats, lons, 0, count));
+			sendBroadcast(intent);
+		}
+	}
+}
@@ -0,0 +1,294 @@
+package com.prach.mashup.gpstest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fans fixes out to many subscribers, each with its own interval, minimum
+ * displacement and batch size, and keeps one location registration that
+ * satisfies all of them.
+ *
+ * A fix is passed to a subscriber when at least its interval has passed
+ * and it has moved at least its minimum distance since the last fix it was
+ * passed, like the parameters of LocationManager.requestLocationUpdates().
+ * Passed fixes are collected and delivered in a batch when the batch is full
+ * or its oldest fix has waited for the subscriber's maximum delay, whichever
+ * comes first, so a subscriber wakes up once per batch instead of once per
+ * fix. The delays are measured with the Clock given to the constructor;
+ * poll() delivers the batches that are due and nextDeadline() tells when to
+ * call it next.
+ *
+ * The registrar is asked for the shortest interval and the smallest
+ * distance of all subscribers, and only when these change. Without
+ * subscribers the updates are removed.
+ *
+ * Instances are not thread safe; subscribers are called from within the
+ * methods of the streamer and must not call back into it.
+ */
+public final class FixStreamer
+{
+	private final LocationRegistrar registrar;
+	private final Clock clock;
+	private final List<Subscription> subscriptions = new ArrayList<Subscription>();
+
+	private long minTime = -1;
+	private float minDistance = -1;
+
+	/**
+	 * @param registrar
+	 *            registers for the location updates that the subscribers
+	 *            need
+	 * @param clock
+	 *            measures how long fixes wait in a batch
+	 */
+	public FixStreamer (LocationRegistrar registrar, Clock clock)
+	{
+		this.registrar = registrar;
+		this.clock = clock;
+	}
+
+	/**
+	 * Adds a subscriber, or changes the parameters of the subscriber with the
+	 * same name. A changed subscriber first gets the fixes collected so far.
+	 *
+	 * @param name
+	 *            identifies the subscriber
+	 * @param subscriber
+	 *            receives the batches
+	 * @param interval
+	 *            the minimum time between two fixes in milliseconds
+	 * @param distance
+	 *            the minimum distance between two fixes in meters
+	 * @param batchSize
+	 *            the number of fixes in a full batch, at least 1
+	 * @param maxDelay
+	 *            the longest time in milliseconds a fix may wait for its
+	 *            batch to fill up
+	 * @throws java.lang.IllegalArgumentException
+	 *             if a parameter is out of range
+	 */
+	public void subscribe (String name, FixSubscriber subscriber, long interval, float distance,
+			int batchSize, long maxDelay)
+	{
+		if (interval < 0)
+			throw new IllegalArgumentException("interval: " + interval);
+		if (!(distance >= 0))
+			throw new IllegalArgumentException("distance: " + distance);
+		if (batchSize < 1)
+			throw new IllegalArgumentException("batchSize: " + batchSize);
+		if (maxDelay < 0)
+			throw new IllegalArgumentException("maxDelay: " + maxDelay);
+		int i = indexOf(name);
+		if (i >= 0)
+			subscriptions.remove(i).deliver();
+		subscriptions.add(new Subscription(name, subscriber, interval, distance, batchSize, maxDelay));
+		register();
+	}
+
+	/**
+	 * Removes a subscriber after delivering the fixes collected for it.
+	 *
+	 * @param name
+	 *            identifies the subscriber
+	 * @return false if there was no such subscriber
+	 */
+	public boolean unsubscribe (String name)
+	{
+		int i = indexOf(name);
+		if (i < 0)
+			return false;
+		subscriptions.remove(i).deliver();
+		register();
+		return true;
+	}
+
+	/**
+	 * @return the number of subscribers
+	 */
+	public int size()
+	{
+		return subscriptions.size();
+	}
+
+	/**
+	 * Passes a new fix to the subscribers that want it and delivers the
+	 * batches that are full or due.
+	 *
+	 * @param time
+	 *            the time of the fix in milliseconds
+	 * @param latitude
+	 *            the latitude in degrees
+	 * @param longitude
+	 *            the longitude in degrees
+	 */
+	public void onFix (long time, double latitude, double longitude)
+	{
+		long now = clock.now();
+		double lat = Math.toRadians(latitude);
+		double cosLat = Math.cos(lat);
+		for (int i = 0; i < subscriptions.size(); i++)
+		{
+			Subscription s = subscriptions.get(i);
+			if (s.accepts(time, lat, cosLat, longitude))
+				s.add(time, latitude, longitude, lat, cosLat, now);
+			if (s.isDue(now))
+				s.deliver();
+		}
+	}
+
+	/**
+	 * Delivers the batches whose oldest fix has waited for the maximum delay.
+	 */
+	public void poll()
+	{
+		long now = clock.now();
+		for (int i = 0; i < subscriptions.size(); i++)
+		{
+			Subscription s = subscriptions.get(i);
+			if (s.isDue(now))
+				s.deliver();
+		}
+	}
+
+	/**
+	 * @return the clock time at which the next batch is due, or
+	 *         Long.MAX_VALUE if no fixes are waiting
+	 */
+	public long nextDeadline()
+	{
+		long deadline = Long.MAX_VALUE;
+		for (int i = 0; i < subscriptions.size(); i++)
+		{
+			Subscription s = subscriptions.get(i);
+			if (s.count > 0)
+				deadline = Math.min(deadline, s.since + s.maxDelay);
+		}
+		return deadline;
+	}
+
+	/**
+	 * Delivers all collected fixes, removes all subscribers and the location
+	 * updates.
+	 */
+	public void close()
+	{
+		for (int i = 0; i < subscriptions.size(); i++)
+			subscriptions.get(i).deliver();
+		subscriptions.clear();
+		register();
+	}
+
+	private int indexOf (String name)
+	{
+		for (int i = 0; i < subscriptions.size(); i++)
+		{
+			if (subscriptions.get(i).name.equals(name))
+				return i;
+		}
+		return -1;
+	}
+
+	private void register()
+	{
+		if (subscriptions.isEmpty())
+		{
+			if (minTime >= 0)
+				registrar.removeUpdates();
+			minTime = -1;
+			minDistance = -1;
+			return;
+		}
+		long time = Long.MAX_VALUE;
+		float distance = Float.MAX_VALUE;
+		for (int i = 0; i < subscriptions.size(); i++)
+		{
+			Subscription s = subscriptions.get(i);
+			time = Math.min(time, s.interval);
+			distance = Math.min(distance, s.distance);
+		}
+		if (time != minTime || distance != minDistance)
+		{
+			minTime = time;
+			minDistance = distance;
+			registrar.requestUpdates(time, distance);
+		}
+	}
+
+	/**
+	 * The parameters, the last passed fix and the pending batch of one
+	 * subscriber.
+	 */
+	private static final class Subscription
+	{
+		final String name;
+		final FixSubscriber subscriber;
+		final long interval;
+		final float distance;
+		final long maxDelay;
+
+		final long[] times;
+		final double[] lats;
+		final double[] lons;
+		int count;
+		// clock time of the oldest fix in the batch
+		long since;
+
+		boolean passed;
+		long lastTime;
+		double lastLat;
+		double lastCosLat;
+		double lastLongitude;
+
+		Subscription (String name, FixSubscriber subscriber, long interval, float distance, int batchSize,
+				long maxDelay)
+		{
+			this.name = name;
+			this.subscriber = subscriber;
+			this.interval = interval;
+			this.distance = distance;
+			this.maxDelay = maxDelay;
+			times = new long[batchSize];
+			lats = new double[batchSize];
+			lons = new double[batchSize];
+		}
+
+		boolean accepts (long time, double lat, double cosLat, double longitude)
+		{
+			if (!passed)
+				return true;
+			if (time - lastTime < interval)
+				return false;
+			return distance == 0 || Coordinates.haversine(lastLat, lastCosLat, lat, cosLat,
+					Math.toRadians(longitude - lastLongitude), Float11.TIER_PRECISE) >= distance;
+		}
+
+		void add (long time, double latitude, double longitude, double lat, double cosLat, long now)
+		{
+			passed = true;
+			lastTime = time;
+			lastLat = lat;
+			lastCosLat = cosLat;
+			lastLongitude = longitude;
+			if (count == 0)
+				since = now;
+			times[count] = time;
+			lats[count] = latitude;
+			lons[count] = longitude;
+			count++;
+		}
+
+		boolean isDue (long now)
+		{
+			return count == times.length || (count > 0 && now - since >= maxDelay);
+		}
+
+		void deliver()
+		{
+			if (count == 0)
+				return;
+			int n = count;
+			count = 0;
+			subscriber.onFixes(times, lats, lons, n);
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * Receives batches of fixes from a FixStreamer.
+ */
+public interface FixSubscriber
+{
+	/**
+	 * Called with the fixes collected since the last batch, oldest first.
+	 * The arrays are reused for the next batch, so they must not be kept.
+	 *
+	 * @param times
+	 *            the times of the fixes in milliseconds
+	 * @param lats
+	 *            the latitudes in degrees
+	 * @param lons
+	 *            the longitudes in degrees
+	 * @param count
+	 *            the number of fixes, at least 1
+	 */
+	void onFixes (long[] times, double[] lats, double[] lons, int count);
+}
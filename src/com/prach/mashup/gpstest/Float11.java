@@ -8,87 +8,242 @@ public class Float11
 	final static public double LOG10 = 2.302585092994045684;
 	/** ln(0.5) constant */
 	final static public double LOGdiv2 = -0.6931471805599453094;
+
+	// ln(2) split into a high part with trailing zero bits and a low part
+	final static private double LN2_HI = 6.93147180369123816490e-01;
+	final static private double LN2_LO = 1.90821492927058770002e-10;
+	final static private double INVLN2 = 1.44269504088896338700e+00;
+	final static private double TWO_54 = 1.80143985094819840000e+16;
+	final static private double TWO_M28 = 3.72529029846191406250e-09;
+	final static private double TWO_M1000 = 9.33263618503218878990e-302;
+	// exp() overflows above and underflows below these arguments
+	final static private double EXP_OVERFLOW = 7.09782712893383973096e+02;
+	final static private double EXP_UNDERFLOW = -7.45133219101941108420e+02;
+	// minimax coefficients of e^r on [-0.5*ln2, 0.5*ln2]
+	final static private double EXP_P1 = 1.66666666666666019037e-01;
+	final static private double EXP_P2 = -2.77777777770155933842e-03;
+	final static private double EXP_P3 = 6.61375632143793436117e-05;
+	final static private double EXP_P4 = -1.65339022054652515390e-06;
+	final static private double EXP_P5 = 4.13813679705723846039e-08;
+	// minimax coefficients of log(1+f) on [sqrt(2)/2-1, sqrt(2)-1]
+	final static private double LG1 = 6.666666666666735130e-01;
+	final static private double LG2 = 3.999999999940941908e-01;
+	final static private double LG3 = 2.857142874366239149e-01;
+	final static private double LG4 = 2.222219843214978396e-01;
+	final static private double LG5 = 1.818357216161805012e-01;
+	final static private double LG6 = 1.531383769920937332e-01;
+	final static private double LG7 = 1.479819860511658591e-01;
+	// atan(0.5), atan(1), atan(1.5), atan(inf) split into high and low parts
+	final static private double[] ATAN_HI = {
+		4.63647609000806093515e-01,
+		7.85398163397448278999e-01,
+		9.82793723247329054082e-01,
+		1.57079632679489655800e+00
+	};
+	final static private double[] ATAN_LO = {
+		2.26987774529616870924e-17,
+		3.06161699786838301793e-17,
+		1.39033110312309984516e-17,
+		6.12323399573676603587e-17
+	};
+	// minimax coefficients of atan(x) on [-7/16, 7/16]
+	final static private double AT0 = 3.33333333333329318027e-01;
+	final static private double AT1 = -1.99999999998764832476e-01;
+	final static private double AT2 = 1.42857142725034663711e-01;
+	final static private double AT3 = -1.11111104054623557880e-01;
+	final static private double AT4 = 9.09088713343650656196e-02;
+	final static private double AT5 = -7.69187620504482999495e-02;
+	final static private double AT6 = 6.66107313738753120669e-02;
+	final static private double AT7 = -5.83357013379057348645e-02;
+	final static private double AT8 = 4.97687799461593236017e-02;
+	final static private double AT9 = -3.65315727442169155270e-02;
+	final static private double AT10 = 1.62858201153657823623e-02;
+
+	/**
+	 * Accuracy tier for ranking and other hot loops: an absolute error of at
+	 * most 1e-4 radians (the table keeps it below 2e-5).
+	 */
+	final static public int TIER_FAST = 0;
+	/**
+	 * Accuracy tier for values shown to the user: atan within 1 ulp,
+	 * asin and acos within 2 ulp. This is the default.
+	 */
+	final static public int TIER_PRECISE = 1;
+
+	// atan(i/ATAN_STEPS) for i=0..ATAN_STEPS, for linear interpolation
+	final static private int ATAN_STEPS = 64;
+	final static private double[] ATAN_TABLE = new double[ATAN_STEPS+1];
+	static
+	{
+		for(int i=0; i<=ATAN_STEPS; i++)
+			ATAN_TABLE[i]=atan((double)i/ATAN_STEPS);
+	}
 	//
 	static public double acos(double x)
 	{
-		double f=asin(x);
-		if(f==Double.NaN)
-			return f;
-		return Math.PI/2-f;
+		return acos(x, TIER_PRECISE);
+	}
+
+	/**
+	 * Returns the arc cosine of x with the given accuracy tier, or Double.NaN
+	 * if |x| &gt; 1.
+	 */
+	static public double acos(double x, int tier)
+	{
+		if(tier==TIER_FAST)
+		{
+			double f=asin(x, tier);
+			if(f!=f)
+				return f;
+			return Math.PI/2-f;
+		}
+		if( x<-1. || x>1. || x!=x ) return Double.NaN;
+		if( x==-1. ) return Math.PI;
+		// acos(x)=2*atan(sqrt((1-x)/(1+x))) keeps its precision near x=1
+		return 2.*atan(Math.sqrt((1.-x)/(1.+x)));
 	}
 
 	static public double asin(double x)
 	{
-		if( x<-1. || x>1. ) return Double.NaN;
+		return asin(x, TIER_PRECISE);
+	}
+
+	/**
+	 * Returns the arc sine of x with the given accuracy tier, or Double.NaN
+	 * if |x| &gt; 1.
+	 */
+	static public double asin(double x, int tier)
+	{
+		if( x<-1. || x>1. || x!=x ) return Double.NaN;
 		if( x==-1. ) return -Math.PI/2;
 		if( x==1 ) return Math.PI/2;
-		return atan(x/Math.sqrt(1-x*x));
+		// (1-x)*(1+x) avoids the cancellation of 1-x*x near |x|=1
+		return atan(x/Math.sqrt((1.-x)*(1.+x)), tier);
 	}
 
+	/**
+	 * Returns the arc tangent of x with the TIER_PRECISE accuracy.
+	 *
+	 * |x| is reduced against a table of four breakpoints, atan(x) =
+	 * atan(c) + atan((x-c)/(1+x*c)), and the remainder is evaluated with a
+	 * degree 22 odd minimax polynomial (algorithm of fdlibm s_atan.c). The
+	 * error is less than 1 ulp.
+	 */
 	static public double atan(double x)
 	{
-		boolean signChange=false;
-		boolean Invert=false;
-		int sp=0;
-		double x2, a;
-		// check up the sign change
-		if(x<0.)
+		int ix=(int)(Double.doubleToRawLongBits(x)>>>32)&0x7fffffff;
+		int id;
+		if(ix>=0x44100000)
 		{
-			x=-x;
-			signChange=true;
+			// |x| >= 2^66
+			if(x!=x)
+				return x;
+			return x>0.?ATAN_HI[3]+ATAN_LO[3]:-ATAN_HI[3]-ATAN_LO[3];
 		}
-		// check up the invertation
-		if(x>1.)
+		boolean signChange=(x<0.);
+		if(ix<0x3fdc0000)
 		{
-			x=1/x;
-			Invert=true;
+			// |x| < 0.4375
+			if(ix<0x3e200000)
+				return x;
+			id=-1;
 		}
-		// process shrinking the domain until x<PI/12
-		while(x>Math.PI/12)
+		else
 		{
-			sp++;
-			a=x+SQRT3;
-			a=1/a;
-			x=x*SQRT3;
-			x=x-1;
-			x=x*a;
+			x=Math.abs(x);
+			if(ix<0x3ff30000)
+			{
+				if(ix<0x3fe60000)
+				{
+					// 7/16 <= |x| < 11/16
+					id=0;
+					x=(2.*x-1.)/(2.+x);
+				}
+				else
+				{
+					// 11/16 <= |x| < 19/16
+					id=1;
+					x=(x-1.)/(x+1.);
+				}
+			}
+			else if(ix<0x40038000)
+			{
+				// 19/16 <= |x| < 39/16
+				id=2;
+				x=(x-1.5)/(1.+1.5*x);
+			}
+			else
+			{
+				// 39/16 <= |x| < 2^66
+				id=3;
+				x=-1./x;
+			}
 		}
 		// calculation core
-		x2=x*x;
-		a=x2+1.4087812;
-		a=0.55913709/a;
-		a=a+0.60310579;
-		a=a-(x2*0.05160454);
-		a=a*x;
-		// process until sp=0
-		while(sp>0)
+		double z=x*x;
+		double w=z*z;
+		double s1=z*(AT0+w*(AT2+w*(AT4+w*(AT6+w*(AT8+w*AT10)))));
+		double s2=w*(AT1+w*(AT3+w*(AT5+w*(AT7+w*AT9))));
+		if(id<0)
+			return x-x*(s1+s2);
+		z=ATAN_HI[id]-((x*(s1+s2)-ATAN_LO[id])-x);
+		return signChange?-z:z;
+	}
+
+	/**
+	 * Returns the arc tangent of x with the given accuracy tier.
+	 *
+	 * TIER_FAST interpolates linearly in a table of 65 values over [0, 1] and
+	 * uses atan(x) = pi/2 - atan(1/x) above 1. There are no data dependent
+	 * loops in either tier.
+	 */
+	static public double atan(double x, int tier)
+	{
+		if(tier!=TIER_FAST)
+			return atan(x);
+		if(x!=x)
+			return x;
+		boolean signChange=(x<0.);
+		boolean invert=false;
+		x=Math.abs(x);
+		if(x>1.)
 		{
-			a=a+Math.PI/6;
-			sp--;
+			x=1./x;
+			invert=true;
 		}
-		// invertation took place
-		if(Invert) a=Math.PI/2-a;
-		// sign change took place
-		if(signChange) a=-a;
-		//
-		return a;
+		double p=x*ATAN_STEPS;
+		int i=(int)p;
+		if(i==ATAN_STEPS)
+			i--;
+		double a=ATAN_TABLE[i]+(p-i)*(ATAN_TABLE[i+1]-ATAN_TABLE[i]);
+		if(invert)
+			a=Math.PI/2-a;
+		return signChange?-a:a;
 	}
 
 	static public double atan2(double y, double x)
+	{
+		return atan2(y, x, TIER_PRECISE);
+	}
+
+	/**
+	 * Returns the angle of the point (x, y) with the given accuracy tier.
+	 */
+	static public double atan2(double y, double x, int tier)
 	{
 		// if x=y=0
 		if(y==0. && x==0.)
 			return 0.;
 		// if x>0 atan(y/x)
 		if(x>0.)
-			return atan(y/x);
+			return atan(y/x, tier);
 		// if x<0 sign(y)*(pi - atan(|y/x|))
 		if(x<0.)
 		{
 			if(y<0.)
-				return -(Math.PI-atan(y/x));
+				return -(Math.PI-atan(y/x, tier));
 			else
-				return Math.PI-atan(-y/x);
+				return Math.PI-atan(-y/x, tier);
 		}
 		// if x=0 y!=0 sign(y)*pi/2
 		if(y<0.)
@@ -97,83 +252,102 @@ public class Float11
 			return Math.PI/2.;
 	}
 
+	/**
+	 * Returns e raised to the power of x.
+	 *
+	 * The argument is reduced to x = k*ln2 + r with |r| &lt;= 0.5*ln2, e^r is
+	 * evaluated with a degree 5 minimax polynomial and the result is scaled by
+	 * 2^k through the exponent bits (algorithm of fdlibm e_exp.c). The error is
+	 * less than 1 ulp.
+	 */
 	static public double exp(double x)
 	{
-		if(x==0.)
-			return 1.;
-		//
-		double f=1;
-		long d=1;
-		double k;
-		boolean isless=(x<0.);
-		if(isless)
-			x=-x;
-		k=x/d;
+		if(x!=x)
+			return x;
+		if(x>EXP_OVERFLOW)
+			return Double.POSITIVE_INFINITY;
+		if(x<EXP_UNDERFLOW)
+			return 0.;
 		//
-		for(long i=2; i<50; i++)
+		double hi=0., lo=0.;
+		int k=0;
+		double ax=Math.abs(x);
+		if(ax>0.5*LN2_HI)
 		{
-			f=f+k;
-			k=k*x/i;
+			// argument reduction, x=k*ln2+r
+			k=(int)(INVLN2*x+(x<0.?-0.5:0.5));
+			hi=x-k*LN2_HI;
+			lo=k*LN2_LO;
+			x=hi-lo;
 		}
+		else if(ax<TWO_M28)
+			return 1.+x;
 		//
-		if(isless)
-			return 1/f;
-		else
-			return f;
+		double t=x*x;
+		double c=x-t*(EXP_P1+t*(EXP_P2+t*(EXP_P3+t*(EXP_P4+t*EXP_P5))));
+		if(k==0)
+			return 1.-((x*c)/(c-2.)-x);
+		double y=1.-((lo-(x*c)/(2.-c))-hi);
+		// scale by 2^k, in two steps when 2^k is subnormal
+		if(k>=-1021)
+			return Double.longBitsToDouble(Double.doubleToRawLongBits(y)+((long)k<<52));
+		return Double.longBitsToDouble(Double.doubleToRawLongBits(y)+((long)(k+1000)<<52))*TWO_M1000;
 	}
 
-	static private double _log(double x)
+	/**
+	 * Returns the natural logarithm of x, or Double.NaN if x is not positive.
+	 *
+	 * x is split into 2^k*(1+f) with sqrt(2)/2 &lt; 1+f &lt; sqrt(2) from its
+	 * raw bits, log(1+f) is evaluated as 2s+s*R(s*s) with s=f/(2+f) and a
+	 * degree 14 minimax polynomial R, and k*ln2 is added back in two parts
+	 * (algorithm of fdlibm e_log.c). The error is less than 1 ulp.
+	 */
+	static public double log(double x)
 	{
 		if(!(x>0.))
 			return Double.NaN;
+		if(x==Double.POSITIVE_INFINITY)
+			return x;
 		//
-		double f=0.0;
-		//
-		int appendix=0;
-		while(x>0.0 && x<=1.0)
+		int k=0;
+		long bits=Double.doubleToRawLongBits(x);
+		int hx=(int)(bits>>>32);
+		if(hx<0x00100000)
 		{
-			x*=2.0;
-			appendix++;
+			// subnormal, scale up
+			k-=54;
+			bits=Double.doubleToRawLongBits(x*TWO_54);
+			hx=(int)(bits>>>32);
 		}
+		k+=(hx>>20)-1023;
+		hx&=0x000fffff;
+		// normalize x or x/2 into [sqrt(2)/2, sqrt(2))
+		int i=(hx+0x95f64)&0x100000;
+		x=Double.longBitsToDouble(((long)(hx|(i^0x3ff00000))<<32)|(bits&0xffffffffL));
+		k+=(i>>20);
+		double f=x-1.;
+		double dk=k;
 		//
-		x/=2.0;
-		appendix--;
-		//
-		double y1=x-1.;
-		double y2=x+1.;
-		double y=y1/y2;
-		//
-		double k=y;
-		y2=k*y;
-		//
-		for(long i=1; i<50; i+=2)
+		if((0x000fffff&(2+hx))<3)
 		{
-			f+=k/i;
-			k*=y2;
+			// |f| < 2^-20
+			if(f==0.)
+				return k==0?0.:dk*LN2_HI+dk*LN2_LO;
+			double r=f*f*(0.5-0.33333333333333333*f);
+			return k==0?f-r:dk*LN2_HI-((r-dk*LN2_LO)-f);
 		}
-		//
-		f*=2.0;
-		for(int i=0; i<appendix; i++)
-			f+=LOGdiv2;
-		//
-		return f;
-	}
-
-	static public double log(double x)
-	{
-		if(!(x>0.))
-			return Double.NaN;
-		//
-		if(x==1.0)
-			return 0.0;
-		// Argument of _log must be (0; 1]
-		if (x>1.)
+		double s=f/(2.+f);
+		double z=s*s;
+		double w=z*z;
+		double t1=w*(LG2+w*(LG4+w*LG6));
+		double t2=z*(LG1+w*(LG3+w*(LG5+w*LG7)));
+		double r=t2+t1;
+		if(((hx-0x6147a)|(0x6b851-hx))>0)
 		{
-			x=1/x;
-			return -_log(x);
-		};
-		//
-		return _log(x);
+			double hfsq=0.5*f*f;
+			return k==0?f-(hfsq-s*(hfsq+r)):dk*LN2_HI-((hfsq-(s*(hfsq+r)+dk*LN2_LO))-f);
+		}
+		return k==0?f-s*(f-r):dk*LN2_HI-((s*(f-r)-dk*LN2_LO)-f);
 	}
 
 	static public double log10(double x)
@@ -224,6 +398,17 @@ public class Float11
       return res;
   }
 	 */
+	/**
+	 * Returns x raised to the power of y.
+	 *
+	 * An integer y is handled by exponentiation by squaring in O(log|y|)
+	 * multiplications. Every squaring doubles the relative error of the
+	 * partial result, so the error stays below |y| ulp, as with the repeated
+	 * multiplication this replaces. Otherwise the result is exp(y*log(x)) for
+	 * positive x; the rounding error of y*log(x) is amplified by exp, so the
+	 * error is below 2*(1+|y*log(x)|) ulp. Negative x with a non-integer y
+	 * gives Double.NaN.
+	 */
 	static public double pow(double x, double y)
 	{
 		if(x==0.)
@@ -240,18 +425,33 @@ public class Float11
 		//
 		if(integerValue)
 		{
-			boolean neg=false;
-			if(y<0.)
-				neg=true;
+			boolean neg=(l<0);
+			// -Long.MIN_VALUE overflows, treat its magnitude as unsigned
+			long n=neg?-l:l;
+			double result=1.;
+			double base=x;
+			while(n!=0)
+			{
+				if((n&1)!=0)
+					result*=base;
+				n>>>=1;
+				base*=base;
+			}
 			//
-			double result=x;
-			for(long i=1; i<(neg?-l:l); i++)
-				result=result*x;
-			//
-			if(neg)
-				return 1./result;
-			else
+			if(!neg)
 				return result;
+			if(result!=Double.POSITIVE_INFINITY&&result!=Double.NEGATIVE_INFINITY)
+				return 1./result;
+			// 1/x^n overflowed on the way, the result is tiny but may not be 0
+			result=1.;
+			base=1./x;
+			for(n=-l; n!=0; n>>>=1)
+			{
+				if((n&1)!=0)
+					result*=base;
+				base*=base;
+			}
+			return result;
 		}
 		else
 		{
@@ -1,32 +1,67 @@
 package com.prach.mashup.gpstest;
 
-import java.text.NumberFormat;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import android.app.Activity;
 import android.content.Intent;
 import android.location.Criteria;
-import android.location.Location;
-import android.location.LocationListener;
 import android.location.LocationManager;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 
-public class GPSLocatorTest extends Activity implements LocationListener{
+public class GPSLocatorTest extends Activity implements FixListener{
     /** Called when the activity is first created. */
 	private final int UPDATE_LOCATION = 0xff;
+	/** Default minimum time between two screen refreshes in milliseconds. */
+	private static final long REFRESH_INTERVAL = 1000;
+	/** Default time in a fence before it counts as dwelling, in milliseconds. */
+	private static final long DWELL_TIME = 60000;
+	/** Number of recent fixes kept for BATCH requests. */
+	private static final int HISTORY_SIZE = 256;
+	/** Number of replayed fixes that can wait for the main thread. */
+	private static final int REPLAY_CAPACITY = 1024;
+	/** Largest number of replayed fixes handled in one message. */
+	private static final int REPLAY_BATCH = 64;
 	private TextView tblatdec,tblngdec,tblatdeg,tblngdeg,tbprovider; 
 	private Button refresh,finish;
 	private LocationManager mLocationManager;
-	private double mLatitude,mLongitude;
-	private Thread mThread;
+	private LocationSource mSource;
+	/** The current smoothed fix, replaced as a whole so readers never mix two fixes. */
+	private volatile Fix mFix = Fix.NONE;
+	private FixGate mGate;
+	private FixCache mFixCache;
+	private TrackRecorder mTrack;
+	private final TrackStats mStats = new TrackStats();
+	private final KalmanSmoother mSmoother = new KalmanSmoother();
+	private GeofenceEngine mGeofences;
+	private final FixHistory mHistory = new FixHistory(HISTORY_SIZE);
+	private String mPendingType;
+	private long mMaxAge;
+	private float mMaxAccuracy;
+	private RefreshThrottle mThrottle;
+	private FixBus mReplayBus;
+	/** Reads mReplayBus on the main thread while resumed, null otherwise. */
+	private FixBus.Consumer mReplay;
+	/** Whether mReplayDrain is queued, so there is never more than one. */
+	private final AtomicBoolean mReplayPosted = new AtomicBoolean();
+	private UpdateScheduler mScheduler;
 	private String provider;
-	private NumberFormat nf = NumberFormat.getInstance();
+	private final char[] latdec = new char[CoordinateFormat.MAX_LENGTH];
+	private final char[] lngdec = new char[CoordinateFormat.MAX_LENGTH];
+	private final char[] latdeg = new char[CoordinateFormat.MAX_LENGTH];
+	private final char[] lngdeg = new char[CoordinateFormat.MAX_LENGTH];
 	
 	@Override
     public void onCreate(Bundle savedInstanceState) {
@@ -38,7 +73,19 @@ public class GPSLocatorTest extends Activity implements LocationListener{
 		tblngdec = (TextView) findViewById(R.id.textview_lngdec);
 		tblngdeg = (TextView) findViewById(R.id.textview_lngdeg);
 		tbprovider = (TextView) findViewById(R.id.textview_provider);
-		initializeLocationAndStartGpsThread();
+		mThrottle = new RefreshThrottle(getIntent().getLongExtra("REFRESH_INTERVAL", REFRESH_INTERVAL));
+		Metrics.setEnabled(getIntent().getBooleanExtra("METRICS", Metrics.isEnabled()));
+		initializeLocation();
+		openSource(getIntent());
+		mGate = new FixGate(mSource);
+		// a replayed log neither starts from nor overwrites the last real fix,
+		// nor is it appended to the track of the device
+		if (getIntent().getStringExtra("REPLAY_FILE") == null) {
+			openFixCache();
+			openTrack();
+		}
+		addGeofences(getIntent());
+		mScheduler = new UpdateScheduler(mSource, toUpdateMode(getIntent().getStringExtra("UPDATE_MODE")));
 		refreshLocation();
 		
 		
@@ -68,48 +115,215 @@ public class GPSLocatorTest extends Activity implements LocationListener{
 		//lng.setText(location[1]);
 		//provider.setText(location[2]);
 
-		tblatdec.setText(nf.format(mLatitude));
-		tblatdeg.setText(toDegree(Coordinates.convert(mLatitude, Coordinates.DD_MM_SS)));
-		tblngdec.setText(nf.format(mLongitude));
-		tblngdeg.setText(toDegree(Coordinates.convert(mLongitude, Coordinates.DD_MM_SS)));
+		long start = Metrics.start();
+		Fix fix = mFix;
+		tblatdec.setText(latdec, 0, CoordinateFormat.formatDecimal(fix.getLatitude(), latdec, 0));
+		tblatdeg.setText(latdeg, 0, CoordinateFormat.formatDisplay(fix.getLatitude(), latdeg, 0));
+		tblngdec.setText(lngdec, 0, CoordinateFormat.formatDecimal(fix.getLongitude(), lngdec, 0));
+		tblngdeg.setText(lngdeg, 0, CoordinateFormat.formatDisplay(fix.getLongitude(), lngdeg, 0));
 		tbprovider.setText(provider);
+		Metrics.REFRESH.recordSince(start);
 	}
 	
-	private String toDegree(String rawdegree){
-		String[] temp = rawdegree.split(":");
-		return temp[0]+"\u00b0 "+temp[1]+"\' "+temp[2].substring(0, 2)+"\"";
-		
-	}
-	
-	private void initializeLocationAndStartGpsThread() {
+	private void initializeLocation() {
 		mLocationManager = (LocationManager) getSystemService(LOCATION_SERVICE);
 		List<String> providers = mLocationManager.getProviders(true);
 		Log.i("GPSLocator", "Enabled providers = " + providers.toString());
 		provider = mLocationManager.getBestProvider(new Criteria(),true);
 		Log.i("GPSLocator", "Best provider = " + provider);
-
-		setCurrentGpsLocation(null);   
-		mThread = new Thread(new MyThreadRunner());
-		mThread.start();
 	}
 	
-	private void setCurrentGpsLocation(Location location) {
-		//String bestProvider = "";
-		if (location == null) {
-			mLocationManager = (LocationManager) getSystemService(LOCATION_SERVICE);
-			mLocationManager.requestLocationUpdates(
-					LocationManager.GPS_PROVIDER, 10000, 0, this); // Every 30000 msecs	
-			location = mLocationManager.getLastKnownLocation(LocationManager.GPS_PROVIDER);	
+	private void openFixCache() {
+		try {
+			mFixCache = FixCache.open(new File(getFilesDir(), "lastfix.bin"));
+		} catch (IOException e) {
+			Log.w("GPSLocator", "Fix cache not available", e);
+			return;
+		}
+		if (mFixCache.isValid()) {
+			mGate.offer(mFixCache.getTime(), mFixCache.getAccuracy());
+			mFix = new Fix(mFixCache.getTime(), mFixCache.getLatitude(), mFixCache.getLongitude(),
+					mFixCache.getAltitude(), mFixCache.getAccuracy(), provider);
+		}
+	}
+	
+	private void openTrack() {
+		try {
+			mTrack = TrackRecorder.open(trackFile());
+		} catch (IOException e) {
+			Log.w("GPSLocator", "Track not available", e);
+		}
+	}
+	
+	private File trackFile() {
+		return new File(getFilesDir(), "track.bin");
+	}
+	
+	/**
+	 * Exports the recorded track for EXPORT=GPX or EXPORT=KML, gzipped with
+	 * EXPORT_GZIP, to EXPORT_FILE or a file next to the track, and returns
+	 * the path in EXPORT_FILE. The document is written on a thread of its
+	 * own and appears under that path only once it is complete. A replay
+	 * records no track, so there is nothing to export.
+	 */
+	private void exportTrack(Intent intent) {
+		String format = intent.getStringExtra("EXPORT");
+		final boolean gpx = "GPX".equals(format);
+		if (mTrack == null || (!gpx && !"KML".equals(format)))
+			return;
+		final boolean gzip = intent.getBooleanExtra("EXPORT_GZIP", false);
+		String path = intent.getStringExtra("EXPORT_FILE");
+		final File file = path != null ? new File(path)
+				: new File(getFilesDir(), (gpx ? "track.gpx" : "track.kml") + (gzip ? ".gz" : ""));
+		final TrackReader reader;
+		try {
+			mTrack.flush();
+			reader = TrackReader.open(trackFile());
+		} catch (IOException e) {
+			Log.w("GPSLocator", "Could not export the track", e);
+			return;
+		}
+		new Thread("GPSLocator export") {
+			public void run() {
+				File partial = new File(file.getPath() + ".part");
+				try {
+					try {
+						OutputStream out = new FileOutputStream(partial);
+						try {
+							long count = gpx ? GpxWriter.export(reader, out, "GPSLocator", gzip)
+									: KmlWriter.export(reader, out, "GPSLocator", gzip);
+							Log.i("GPSLocator", "Exported " + count + " fixes to " + file);
+						} finally {
+							// also when the writer cannot be created; a second close does nothing
+							out.close();
+						}
+					} finally {
+						reader.close();
+					}
+					if (!partial.renameTo(file))
+						throw new IOException("Could not rename " + partial + " to " + file);
+				} catch (IOException e) {
+					Log.w("GPSLocator", "Could not export the track", e);
+					partial.delete();
+				}
+			}
+		}.start();
+		intent.putExtra("EXPORT_FILE", file.getPath());
+	}
+	
+	private void openSource(Intent intent) {
+		String replay = intent.getStringExtra("REPLAY_FILE");
+		if (replay == null) {
+			mSource = new AndroidLocationSource(mLocationManager, LocationManager.GPS_PROVIDER);
+			mSource.setListener(this);
+			return;
+		}
+		// an NMEA log instead of the GPS, REPLAY_RATE times as fast as recorded
+		Log.i("GPSLocator", "Replaying " + replay);
+		mSource = new NmeaReplaySource(new File(replay), intent.getFloatExtra("REPLAY_RATE", 1));
+		mReplayBus = new FixBus(REPLAY_CAPACITY);
+		mSource.setListener(new FixListener() {
+			public void onFix(long time, double latitude, double longitude,
+					double altitude, float accuracy, float speed) {
+				// the replay runs on a thread of its own and can be far faster
+				// than the main thread: the fixes wait in the ring of the bus,
+				// which drops the oldest when it is full, and a single message
+				// at a time drains it
+				mReplayBus.publish(time, latitude, longitude, altitude, accuracy, speed);
+				if (mReplayPosted.compareAndSet(false, true)) {
+					Metrics.HANDLER_POSTED.increment();
+					updateHandler.post(mReplayDrain);
+				}
+			}
+		});
+	}
+	
+	private final Runnable mReplayDrain = new Runnable() {
+		public void run() {
+			Metrics.HANDLER_HANDLED.increment();
+			mReplayPosted.set(false);
+			if (mReplay == null)
+				return;
+			mReplay.poll(GPSLocatorTest.this, REPLAY_BATCH);
+			// let the looper handle other messages before the rest
+			if (mReplay != null && mReplay.getLag() > 0 && mReplayPosted.compareAndSet(false, true)) {
+				Metrics.HANDLER_POSTED.increment();
+				updateHandler.post(this);
+			}
 		}
+	};
+	
+	private void recordFix(long time, double latitude, double longitude, double altitude, float accuracy, float speed) {
 		try {
-			mLongitude = location.getLongitude();
-			mLatitude = location.getLatitude();
-			Log.i("GPSLocator", "<long,lat> = <" + mLongitude + "," + mLatitude+">");
-			Message msg = Message.obtain();
-			msg.what = UPDATE_LOCATION;
-			GPSLocatorTest.this.updateHandler.sendMessage(msg);
-		} catch (NullPointerException e) {
-			Log.i("GPSLocator", "Null pointer exception " + mLongitude + "," + mLatitude);
+			mTrack.append(time, latitude, longitude, altitude, accuracy, speed);
+		} catch (IOException e) {
+			Log.w("GPSLocator", "Could not write the track", e);
+		}
+	}
+	
+	private void addGeofences(Intent intent) {
+		// the fences come as (latitude, longitude, radius) triples
+		double[] fences = intent.getDoubleArrayExtra("FENCES");
+		if (fences == null)
+			return;
+		mGeofences = new GeofenceEngine(new GeofenceListener() {
+			public void onTransition(int fence, int transition, long time) {
+				Log.i("GPSLocator", "Fence " + fence + (transition == GeofenceEngine.ENTER ? " entered"
+						: transition == GeofenceEngine.EXIT ? " left" : " dwelled in"));
+			}
+		}, GeofenceEngine.DEFAULT_CELL_SIZE, intent.getLongExtra("DWELL_TIME", DWELL_TIME));
+		for (int i = 0; i + 2 < fences.length; i += 3)
+			mGeofences.addCircle(fences[i], fences[i + 1], fences[i + 2]);
+	}
+	
+	private static int toUpdateMode(String mode) {
+		if ("LOW_POWER".equals(mode))
+			return UpdateScheduler.MODE_LOW_POWER;
+		if ("HIGH_ACCURACY".equals(mode))
+			return UpdateScheduler.MODE_HIGH_ACCURACY;
+		return UpdateScheduler.MODE_BALANCED;
+	}
+	
+	public void onFix(long time, double latitude, double longitude, double altitude, float accuracy, float speed) {
+		// the cached fix may be newer than the last known location, while a
+		// replayed log lies in the past and starts over on every resume
+		int order = mGate.offer(time, accuracy);
+		if (order == FixGate.DROPPED)
+			return;
+		if (order == FixGate.RESTARTED) {
+			// nothing derived from the previous time line carries over
+			mSmoother.reset();
+			mStats.reset();
+			mHistory.clear();
+			mScheduler.reset();
+		}
+		long start = Metrics.start();
+		// the screen, the cache and the statistics get the smoothed
+		// position, the track keeps the raw fix
+		mSmoother.update(time, latitude, longitude, accuracy);
+		double lat = mSmoother.getLatitude();
+		double lon = mSmoother.getLongitude();
+		mFix = new Fix(time, lat, lon, altitude, accuracy, provider);
+		mHistory.add(time, lat, lon);
+		if (mFixCache != null)
+			mFixCache.store(time, lat, lon, altitude, accuracy);
+		mScheduler.onFix(time, lat, lon, speed, accuracy);
+		if (mTrack != null)
+			recordFix(time, latitude, longitude, altitude, accuracy, speed);
+		mStats.add(time, lat, lon, altitude, speed);
+		if (mGeofences != null)
+			mGeofences.update(time, lat, lon);
+		// wake the screen only for a changed fix, at most once per interval
+		long delay = mThrottle.offer(lat, lon, SystemClock.uptimeMillis());
+		if (delay != RefreshThrottle.NONE) {
+			Metrics.HANDLER_POSTED.increment();
+			updateHandler.sendEmptyMessageDelayed(UPDATE_LOCATION, delay);
+		}
+		Metrics.FIX_HANDLING.recordSince(start);
+		if (mPendingType != null && isFresh()) {
+			String type = mPendingType;
+			mPendingType = null;
+			deliverPassive(getIntent(), type);
 		}
 	}
 	
@@ -117,7 +331,10 @@ public class GPSLocatorTest extends Activity implements LocationListener{
 		public void handleMessage(Message msg) {
 			switch (msg.what) {
 			case UPDATE_LOCATION: {
-				Log.i("GPSLocator", "Updated location = " + mLatitude + " " + mLongitude);
+				Metrics.HANDLER_HANDLED.increment();
+				Metrics.HANDLER_DELAY.record(SystemClock.uptimeMillis() - msg.getWhen());
+				mThrottle.refreshed(SystemClock.uptimeMillis());
+				refreshLocation();
 				break;
 			}
 			}
@@ -125,77 +342,82 @@ public class GPSLocatorTest extends Activity implements LocationListener{
 		}
 	};
 	
-	class MyThreadRunner implements Runnable {
-		// @Override
-		public void run() {
-			while (!Thread.currentThread().isInterrupted()) {
-				Message m = Message.obtain();
-				m.what = 0;
-				GPSLocatorTest.this.updateHandler.sendMessage(m);
-				try {
-					Thread.sleep(5);
-				} catch (InterruptedException e) {
-					Thread.currentThread().interrupt();
-				}
-			}
-		}
-	}
-
-
-	@Override
-	public void onLocationChanged(Location location) {
-		// TODO Auto-generated method stub
-		setCurrentGpsLocation(location);
-	}
-
-	@Override
-	public void onProviderDisabled(String provider) {
-		// TODO Auto-generated method stub
-		setCurrentGpsLocation(null);
-	}
 
 	@Override
-	public void onProviderEnabled(String provider) {
-		// TODO Auto-generated method stub
-		setCurrentGpsLocation(null);
+	protected void onPause(){
+		super.onPause();
+		mScheduler.stop();
+		// also the replayed fixes still waiting, they must not reach onFix()
+		updateHandler.removeCallbacksAndMessages(null);
+		if (mReplay != null) {
+			mReplayBus.unsubscribe(mReplay);
+			mReplay = null;
+		}
+		mReplayPosted.set(false);
+		mThrottle.reset();
+		if(mTrack!=null){
+			try {
+				mTrack.flush();
+			} catch (IOException e) {
+				Log.w("GPSLocator", "Could not write the track", e);
+			}
+		}
 	}
 
 	@Override
-	public void onStatusChanged(String provider, int status, Bundle extras) {
-		// TODO Auto-generated method stub
-		setCurrentGpsLocation(null);
-	}
-	
-	@Override
-	protected void onPause(){
-		super.onPause();
-		mLocationManager.removeUpdates(this);
-		//mThread.stop();
+	protected void onDestroy(){
+		super.onDestroy();
+		if(mFixCache!=null){
+			try {
+				mFixCache.close();
+			} catch (IOException e) {
+				Log.w("GPSLocator", "Could not close the fix cache", e);
+			}
+		}
+		if(mTrack!=null){
+			try {
+				mTrack.close();
+			} catch (IOException e) {
+				Log.w("GPSLocator", "Could not close the track", e);
+			}
+		}
 	}
 
 	@Override
 	public void onResume(){
 		super.onResume();
+		// the replay starts over, without what was left from the last pass
+		if (mReplayBus != null)
+			mReplay = mReplayBus.subscribe(FixBus.BLOCK);
+		mScheduler.start();
+		mSource.deliverLastFix();
 		Intent intent = getIntent();
 		String mode = intent.getStringExtra("MODE");
 		String type = intent.getStringExtra("TYPE");
 		
 		if(intent!=null){
 			if(mode!=null){
-				if(mode.equals("PASSIVE")&&type.equals("null")){
-					//intent.putExtra("LAT", nf.format(mLatitude));
-					//intent.putExtra("LNG", nf.format(mLongitude));
-					String[] coor = {nf.format(mLatitude),nf.format(mLongitude)};
-					intent.putExtra("COOR", coor);
-					intent.putExtra("PROVIDER", provider);
-					this.setResult(Activity.RESULT_OK, intent);
-					GPSLocatorTest.this.finish();
-				}else if(mode.equals("PASSIVE")&&type.equals("JSON")){
-					intent.putExtra("JSON_RESULT", "{\"latitude\":\""+nf.format(mLatitude)+"\",\"longitude\":\""+nf.format(mLongitude)+"\"}");
+				if(mode.equals("PASSIVE")&&(type.equals("null")||type.equals("JSON"))){
+					mMaxAge = intent.getLongExtra("MAX_AGE", FixCache.DEFAULT_MAX_AGE);
+					// in meters, by default any accuracy is acceptable
+					mMaxAccuracy = intent.getFloatExtra("MAX_ACCURACY", Float.NaN);
+					if(isFresh()){
+						deliverPassive(intent, type);
+					}else{
+						// no acceptable fix yet, answer with the first one that arrives
+						Log.i("GPSLocator", "Waiting for a fix younger than " + mMaxAge + " ms"
+								+ (Float.isNaN(mMaxAccuracy) ? "" : " within " + mMaxAccuracy + " m"));
+						mPendingType = type;
+					}
+				}else if(mode.equals("ACTIVE")){
+					// FixStreamService streams the fixes, this only passes the request on
+					Intent service = new Intent(this, FixStreamService.class);
+					service.setAction(intent.getBooleanExtra("STOP", false)
+							? FixStreamService.ACTION_UNSUBSCRIBE : FixStreamService.ACTION_SUBSCRIBE);
+					service.putExtras(intent);
+					startService(service);
 					this.setResult(Activity.RESULT_OK, intent);
 					GPSLocatorTest.this.finish();
-				}else if(mode.equals("ACTIVE")){
-					
 				}else{
 					this.setResult(Activity.RESULT_CANCELED, intent);
 					GPSLocatorTest	.this.finish();
@@ -204,16 +426,110 @@ public class GPSLocatorTest extends Activity implements LocationListener{
 		}
 	}
 	
+	private boolean isFresh(){
+		return mGate.isFresh(mMaxAge, mMaxAccuracy);
+	}
+	
+	private void deliverPassive(Intent intent, String type){
+		Fix fix = mFix;
+		if(type.equals("null")){
+			//intent.putExtra("LAT", nf.format(mLatitude));
+			//intent.putExtra("LNG", nf.format(mLongitude));
+			String[] coor = {decimal(fix.getLatitude()),decimal(fix.getLongitude())};
+			intent.putExtra("COOR", coor);
+			intent.putExtra("PROVIDER", provider);
+		}else{
+			StringWriter json = new StringWriter();
+			try {
+				ResultEncoder.writeJson(json, fix.getLatitude(), fix.getLongitude());
+			} catch (IOException e) {
+				// a StringWriter does not throw
+			}
+			intent.putExtra("JSON_RESULT", json.toString());
+		}
+		intent.putExtra("TIME", fix.getTime());
+		putBatch(intent, type);
+		this.setResult(Activity.RESULT_OK, intent);
+		GPSLocatorTest.this.finish();
+	}
+	
 	private void intentFinish(){
 		Intent intent = getIntent();
 		if(intent!=null){
+			Fix fix = mFix;
 			//intent.putExtra("LAT", nf.format(mLatitude));
 			//intent.putExtra("LNG", nf.format(mLongitude));
-			String[] coor = {nf.format(mLatitude),nf.format(mLongitude)};
+			String[] coor = {decimal(fix.getLatitude()),decimal(fix.getLongitude())};
 			intent.putExtra("COOR", coor);
 			intent.putExtra("PROVIDER", provider);
+			putStats(intent);
+			putBatch(intent, intent.getStringExtra("TYPE"));
+			exportTrack(intent);
+			dumpMetrics(intent);
+			if(mGeofences!=null){
+				int[] inside = new int[mGeofences.size()];
+				int count = mGeofences.getInside(inside);
+				int[] fences = new int[count];
+				System.arraycopy(inside, 0, fences, 0, count);
+				intent.putExtra("INSIDE_FENCES", fences);
+			}
 			this.setResult(Activity.RESULT_OK, intent);
 		}
 		GPSLocatorTest.this.finish();
 	}
+	
+	private void dumpMetrics(Intent intent){
+		String path = intent.getStringExtra("METRICS_FILE");
+		if(path==null)
+			return;
+		try {
+			Metrics.dump(new File(path));
+		} catch (IOException e) {
+			Log.w("GPSLocator", "Could not write the metrics", e);
+		}
+	}
+	
+	private static String decimal(double coordinate){
+		return CoordinateFormat.formatDecimal(coordinate, new StringBuilder()).toString();
+	}
+	
+	/**
+	 * Adds the BATCH most recent fixes: as JSON_FIXES for the JSON type,
+	 * otherwise as FIXES, a packed double[] or with ENCODING=DELTA a byte[]
+	 * of ResultEncoder.encodeDeltas().
+	 */
+	private void putBatch(Intent intent, String type){
+		int batch = intent.getIntExtra("BATCH", 0);
+		if(batch<=0)
+			return;
+		int n = Math.min(batch, mHistory.size());
+		long[] times = new long[n];
+		double[] lats = new double[n];
+		double[] lons = new double[n];
+		mHistory.copy(n, times, lats, lons, 0);
+		if("JSON".equals(type)){
+			StringWriter json = new StringWriter();
+			try {
+				ResultEncoder.writeJson(json, times, lats, lons, 0, n);
+			} catch (IOException e) {
+				// a StringWriter does not throw
+			}
+			intent.putExtra("JSON_FIXES", json.toString());
+		}else if("DELTA".equals(intent.getStringExtra("ENCODING"))){
+			intent.putExtra("FIXES", ResultEncoder.encodeDeltas(times, lats, lons, 0, n));
+		}else{
+			intent.putExtra("FIXES", ResultEncoder.pack(times, lats, lons, 0, n));
+		}
+	}
+	
+	private void putStats(Intent intent){
+		intent.putExtra("DISTANCE", mStats.getDistance());
+		intent.putExtra("ELAPSED_TIME", mStats.getElapsedTime());
+		intent.putExtra("MOVING_TIME", mStats.getMovingTime());
+		intent.putExtra("AVERAGE_SPEED", mStats.getAverageSpeed());
+		intent.putExtra("MAX_SPEED", mStats.getMaxSpeed());
+		intent.putExtra("BEARING", mStats.getBearing());
+		intent.putExtra("ELEVATION_GAIN", mStats.getElevationGain());
+		intent.putExtra("ELEVATION_LOSS", mStats.getElevationLoss());
+	}
 }
\ No newline at end of file
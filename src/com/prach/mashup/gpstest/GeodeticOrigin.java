@@ -0,0 +1,364 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * Solves the inverse geodetic problem on the WGS84 ellipsoid from one fixed
+ * origin to any number of destinations, using Vincenty's iteration.
+ *
+ * The reduced latitude of the origin and its sine and cosine are computed
+ * once when the origin is set, so every destination costs only its own
+ * iteration. One instance can be reused for many origins through
+ * setOrigin(double, double). Instances are not thread safe. For a single
+ * pair of points, distanceBetween() and azimuthBetween() solve the problem
+ * without an instance.
+ *
+ * For nearly antipodal points where the iteration does not converge, the
+ * spherical great circle solution is returned instead.
+ */
+public final class GeodeticOrigin
+{
+	/**
+	 * Iteration limit that lets the solver converge to about 0.1 mm for all
+	 * points that are not nearly antipodal.
+	 */
+	public static final int PRECISE = 100;
+
+	/**
+	 * Iteration limit for hot loops. Four iterations keep the distance
+	 * within about 1.5 mm of PRECISE for points up to 10,000 km apart and
+	 * within 15 cm up to 18,000 km. Closer to the antipode the iteration
+	 * converges slowly and the error grows to meters at 19,000 km and to
+	 * kilometers for nearly antipodal points.
+	 */
+	public static final int FAST = 4;
+
+	/** WGS84 semi-major axis in meters. */
+	static final double A = 6378137.0;
+
+	/** WGS84 flattening. */
+	static final double F = 1 / 298.257223563;
+
+	/** WGS84 semi-minor axis in meters. */
+	static final double B = A * (1 - F);
+
+	private static final double EPSILON = 1e-12;
+
+	private double latitude;
+	private double longitude;
+	private double lon1;
+	private double sinU1;
+	private double cosU1;
+	private int maxIterations;
+
+	/**
+	 * Constructs a new origin with the PRECISE iteration limit.
+	 *
+	 * @param latitude
+	 *            the latitude of the origin in degrees
+	 * @param longitude
+	 *            the longitude of the origin in degrees
+	 */
+	public GeodeticOrigin (double latitude, double longitude)
+	{
+		this(latitude, longitude, PRECISE);
+	}
+
+	/**
+	 * Constructs a new origin with the given iteration limit.
+	 *
+	 * @param latitude
+	 *            the latitude of the origin in degrees
+	 * @param longitude
+	 *            the longitude of the origin in degrees
+	 * @param maxIterations
+	 *            the iteration limit, usually PRECISE or FAST
+	 * @throws java.lang.IllegalArgumentException
+	 *             if maxIterations is less than 1
+	 */
+	public GeodeticOrigin (double latitude, double longitude, int maxIterations)
+	{
+		setMaxIterations(maxIterations);
+		setOrigin(latitude, longitude);
+	}
+
+	/**
+	 * Moves this origin to a new point.
+	 *
+	 * @param latitude
+	 *            the latitude of the origin in degrees
+	 * @param longitude
+	 *            the longitude of the origin in degrees
+	 */
+	public void setOrigin (double latitude, double longitude)
+	{
+		this.latitude = latitude;
+		this.longitude = longitude;
+		double phi = Math.toRadians(latitude);
+		lon1 = Math.toRadians(longitude);
+		sinU1 = reducedSin(phi);
+		cosU1 = reducedCos(phi);
+	}
+
+	/**
+	 * Sets the maximum number of iterations for each destination.
+	 *
+	 * @param maxIterations
+	 *            the iteration limit, usually PRECISE or FAST
+	 * @throws java.lang.IllegalArgumentException
+	 *             if maxIterations is less than 1
+	 */
+	public void setMaxIterations (int maxIterations)
+	{
+		if (maxIterations < 1)
+			throw new IllegalArgumentException("maxIterations: " + maxIterations);
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * @return the latitude of the origin in degrees
+	 */
+	public double getLatitude()
+	{
+		return latitude;
+	}
+
+	/**
+	 * @return the longitude of the origin in degrees
+	 */
+	public double getLongitude()
+	{
+		return longitude;
+	}
+
+	/**
+	 * Calculates the geodetic distance from the origin to a destination.
+	 *
+	 * @param latitude
+	 *            the latitude of the destination in degrees
+	 * @param longitude
+	 *            the longitude of the destination in degrees
+	 * @return the distance in meters
+	 */
+	public double distance (double latitude, double longitude)
+	{
+		return solve(this.latitude, lon1, sinU1, cosU1, latitude, longitude, maxIterations, false);
+	}
+
+	/**
+	 * Calculates the geodetic distance between two points with the PRECISE
+	 * iteration limit.
+	 *
+	 * @param lat1
+	 *            the latitude of the origin in degrees
+	 * @param lon1
+	 *            the longitude of the origin in degrees
+	 * @param lat2
+	 *            the latitude of the destination in degrees
+	 * @param lon2
+	 *            the longitude of the destination in degrees
+	 * @return the distance in meters
+	 */
+	public static double distanceBetween (double lat1, double lon1, double lat2, double lon2)
+	{
+		double phi1 = Math.toRadians(lat1);
+		return solve(lat1, Math.toRadians(lon1), reducedSin(phi1), reducedCos(phi1), lat2, lon2, PRECISE, false);
+	}
+
+	/**
+	 * Calculates the initial azimuth from the origin to a destination,
+	 * relative to true north. Follows the rules of
+	 * Coordinates.azimuthTo(Coordinates) for the poles and for equal points.
+	 *
+	 * @param latitude
+	 *            the latitude of the destination in degrees
+	 * @param longitude
+	 *            the longitude of the destination in degrees
+	 * @return the azimuth in degrees, within the range [0.0, 360.0)
+	 * @see Coordinates#azimuthTo(Coordinates)
+	 */
+	public double azimuth (double latitude, double longitude)
+	{
+		double pole = poleAzimuth(this.latitude, this.longitude, latitude, longitude);
+		if (!Double.isNaN(pole))
+			return pole;
+		return solve(this.latitude, lon1, sinU1, cosU1, latitude, longitude, maxIterations, true);
+	}
+
+	/**
+	 * Calculates the initial azimuth from one point to another with the
+	 * PRECISE iteration limit, following the same rules as
+	 * azimuth(double, double).
+	 *
+	 * @param lat1
+	 *            the latitude of the origin in degrees
+	 * @param lon1
+	 *            the longitude of the origin in degrees
+	 * @param lat2
+	 *            the latitude of the destination in degrees
+	 * @param lon2
+	 *            the longitude of the destination in degrees
+	 * @return the azimuth in degrees, within the range [0.0, 360.0)
+	 */
+	public static double azimuthBetween (double lat1, double lon1, double lat2, double lon2)
+	{
+		double pole = poleAzimuth(lat1, lon1, lat2, lon2);
+		if (!Double.isNaN(pole))
+			return pole;
+		double phi1 = Math.toRadians(lat1);
+		return solve(lat1, Math.toRadians(lon1), reducedSin(phi1), reducedCos(phi1), lat2, lon2, PRECISE, true);
+	}
+
+	/**
+	 * @return the azimuth for an origin at a pole or equal to the
+	 *         destination, or Double.NaN if the geodesic has to be solved
+	 */
+	private static double poleAzimuth (double lat1, double lon1, double lat2, double lon2)
+	{
+		if (lat1 == lat2 && (lon1 == lon2 || Math.abs(lat2) == 90))
+			return 0;
+		if (lat1 == 90)
+			return 180;
+		if (lat1 == -90)
+			return 0;
+		return Double.NaN;
+	}
+
+	/**
+	 * Calculates the geodetic distances from the origin to many destinations
+	 * given as parallel arrays of latitudes and longitudes in degrees.
+	 *
+	 * @param lats
+	 *            the latitudes of the destinations in degrees
+	 * @param lons
+	 *            the longitudes of the destinations in degrees
+	 * @param offset
+	 *            the index of the first destination in lats and lons
+	 * @param count
+	 *            the number of destinations
+	 * @param distances
+	 *            receives the distances in meters
+	 * @param distancesOffset
+	 *            the index in distances for the first result
+	 */
+	public void distances (double[] lats, double[] lons, int offset, int count,
+			float[] distances, int distancesOffset)
+	{
+		for (int i = 0; i < count; i++)
+			distances[distancesOffset + i] = (float) solve(latitude, lon1, sinU1, cosU1, lats[offset + i],
+					lons[offset + i], maxIterations, false);
+	}
+
+	/**
+	 * Runs Vincenty's inverse formula from an origin given in degrees, with
+	 * its longitude in radians and the sine and cosine of its reduced
+	 * latitude.
+	 *
+	 * @return the initial azimuth of the geodesic in degrees if azimuth is
+	 *         true, otherwise its length in meters
+	 */
+	private static double solve (double lat1, double lon1, double sinU1, double cosU1, double latitude,
+			double longitude, int maxIterations, boolean azimuth)
+	{
+		double phi2 = Math.toRadians(latitude);
+		double sinU2 = reducedSin(phi2);
+		double cosU2 = reducedCos(phi2);
+
+		double L = Math.toRadians(longitude) - lon1;
+		if (L > Math.PI)
+			L -= 2 * Math.PI;
+		else if (L < -Math.PI)
+			L += 2 * Math.PI;
+
+		double sinU1sinU2 = sinU1 * sinU2;
+		double cosU1cosU2 = cosU1 * cosU2;
+		double sinU1cosU2 = sinU1 * cosU2;
+		double cosU1sinU2 = cosU1 * sinU2;
+
+		double lambda = L;
+		double sinLambda, cosLambda;
+		double sinSigma, cosSigma, sigma;
+		double cos2Alpha, cos2SigmaM;
+		int iterations = 0;
+		boolean converged;
+
+		do
+		{
+			sinLambda = Math.sin(lambda);
+			cosLambda = Math.cos(lambda);
+			double t1 = cosU2 * sinLambda;
+			double t2 = cosU1sinU2 - sinU1cosU2 * cosLambda;
+			sinSigma = Math.sqrt(t1 * t1 + t2 * t2);
+			if (sinSigma == 0)
+			{
+				// coincident points
+				return 0;
+			}
+			cosSigma = sinU1sinU2 + cosU1cosU2 * cosLambda;
+			sigma = Math.atan2(sinSigma, cosSigma);
+			double sinAlpha = cosU1cosU2 * sinLambda / sinSigma;
+			cos2Alpha = 1 - sinAlpha * sinAlpha;
+			// equatorial line
+			cos2SigmaM = cos2Alpha != 0 ? cosSigma - 2 * sinU1sinU2 / cos2Alpha : 0;
+			double C = F / 16 * cos2Alpha * (4 + F * (4 - 3 * cos2Alpha));
+			double lambdaPrev = lambda;
+			lambda = L + (1 - C) * F * sinAlpha
+				* (sigma + C * sinSigma * (cos2SigmaM + C * cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)));
+			converged = Math.abs(lambda - lambdaPrev) < EPSILON;
+		}
+		while (!converged && ++iterations < maxIterations);
+
+		if (!converged && (Math.abs(lambda) > Math.PI || maxIterations >= PRECISE))
+		{
+			// nearly antipodal, fall back to the sphere
+			return solveSpherical(Math.toRadians(lat1), phi2, L, azimuth);
+		}
+
+		if (azimuth)
+			return toAzimuth(Math.atan2(cosU2 * sinLambda, cosU1sinU2 - sinU1cosU2 * cosLambda));
+		double u2 = cos2Alpha * (A * A - B * B) / (B * B);
+		double a = 1 + u2 / 16384 * (4096 + u2 * (-768 + u2 * (320 - 175 * u2)));
+		double b = u2 / 1024 * (256 + u2 * (-128 + u2 * (74 - 47 * u2)));
+		double deltaSigma = b * sinSigma * (cos2SigmaM + b / 4
+				* (cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM) - b / 6 * cos2SigmaM
+				* (-3 + 4 * sinSigma * sinSigma) * (-3 + 4 * cos2SigmaM * cos2SigmaM)));
+		return B * a * (sigma - deltaSigma);
+	}
+
+	/**
+	 * Great circle fallback on a sphere with the mean earth radius.
+	 */
+	private static double solveSpherical (double phi1, double phi2, double dlon, boolean azimuth)
+	{
+		double cosPhi1 = Math.cos(phi1);
+		double cosPhi2 = Math.cos(phi2);
+		if (!azimuth)
+			return Coordinates.haversine(phi1, cosPhi1, phi2, cosPhi2, dlon, Float11.TIER_PRECISE);
+		return toAzimuth(Math.atan2(Math.sin(dlon) * cosPhi2,
+				cosPhi1 * Math.sin(phi2) - Math.sin(phi1) * cosPhi2 * Math.cos(dlon)));
+	}
+
+	private static double toAzimuth (double radians)
+	{
+		double deg = Math.toDegrees(radians);
+		if (deg < 0)
+			deg += 360;
+		return deg >= 360 ? 0 : deg;
+	}
+
+	/**
+	 * Sine of the reduced latitude, tan(U) = (1 - f) tan(phi), written so
+	 * that it stays finite at the poles.
+	 */
+	private static double reducedSin (double phi)
+	{
+		double y = (1 - F) * Math.sin(phi);
+		double x = Math.cos(phi);
+		return y / Math.sqrt(x * x + y * y);
+	}
+
+	private static double reducedCos (double phi)
+	{
+		double y = (1 - F) * Math.sin(phi);
+		double x = Math.cos(phi);
+		return x / Math.sqrt(x * x + y * y);
+	}
+}
@@ -0,0 +1,484 @@
+package com.prach.mashup.gpstest;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+/**
+ * Tracks which of many circular and polygonal fences contain the device and
+ * reports when it enters, leaves or dwells in one.
+ *
+ * Fences are kept in primitive arrays and indexed by a grid of cells of a
+ * fixed size in degrees. The index lists the fences whose bounding box
+ * touches each cell, in compressed form: one sorted array of occupied cells
+ * and one array of fence ids per cell. A fix looks up its cell with a binary
+ * search, skips the fences whose bounding box does not contain it, and runs
+ * the exact test only on the rest. Fences that would cover too many cells
+ * are not put into the grid and only go through the bounding box check.
+ *
+ * Circles are tested with the haversine distance. Polygons are tested with
+ * the even-odd rule on their vertices in degrees, which is accurate for
+ * fences of up to some kilometers; edges are straight in latitude and
+ * longitude, not great circles. Both kinds may cross the antimeridian.
+ *
+ * update() does not allocate; the index is rebuilt on the first update after
+ * fences were added. Transitions are delivered to the listener from within
+ * update(). The listener must not add fences. Instances are not thread safe.
+ */
+public final class GeofenceEngine
+{
+	/** The device moved into a fence. */
+	public static final int ENTER = 1;
+	/** The device left a fence. */
+	public static final int EXIT = 2;
+	/** The device stayed in a fence for the dwell time. */
+	public static final int DWELL = 3;
+
+	/** Default size of a grid cell in degrees, about 1 km. */
+	public static final double DEFAULT_CELL_SIZE = 0.01;
+
+	// fences that would be listed in more cells go to the large list
+	private static final int MAX_CELLS = 4096;
+	private static final int ID_BITS = 24;
+	private static final int MAX_FENCES = 1 << ID_BITS;
+
+	private static final byte CIRCLE = 0;
+	private static final byte POLYGON = 1;
+
+	private final GeofenceListener listener;
+	private final double cellSize;
+	private final long latCells;
+	private final long lonCells;
+	private final long dwellTime;
+
+	private int size;
+	private byte[] type = new byte[16];
+	// minimum latitude, minimum longitude, maximum latitude and width in
+	// longitude of each bounding box, in degrees
+	private double[] box = new double[4 * 16];
+	// circles: latitude, cosine of the latitude and longitude of the center
+	// in radians, radius in meters; polygons: index of the first vertex and
+	// number of vertices
+	private double[] shape = new double[4 * 16];
+	private double[] vertexLats = new double[64];
+	private double[] vertexLons = new double[64];
+	private int vertices;
+
+	// transition state
+	private boolean[] inside = new boolean[16];
+	private boolean[] dwelled = new boolean[16];
+	private long[] enterTime = new long[16];
+	private int[] seen = new int[16];
+	private int epoch;
+	private int[] insideList = new int[16];
+	private int insideCount;
+
+	// grid index
+	private boolean dirty = true;
+	private long[] cellKeys;
+	private int[] cellStart;
+	private int[] cellFences;
+	private int[] large;
+	private int largeCount;
+
+	/**
+	 * @param listener
+	 *            receives the transitions
+	 * @param cellSize
+	 *            the size of a grid cell in degrees, within [0.001, 180];
+	 *            about the size of a typical fence works best
+	 * @param dwellTime
+	 *            the time in milliseconds a device has to stay in a fence
+	 *            before DWELL is reported, or a negative value to never
+	 *            report DWELL
+	 * @throws java.lang.IllegalArgumentException
+	 *             if cellSize is out of range
+	 */
+	public GeofenceEngine (GeofenceListener listener, double cellSize, long dwellTime)
+	{
+		if (!(cellSize >= 0.001 && cellSize <= 180))
+			throw new IllegalArgumentException("cellSize: " + cellSize);
+		this.listener = listener;
+		this.cellSize = cellSize;
+		this.latCells = (long) Math.ceil(180 / cellSize);
+		this.lonCells = (long) Math.ceil(360 / cellSize);
+		this.dwellTime = dwellTime;
+	}
+
+	/**
+	 * Adds a circular fence.
+	 *
+	 * @param latitude
+	 *            the latitude of the center in degrees
+	 * @param longitude
+	 *            the longitude of the center in degrees
+	 * @param radius
+	 *            the radius in meters
+	 * @return the id of the fence
+	 * @throws java.lang.IllegalArgumentException
+	 *             if radius is negative
+	 */
+	public int addCircle (double latitude, double longitude, double radius)
+	{
+		if (!(radius >= 0))
+			throw new IllegalArgumentException("radius: " + radius);
+		int id = newFence(CIRCLE);
+		double lat = Math.toRadians(latitude);
+		shape[4 * id] = lat;
+		shape[4 * id + 1] = Math.cos(lat);
+		shape[4 * id + 2] = Math.toRadians(longitude);
+		shape[4 * id + 3] = radius;
+
+		double angle = radius / Coordinates.EARTH_RADIUS;
+		double dLat = Math.toDegrees(angle);
+		double minLat = latitude - dLat;
+		double maxLat = latitude + dLat;
+		double sin = Math.sin(angle) / Math.cos(lat);
+		if (minLat <= -90 || maxLat >= 90 || sin >= 1)
+			setBox(id, Math.max(minLat, -90), -180, Math.min(maxLat, 90), 360);
+		else
+		{
+			double dLon = Math.toDegrees(Math.asin(sin));
+			setBox(id, minLat, normalize(longitude - dLon), maxLat, 2 * dLon);
+		}
+		return id;
+	}
+
+	/**
+	 * Adds a polygonal fence. The polygon is closed implicitly, the last
+	 * vertex must not repeat the first one. Consecutive vertices are taken to
+	 * be less than 180 degrees of longitude apart.
+	 *
+	 * @param lats
+	 *            the latitudes of the vertices in degrees
+	 * @param lons
+	 *            the longitudes of the vertices in degrees
+	 * @param offset
+	 *            the index of the first vertex in lats and lons
+	 * @param count
+	 *            the number of vertices, at least 3
+	 * @return the id of the fence
+	 * @throws java.lang.IllegalArgumentException
+	 *             if count is less than 3
+	 */
+	public int addPolygon (double[] lats, double[] lons, int offset, int count)
+	{
+		if (count < 3)
+			throw new IllegalArgumentException("count: " + count);
+		int id = newFence(POLYGON);
+		if (vertices + count > vertexLats.length)
+		{
+			int capacity = Math.max(2 * vertexLats.length, vertices + count);
+			vertexLats = (double[]) grow(vertexLats, capacity);
+			vertexLons = (double[]) grow(vertexLons, capacity);
+		}
+		shape[4 * id] = vertices;
+		shape[4 * id + 1] = count;
+
+		// make the longitudes continuous across the antimeridian
+		double minLat = 90, maxLat = -90, minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+		double previous = lons[offset];
+		for (int i = 0; i < count; i++)
+		{
+			double lat = lats[offset + i];
+			double lon = previous + normalize(lons[offset + i] - previous);
+			previous = lon;
+			vertexLats[vertices + i] = lat;
+			vertexLons[vertices + i] = lon;
+			minLat = Math.min(minLat, lat);
+			maxLat = Math.max(maxLat, lat);
+			minLon = Math.min(minLon, lon);
+			maxLon = Math.max(maxLon, lon);
+		}
+		// shift the vertices so that the box starts at a normalized longitude
+		double shift = normalize(minLon) - minLon;
+		for (int i = 0; i < count; i++)
+			vertexLons[vertices + i] += shift;
+		vertices += count;
+		setBox(id, minLat, minLon + shift, maxLat, Math.min(maxLon - minLon, 360));
+		return id;
+	}
+
+	/**
+	 * @return the number of fences
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Evaluates all fences for a new fix and reports the transitions.
+	 *
+	 * @param time
+	 *            the time of the fix in milliseconds
+	 * @param latitude
+	 *            the latitude in degrees
+	 * @param longitude
+	 *            the longitude in degrees
+	 */
+	public void update (long time, double latitude, double longitude)
+	{
+		if (dirty)
+			buildIndex();
+		if (++epoch == 0)
+		{
+			// the stamps wrapped around, forget the old ones
+			Arrays.fill(seen, 0);
+			epoch = 1;
+		}
+
+		double lat = Math.toRadians(latitude);
+		double cosLat = Math.cos(lat);
+		long key = cell(latitude, longitude);
+		int c = Arrays.binarySearch(cellKeys, key);
+		if (c >= 0)
+		{
+			for (int i = cellStart[c]; i < cellStart[c + 1]; i++)
+				test(cellFences[i], time, latitude, longitude, lat, cosLat);
+		}
+		for (int i = 0; i < largeCount; i++)
+			test(large[i], time, latitude, longitude, lat, cosLat);
+
+		// fences that were not seen this time were left
+		for (int i = 0; i < insideCount; )
+		{
+			int id = insideList[i];
+			if (seen[id] != epoch)
+			{
+				inside[id] = false;
+				insideList[i] = insideList[--insideCount];
+				listener.onTransition(id, EXIT, time);
+				continue;
+			}
+			if (!dwelled[id] && dwellTime >= 0 && time - enterTime[id] >= dwellTime)
+			{
+				dwelled[id] = true;
+				listener.onTransition(id, DWELL, time);
+			}
+			i++;
+		}
+	}
+
+	/**
+	 * @param fence
+	 *            the id of a fence
+	 * @return true if the last fix was inside the fence
+	 */
+	public boolean isInside (int fence)
+	{
+		return inside[fence];
+	}
+
+	/**
+	 * Lists the fences that contained the last fix, in no particular order.
+	 *
+	 * @param fences
+	 *            receives the ids, as many as fit
+	 * @return the number of fences that contain the last fix
+	 */
+	public int getInside (int[] fences)
+	{
+		System.arraycopy(insideList, 0, fences, 0, Math.min(insideCount, fences.length));
+		return insideCount;
+	}
+
+	private void test (int id, long time, double latitude, double longitude, double lat, double cosLat)
+	{
+		double minLat = box[4 * id];
+		if (latitude < minLat || latitude > box[4 * id + 2])
+			return;
+		double dLon = longitude - box[4 * id + 1];
+		if (dLon < 0)
+			dLon += 360;
+		if (dLon > box[4 * id + 3])
+			return;
+
+		boolean contains;
+		if (type[id] == CIRCLE)
+		{
+			double d = Coordinates.haversine(lat, cosLat, shape[4 * id], shape[4 * id + 1],
+					Math.toRadians(longitude) - shape[4 * id + 2], Float11.TIER_PRECISE);
+			contains = d <= shape[4 * id + 3];
+		}
+		else
+			contains = polygonContains((int) shape[4 * id], (int) shape[4 * id + 1], latitude,
+					box[4 * id + 1] + dLon);
+		if (!contains)
+			return;
+
+		seen[id] = epoch;
+		if (!inside[id])
+		{
+			inside[id] = true;
+			dwelled[id] = false;
+			enterTime[id] = time;
+			insideList[insideCount++] = id;
+			listener.onTransition(id, ENTER, time);
+		}
+	}
+
+	/**
+	 * Even-odd test of a point against the vertices in [first, first + count).
+	 */
+	private boolean polygonContains (int first, int count, double lat, double lon)
+	{
+		double[] ys = vertexLats;
+		double[] xs = vertexLons;
+		boolean in = false;
+		int j = first + count - 1;
+		for (int i = first; i < first + count; j = i++)
+		{
+			double yi = ys[i], yj = ys[j];
+			if ((yi > lat) != (yj > lat) && lon < (xs[j] - xs[i]) * (lat - yi) / (yj - yi) + xs[i])
+				in = !in;
+		}
+		return in;
+	}
+
+	private int newFence (byte kind)
+	{
+		if (size == MAX_FENCES)
+			throw new IllegalStateException("Too many fences");
+		if (size == type.length)
+		{
+			int capacity = 2 * size;
+			type = (byte[]) grow(type, capacity);
+			box = (double[]) grow(box, 4 * capacity);
+			shape = (double[]) grow(shape, 4 * capacity);
+			inside = (boolean[]) grow(inside, capacity);
+			dwelled = (boolean[]) grow(dwelled, capacity);
+			enterTime = (long[]) grow(enterTime, capacity);
+			seen = (int[]) grow(seen, capacity);
+			insideList = (int[]) grow(insideList, capacity);
+		}
+		type[size] = kind;
+		dirty = true;
+		return size++;
+	}
+
+	private void setBox (int id, double minLat, double minLon, double maxLat, double width)
+	{
+		box[4 * id] = minLat;
+		box[4 * id + 1] = minLon;
+		box[4 * id + 2] = maxLat;
+		box[4 * id + 3] = width;
+	}
+
+	private void buildIndex()
+	{
+		// count the cells of every fence
+		long entries = 0;
+		int largeFences = 0;
+		for (int id = 0; id < size; id++)
+		{
+			long cells = rows(id) * columns(id);
+			if (cells > MAX_CELLS)
+				largeFences++;
+			else
+				entries += cells;
+		}
+
+		long[] pairs = new long[(int) entries];
+		large = new int[largeFences];
+		largeCount = 0;
+		int n = 0;
+		for (int id = 0; id < size; id++)
+		{
+			long rows = rows(id);
+			long columns = columns(id);
+			if (rows * columns > MAX_CELLS)
+			{
+				large[largeCount++] = id;
+				continue;
+			}
+			long row0 = row(box[4 * id]);
+			long column0 = column(box[4 * id + 1]);
+			for (long r = row0; r < row0 + rows; r++)
+			{
+				for (long c = column0; c < column0 + columns; c++)
+					pairs[n++] = ((r * lonCells + c % lonCells) << ID_BITS) | id;
+			}
+		}
+		Arrays.sort(pairs);
+
+		// compress into one entry per cell
+		int cells = 0;
+		for (int i = 0; i < n; i++)
+		{
+			if (i == 0 || pairs[i] >>> ID_BITS != pairs[i - 1] >>> ID_BITS)
+				cells++;
+		}
+		cellKeys = new long[cells];
+		cellStart = new int[cells + 1];
+		cellFences = new int[n];
+		int c = -1;
+		for (int i = 0; i < n; i++)
+		{
+			long key = pairs[i] >>> ID_BITS;
+			if (c < 0 || key != cellKeys[c])
+			{
+				cellKeys[++c] = key;
+				cellStart[c] = i;
+			}
+			cellFences[i] = (int) (pairs[i] & (MAX_FENCES - 1));
+		}
+		cellStart[cells] = n;
+		dirty = false;
+	}
+
+	private long rows (int id)
+	{
+		return row(box[4 * id + 2]) - row(box[4 * id]) + 1;
+	}
+
+	private long columns (int id)
+	{
+		double minLon = box[4 * id + 1];
+		long columns = column(minLon + box[4 * id + 3]) - column(minLon) + 1;
+		return Math.min(columns, lonCells);
+	}
+
+	private long row (double latitude)
+	{
+		long row = (long) Math.floor((latitude + 90) / cellSize);
+		return Math.max(0, Math.min(row, latCells - 1));
+	}
+
+	/**
+	 * @return the column of a longitude, not wrapped; may reach beyond
+	 *         lonCells for the end of a box that crosses the antimeridian
+	 */
+	private long column (double longitude)
+	{
+		return Math.max(0, (long) Math.floor((longitude + 180) / cellSize));
+	}
+
+	private long cell (double latitude, double longitude)
+	{
+		return row(latitude) * lonCells + column(normalize(longitude)) % lonCells;
+	}
+
+	/**
+	 * Copies a primitive array into a longer one; Arrays.copyOf() is not
+	 * available on Android 1.6.
+	 */
+	private static Object grow (Object array, int length)
+	{
+		Object larger = Array.newInstance(array.getClass().getComponentType(), length);
+		System.arraycopy(array, 0, larger, 0, Array.getLength(array));
+		return larger;
+	}
+
+	/**
+	 * @return the longitude in [-180, 180)
+	 */
+	private static double normalize (double longitude)
+	{
+		longitude %= 360;
+		if (longitude >= 180)
+			return longitude - 360;
+		if (longitude < -180)
+			return longitude + 360;
+		return longitude;
+	}
+}
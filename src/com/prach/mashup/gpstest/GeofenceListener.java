@@ -0,0 +1,20 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * Receives the fence transitions detected by GeofenceEngine.
+ */
+public interface GeofenceListener
+{
+	/**
+	 * Called for every change of a fence.
+	 *
+	 * @param fence
+	 *            the id of the fence, as returned when it was added
+	 * @param transition
+	 *            GeofenceEngine.ENTER, GeofenceEngine.EXIT or
+	 *            GeofenceEngine.DWELL
+	 * @param time
+	 *            the time of the fix that caused the transition
+	 */
+	void onTransition (int fence, int transition, long time);
+}
@@ -0,0 +1,313 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * Geohash codec on bit-interleaved long values.
+ *
+ * A hash of b bits holds the cell of a point in its lowest b bits, with
+ * longitude and latitude bits alternating starting with longitude, exactly
+ * like the standard base32 geohash of b/5 characters. Hashes of the same
+ * precision that share a prefix are spatially close, so sorting or bucketing
+ * by hash groups nearby points without computing distances. The precision is
+ * not stored in the value; the caller passes it along.
+ *
+ * None of the methods allocates, except toString(long, int).
+ */
+public final class Geohash
+{
+	/** Largest supported precision, equal to 12 base32 characters. */
+	public static final int MAX_BITS = 60;
+
+	/** Returned by the neighbor methods for cells beyond a pole. */
+	public static final long NONE = -1;
+
+	private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+	private static final byte[] BASE32_INDEX = new byte[128];
+	static
+	{
+		for (int i = 0; i < BASE32_INDEX.length; i++)
+			BASE32_INDEX[i] = -1;
+		for (int i = 0; i < BASE32.length; i++)
+			BASE32_INDEX[BASE32[i]] = (byte) i;
+	}
+
+	private Geohash()
+	{
+	}
+
+	/**
+	 * Encodes a point.
+	 *
+	 * @param latitude
+	 *            the latitude in degrees, within [-90.0, 90.0]
+	 * @param longitude
+	 *            the longitude in degrees, within [-180.0, 180.0]
+	 * @param bits
+	 *            the precision, within [1, MAX_BITS]
+	 * @return the hash
+	 * @throws java.lang.IllegalArgumentException
+	 *             if bits is out of range
+	 */
+	public static long encode (double latitude, double longitude, int bits)
+	{
+		checkBits(bits);
+		int latBits = bits >> 1;
+		int lonBits = bits - latBits;
+		return interleave(index(latitude + 90, 180, latBits), index(longitude + 180, 360, lonBits), bits);
+	}
+
+	/**
+	 * Encodes many points given as parallel arrays of latitudes and
+	 * longitudes in degrees.
+	 *
+	 * @param lats
+	 *            the latitudes in degrees
+	 * @param lons
+	 *            the longitudes in degrees
+	 * @param offset
+	 *            the index of the first point in lats and lons
+	 * @param count
+	 *            the number of points
+	 * @param bits
+	 *            the precision, within [1, MAX_BITS]
+	 * @param hashes
+	 *            receives the hashes
+	 * @param hashesOffset
+	 *            the index in hashes for the first hash
+	 * @throws java.lang.IllegalArgumentException
+	 *             if bits is out of range
+	 */
+	public static void encode (double[] lats, double[] lons, int offset, int count, int bits,
+			long[] hashes, int hashesOffset)
+	{
+		checkBits(bits);
+		int latBits = bits >> 1;
+		int lonBits = bits - latBits;
+		for (int i = 0; i < count; i++)
+		{
+			long lat = index(lats[offset + i] + 90, 180, latBits);
+			long lon = index(lons[offset + i] + 180, 360, lonBits);
+			hashes[hashesOffset + i] = interleave(lat, lon, bits);
+		}
+	}
+
+	/**
+	 * @return the latitude of the center of the cell in degrees
+	 */
+	public static double decodeLatitude (long hash, int bits)
+	{
+		int latBits = bits >> 1;
+		return (latIndex(hash, bits) + 0.5) * 180 / (1L << latBits) - 90;
+	}
+
+	/**
+	 * @return the longitude of the center of the cell in degrees
+	 */
+	public static double decodeLongitude (long hash, int bits)
+	{
+		int lonBits = bits - (bits >> 1);
+		return (lonIndex(hash, bits) + 0.5) * 360 / (1L << lonBits) - 180;
+	}
+
+	/**
+	 * Recovers the bounding box of a cell.
+	 *
+	 * @param hash
+	 *            the hash
+	 * @param bits
+	 *            the precision of the hash
+	 * @param box
+	 *            receives the minimum latitude, minimum longitude, maximum
+	 *            latitude and maximum longitude in degrees, in this order
+	 */
+	public static void bounds (long hash, int bits, double[] box)
+	{
+		int latBits = bits >> 1;
+		int lonBits = bits - latBits;
+		double height = 180.0 / (1L << latBits);
+		double width = 360.0 / (1L << lonBits);
+		box[0] = latIndex(hash, bits) * height - 90;
+		box[1] = lonIndex(hash, bits) * width - 180;
+		box[2] = box[0] + height;
+		box[3] = box[1] + width;
+	}
+
+	/**
+	 * Returns the hash of a cell next to the given one. Longitudes wrap
+	 * around the antimeridian.
+	 *
+	 * @param hash
+	 *            the hash
+	 * @param bits
+	 *            the precision of the hash
+	 * @param dLat
+	 *            the number of cells to the north, may be negative
+	 * @param dLon
+	 *            the number of cells to the east, may be negative
+	 * @return the hash of the neighbor, or NONE if it lies beyond a pole
+	 */
+	public static long neighbor (long hash, int bits, int dLat, int dLon)
+	{
+		int latBits = bits >> 1;
+		int lonBits = bits - latBits;
+		long lat = latIndex(hash, bits) + dLat;
+		if (lat < 0 || lat >= (1L << latBits))
+			return NONE;
+		long lon = (lonIndex(hash, bits) + dLon) & ((1L << lonBits) - 1);
+		return interleave(lat, lon, bits);
+	}
+
+	/**
+	 * Stores the 8 neighbors of a cell in the order N, NE, E, SE, S, SW, W,
+	 * NW. Neighbors beyond a pole are stored as NONE.
+	 *
+	 * @param hash
+	 *            the hash
+	 * @param bits
+	 *            the precision of the hash
+	 * @param neighbors
+	 *            receives the 8 hashes
+	 * @param offset
+	 *            the index in neighbors for the first hash
+	 */
+	public static void neighbors (long hash, int bits, long[] neighbors, int offset)
+	{
+		neighbors[offset] = neighbor(hash, bits, 1, 0);
+		neighbors[offset + 1] = neighbor(hash, bits, 1, 1);
+		neighbors[offset + 2] = neighbor(hash, bits, 0, 1);
+		neighbors[offset + 3] = neighbor(hash, bits, -1, 1);
+		neighbors[offset + 4] = neighbor(hash, bits, -1, 0);
+		neighbors[offset + 5] = neighbor(hash, bits, -1, -1);
+		neighbors[offset + 6] = neighbor(hash, bits, 0, -1);
+		neighbors[offset + 7] = neighbor(hash, bits, 1, -1);
+	}
+
+	/**
+	 * Writes the base32 form of a hash. The precision of the hash is
+	 * 5*chars bits.
+	 *
+	 * @param hash
+	 *            the hash
+	 * @param chars
+	 *            the number of characters, within [1, 12]
+	 * @param buf
+	 *            the destination
+	 * @param offset
+	 *            the index of the first char to write
+	 * @return the number of chars written
+	 */
+	public static int toBase32 (long hash, int chars, char[] buf, int offset)
+	{
+		checkBits(chars * 5);
+		for (int i = offset + chars - 1; i >= offset; i--)
+		{
+			buf[i] = BASE32[(int) (hash & 31)];
+			hash >>>= 5;
+		}
+		return chars;
+	}
+
+	/**
+	 * @return the base32 form of a hash with a precision of 5*chars bits
+	 * @see #toBase32(long, int, char[], int)
+	 */
+	public static String toString (long hash, int chars)
+	{
+		char[] buf = new char[chars];
+		return new String(buf, 0, toBase32(hash, chars, buf, 0));
+	}
+
+	/**
+	 * Parses the base32 form of a hash. The precision of the result is
+	 * 5*length bits.
+	 *
+	 * @param s
+	 *            the characters
+	 * @param offset
+	 *            the index of the first character
+	 * @param length
+	 *            the number of characters, within [1, 12]
+	 * @return the hash
+	 * @throws java.lang.IllegalArgumentException
+	 *             if a character is not a geohash digit or the length is out
+	 *             of range
+	 */
+	public static long fromBase32 (CharSequence s, int offset, int length)
+	{
+		checkBits(length * 5);
+		long hash = 0;
+		for (int i = offset; i < offset + length; i++)
+		{
+			char c = s.charAt(i);
+			int v = c < 128 ? BASE32_INDEX[c] : -1;
+			if (v < 0)
+				throw new IllegalArgumentException("Not a geohash digit: " + c);
+			hash = (hash << 5) | v;
+		}
+		return hash;
+	}
+
+	private static void checkBits (int bits)
+	{
+		if (bits < 1 || bits > MAX_BITS)
+			throw new IllegalArgumentException("bits: " + bits);
+	}
+
+	/**
+	 * Index of a value in [0, range] when the range is split into 2^bits
+	 * cells. The upper end belongs to the last cell.
+	 */
+	private static long index (double value, double range, int bits)
+	{
+		long cells = 1L << bits;
+		long i = (long) (value / range * cells);
+		if (i >= cells)
+			return cells - 1;
+		return i < 0 ? 0 : i;
+	}
+
+	private static long interleave (long lat, long lon, int bits)
+	{
+		// the highest bit is always a longitude bit
+		if ((bits & 1) == 0)
+			return (spread(lon) << 1) | spread(lat);
+		return spread(lon) | (spread(lat) << 1);
+	}
+
+	private static long latIndex (long hash, int bits)
+	{
+		return (bits & 1) == 0 ? compact(hash) : compact(hash >>> 1);
+	}
+
+	private static long lonIndex (long hash, int bits)
+	{
+		return (bits & 1) == 0 ? compact(hash >>> 1) : compact(hash);
+	}
+
+	/**
+	 * Moves bit i of the lowest 32 bits to bit 2i.
+	 */
+	private static long spread (long x)
+	{
+		x &= 0xffffffffL;
+		x = (x | (x << 16)) & 0x0000ffff0000ffffL;
+		x = (x | (x << 8)) & 0x00ff00ff00ff00ffL;
+		x = (x | (x << 4)) & 0x0f0f0f0f0f0f0f0fL;
+		x = (x | (x << 2)) & 0x3333333333333333L;
+		x = (x | (x << 1)) & 0x5555555555555555L;
+		return x;
+	}
+
+	/**
+	 * Moves bit 2i to bit i, the inverse of spread().
+	 */
+	private static long compact (long x)
+	{
+		x &= 0x5555555555555555L;
+		x = (x | (x >>> 1)) & 0x3333333333333333L;
+		x = (x | (x >>> 2)) & 0x0f0f0f0f0f0f0f0fL;
+		x = (x | (x >>> 4)) & 0x00ff00ff00ff00ffL;
+		x = (x | (x >>> 8)) & 0x0000ffff0000ffffL;
+		x = (x | (x >>> 16)) & 0x00000000ffffffffL;
+		return x;
+	}
+}
@@ -0,0 +1,503 @@
+package com.prach.mashup.gpstest;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the track points of a GPX document into primitive arrays, a block at
+ * a time, for example to import what GpxWriter exported.
+ *
+ * The document is scanned as a stream of bytes through a buffer of fixed
+ * size without building a tree or creating strings, so memory does not grow
+ * with the track. Only trkpt elements are read, with their lat and lon
+ * attributes and their ele and time children, whatever the namespace
+ * prefix; everything else is skipped. The scanner does not validate the
+ * document and does not resolve entities, which GPX coordinates and times
+ * never need. Gzip compressed documents are recognized by their magic
+ * number.
+ *
+ * Instances are not thread safe.
+ */
+public final class GpxReader implements Closeable
+{
+	/** Stored for a point without a time. */
+	public static final long NO_TIME = Long.MIN_VALUE;
+
+	private static final int BUFFER_SIZE = 8192;
+	/** Longest name compared, longer names are cut off. */
+	private static final int MAX_NAME = 16;
+	/** Longest attribute value or element text that is parsed. */
+	private static final int MAX_VALUE = 64;
+
+	private static final byte[] TRKPT = { 't', 'r', 'k', 'p', 't' };
+	private static final byte[] ELE = { 'e', 'l', 'e' };
+	private static final byte[] TIME = { 't', 'i', 'm', 'e' };
+	private static final byte[] LAT = { 'l', 'a', 't' };
+	private static final byte[] LON = { 'l', 'o', 'n' };
+
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15 };
+
+	private final InputStream in;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int pos;
+	private int limit;
+	private boolean eof;
+
+	private final byte[] name = new byte[MAX_NAME];
+	private int nameLength;
+	private final byte[] value = new byte[MAX_VALUE];
+	private int valueLength;
+	private boolean valueTruncated;
+
+	// the point being read
+	private boolean inPoint;
+	private double lat, lon, ele;
+	private long time;
+
+	private long errors;
+
+	/**
+	 * @param in
+	 *            supplies the document, plain or gzip compressed; closed by
+	 *            close()
+	 * @throws java.io.IOException
+	 *             if in fails
+	 */
+	public GpxReader (InputStream in) throws IOException
+	{
+		PushbackInputStream pushback = new PushbackInputStream(in, 2);
+		int b0 = pushback.read();
+		int b1 = b0 < 0 ? -1 : pushback.read();
+		if (b1 >= 0)
+			pushback.unread(b1);
+		if (b0 >= 0)
+			pushback.unread(b0);
+		// the magic number of gzip is 1f 8b
+		this.in = b0 == 0x1f && b1 == 0x8b ? new GZIPInputStream(pushback, BUFFER_SIZE) : pushback;
+	}
+
+	/**
+	 * Opens a GPX file.
+	 *
+	 * @param path
+	 *            the file, plain or gzip compressed
+	 * @return the reader, positioned before the first point
+	 * @throws java.io.IOException
+	 *             if the file cannot be opened
+	 */
+	public static GpxReader open (File path) throws IOException
+	{
+		FileInputStream in = new FileInputStream(path);
+		try
+		{
+			return new GpxReader(in);
+		}
+		catch (IOException e)
+		{
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the next track points. Points whose coordinates are missing or out
+	 * of range are skipped and counted by getErrors().
+	 *
+	 * @param times
+	 *            receives the UTC times in milliseconds since the epoch, or
+	 *            NO_TIME
+	 * @param lats
+	 *            receives the latitudes in degrees
+	 * @param lons
+	 *            receives the longitudes in degrees
+	 * @param alts
+	 *            receives the elevations in meters, or Double.NaN; may be
+	 *            null
+	 * @param offset
+	 *            the index in the arrays for the first point
+	 * @param count
+	 *            the largest number of points to read
+	 * @return the number of points read, or -1 at the end of the document
+	 * @throws java.io.IOException
+	 *             if the stream fails
+	 */
+	public int read (long[] times, double[] lats, double[] lons, double[] alts, int offset, int count)
+			throws IOException
+	{
+		int n = 0;
+		while (n < count && skipTo('<'))
+		{
+			int c = next();
+			if (c == '!')
+			{
+				skipMarkupDeclaration();
+				continue;
+			}
+			if (c == '?')
+			{
+				skipTag(c);
+				continue;
+			}
+			boolean endTag = c == '/';
+			if (endTag)
+				c = next();
+			c = readName(c);
+			if (endTag)
+			{
+				skipTag(c);
+				if (inPoint && isName(TRKPT))
+					n += emit(times, lats, lons, alts, offset + n);
+			}
+			else if (isName(TRKPT))
+			{
+				inPoint = true;
+				lat = Double.NaN;
+				lon = Double.NaN;
+				ele = Double.NaN;
+				time = NO_TIME;
+				if (readPointAttributes(c))
+					n += emit(times, lats, lons, alts, offset + n);
+			}
+			else if (inPoint && (isName(ELE) || isName(TIME)))
+			{
+				boolean isEle = isName(ELE);
+				if (skipTag(c) || !readText())
+					continue;
+				if (isEle)
+					ele = parseNumber();
+				else if (!valueTruncated)
+					time = IsoTime.parse(value, 0, valueLength);
+			}
+			else
+				skipTag(c);
+		}
+		return n == 0 && eof ? -1 : n;
+	}
+
+	/**
+	 * @return the number of track points that were skipped because their
+	 *         coordinates are missing or out of range
+	 */
+	public long getErrors()
+	{
+		return errors;
+	}
+
+	/**
+	 * Closes the stream.
+	 */
+	public void close() throws IOException
+	{
+		in.close();
+	}
+
+	/**
+	 * Ends the current point and stores it if its coordinates are valid.
+	 *
+	 * @return the number of points stored, 0 or 1
+	 */
+	private int emit (long[] times, double[] lats, double[] lons, double[] alts, int i)
+	{
+		inPoint = false;
+		if (!(lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180))
+		{
+			errors++;
+			return 0;
+		}
+		times[i] = time;
+		lats[i] = lat;
+		lons[i] = lon;
+		if (alts != null)
+			alts[i] = ele;
+		return 1;
+	}
+
+	/**
+	 * Reads the attributes of a trkpt start tag up to its end.
+	 *
+	 * @param c
+	 *            the first byte after the name
+	 * @return true if the tag is empty, that is ends with "/>"
+	 */
+	private boolean readPointAttributes (int c) throws IOException
+	{
+		while (true)
+		{
+			while (c >= 0 && c <= ' ')
+				c = next();
+			if (c < 0 || c == '>')
+				return false;
+			if (c == '/')
+				return skipTag(c);
+			c = readName(c);
+			while (c >= 0 && c <= ' ')
+				c = next();
+			if (c != '=')
+				continue;
+			c = next();
+			while (c >= 0 && c <= ' ')
+				c = next();
+			if (c != '"' && c != '\'')
+				continue;
+			boolean isLat = isName(LAT);
+			boolean isLon = isName(LON);
+			int quote = c;
+			valueLength = 0;
+			valueTruncated = false;
+			while ((c = next()) >= 0 && c != quote)
+				store(c);
+			if (isLat)
+				lat = parseNumber();
+			else if (isLon)
+				lon = parseNumber();
+			c = next();
+		}
+	}
+
+	/**
+	 * Reads a name into the name buffer, dropping a namespace prefix.
+	 *
+	 * @param c
+	 *            the first byte of the name
+	 * @return the first byte after the name
+	 */
+	private int readName (int c) throws IOException
+	{
+		nameLength = 0;
+		while (c > ' ' && c != '>' && c != '/' && c != '=')
+		{
+			if (c == ':')
+				nameLength = 0;
+			else if (nameLength < MAX_NAME)
+				name[nameLength++] = (byte) c;
+			c = next();
+		}
+		return c;
+	}
+
+	private boolean isName (byte[] expected)
+	{
+		if (nameLength != expected.length)
+			return false;
+		for (int i = 0; i < nameLength; i++)
+		{
+			if (name[i] != expected[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads element text up to the next '<' into the value buffer; the '<'
+	 * is left to be read again.
+	 *
+	 * @return false at the end of the document
+	 */
+	private boolean readText() throws IOException
+	{
+		valueLength = 0;
+		valueTruncated = false;
+		int c;
+		while ((c = next()) >= 0)
+		{
+			if (c == '<')
+			{
+				// next() returned buffer[pos - 1], so this cannot underflow
+				pos--;
+				return true;
+			}
+			store(c);
+		}
+		return false;
+	}
+
+	private void store (int c)
+	{
+		if (valueLength < MAX_VALUE)
+			value[valueLength++] = (byte) c;
+		else
+			valueTruncated = true;
+	}
+
+	/**
+	 * Skips the rest of a tag, honoring quoted attribute values.
+	 *
+	 * @param c
+	 *            the current byte
+	 * @return true if the tag is empty, that is ends with "/>"
+	 */
+	private boolean skipTag (int c) throws IOException
+	{
+		int last = -1;
+		while (c >= 0 && c != '>')
+		{
+			if (c == '"' || c == '\'')
+			{
+				int quote = c;
+				while ((c = next()) >= 0 && c != quote)
+				{
+				}
+			}
+			last = c;
+			c = next();
+		}
+		return last == '/';
+	}
+
+	/**
+	 * Skips a comment, a CDATA section or a declaration such as DOCTYPE,
+	 * after its "<!".
+	 */
+	private void skipMarkupDeclaration() throws IOException
+	{
+		int c = next();
+		if (c == '-')
+		{
+			// a comment ends with "-->"
+			int dashes = 0;
+			while ((c = next()) >= 0)
+			{
+				if (c == '>' && dashes >= 2)
+					return;
+				dashes = c == '-' ? dashes + 1 : 0;
+			}
+		}
+		else if (c == '[')
+		{
+			// a CDATA section ends with "]]>"
+			int brackets = 0;
+			while ((c = next()) >= 0)
+			{
+				if (c == '>' && brackets >= 2)
+					return;
+				brackets = c == ']' ? brackets + 1 : 0;
+			}
+		}
+		else
+		{
+			// a DOCTYPE may hold an internal subset in brackets
+			int depth = 0;
+			while (c >= 0 && (c != '>' || depth > 0))
+			{
+				if (c == '[')
+					depth++;
+				else if (c == ']')
+					depth--;
+				c = next();
+			}
+		}
+	}
+
+	/**
+	 * @return the decimal number in the value buffer, or Double.NaN
+	 */
+	private double parseNumber()
+	{
+		if (valueTruncated)
+			return Double.NaN;
+		int p = 0;
+		int end = valueLength;
+		while (p < end && value[p] <= ' ')
+			p++;
+		while (end > p && value[end - 1] <= ' ')
+			end--;
+		int start = p;
+		boolean negative = p < end && value[p] == '-';
+		if (negative || (p < end && value[p] == '+'))
+			p++;
+		// up to 15 digits the value is exact in the mantissa and the division
+		// by an exact power of ten rounds correctly
+		long mantissa = 0;
+		int digits = 0;
+		int decimals = -1;
+		for (; p < end; p++)
+		{
+			byte b = value[p];
+			if (b >= '0' && b <= '9')
+			{
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if (decimals >= 0)
+					decimals++;
+			}
+			else if (b == '.' && decimals < 0)
+				decimals = 0;
+			else
+				break;
+		}
+		if (p == end && digits > 0 && digits < POWERS_OF_TEN.length)
+		{
+			double v = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+			return negative ? -v : v;
+		}
+		// exponents and long mantissas are rare, leave them to the library
+		try
+		{
+			char[] chars = new char[end - start];
+			for (int i = 0; i < chars.length; i++)
+				chars[i] = (char) value[start + i];
+			return Double.parseDouble(new String(chars));
+		}
+		catch (NumberFormatException e)
+		{
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Skips to the next occurrence of a byte and consumes it.
+	 *
+	 * @return false at the end of the document
+	 */
+	private boolean skipTo (int target) throws IOException
+	{
+		while (true)
+		{
+			for (int i = pos; i < limit; i++)
+			{
+				if (buffer[i] == target)
+				{
+					pos = i + 1;
+					return true;
+				}
+			}
+			pos = limit;
+			if (!fill())
+				return false;
+		}
+	}
+
+	/**
+	 * @return the next byte, or -1 at the end of the document
+	 */
+	private int next() throws IOException
+	{
+		if (pos == limit && !fill())
+			return -1;
+		return buffer[pos++] & 0xff;
+	}
+
+	private boolean fill() throws IOException
+	{
+		if (eof)
+			return false;
+		int n;
+		do
+			n = in.read(buffer, 0, BUFFER_SIZE);
+		while (n == 0);
+		if (n < 0)
+		{
+			eof = true;
+			return false;
+		}
+		pos = 0;
+		limit = n;
+		return true;
+	}
+}
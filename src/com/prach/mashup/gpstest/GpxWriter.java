@@ -0,0 +1,136 @@
+package com.prach.mashup.gpstest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streams fixes into a GPX 1.1 document with one track of one segment.
+ *
+ * The fixes are written as they are added, so the memory used does not
+ * depend on the length of the track; see XmlTrackWriter. Coordinates and
+ * times are formatted without NumberFormat, String.format() or intermediate
+ * strings, coordinates with seven decimals at most, elevations to the
+ * centimeter. To write to a FileChannel, pass
+ * java.nio.channels.Channels.newOutputStream(channel).
+ *
+ * The document is complete only after close(). Instances are not thread
+ * safe.
+ *
+ * @see GpxReader
+ */
+public final class GpxWriter extends XmlTrackWriter
+{
+	private static final byte[] HEADER = markup("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<gpx version=\"1.1\" creator=\"GPSLocator\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n<trk>\n");
+	private static final byte[] NAME = markup("<name>");
+	private static final byte[] NAME_END = markup("</name>\n");
+	private static final byte[] SEGMENT = markup("<trkseg>\n");
+	private static final byte[] POINT_LAT = markup("<trkpt lat=\"");
+	private static final byte[] POINT_LON = markup("\" lon=\"");
+	private static final byte[] POINT_ELE = markup("\"><ele>");
+	private static final byte[] ELE_TIME = markup("</ele><time>");
+	private static final byte[] POINT_TIME = markup("\"><time>");
+	private static final byte[] POINT_END = markup("</time></trkpt>\n");
+	private static final byte[] FOOTER = markup("</trkseg>\n</trk>\n</gpx>\n");
+
+	/**
+	 * Writes the start of the document.
+	 *
+	 * @param out
+	 *            receives the document and is closed by close()
+	 * @param name
+	 *            the name of the track, or null
+	 * @param gzip
+	 *            whether to compress the document with gzip
+	 * @throws java.io.IOException
+	 *             if out fails
+	 */
+	public GpxWriter (OutputStream out, String name, boolean gzip) throws IOException
+	{
+		super(out, gzip);
+		ascii(HEADER);
+		if (name != null)
+		{
+			ascii(NAME);
+			text(name);
+			ascii(NAME_END);
+		}
+		ascii(SEGMENT);
+	}
+
+	/**
+	 * Writes a track point.
+	 *
+	 * @param time
+	 *            the UTC time of the fix in milliseconds since the epoch
+	 * @param latitude
+	 *            the latitude in degrees
+	 * @param longitude
+	 *            the longitude in degrees
+	 * @param altitude
+	 *            the altitude in meters, or Double.NaN if it is unknown
+	 * @throws java.io.IOException
+	 *             if the stream fails
+	 * @throws java.lang.IllegalArgumentException
+	 *             if a coordinate or the time is out of range
+	 */
+	public void add (long time, double latitude, double longitude, double altitude) throws IOException
+	{
+		ascii(POINT_LAT);
+		coordinate(latitude);
+		ascii(POINT_LON);
+		coordinate(longitude);
+		if (Double.isNaN(altitude))
+			ascii(POINT_TIME);
+		else
+		{
+			ascii(POINT_ELE);
+			number(altitude);
+			ascii(ELE_TIME);
+		}
+		time(time);
+		ascii(POINT_END);
+	}
+
+	@Override
+	void footer() throws IOException
+	{
+		ascii(FOOTER);
+	}
+
+	/**
+	 * Writes all fixes of a track from the current position of the reader to
+	 * its end as a GPX document, and closes out.
+	 *
+	 * @param reader
+	 *            supplies the fixes
+	 * @param out
+	 *            receives the document
+	 * @param name
+	 *            the name of the track, or null
+	 * @param gzip
+	 *            whether to compress the document with gzip
+	 * @return the number of fixes written
+	 * @throws java.io.IOException
+	 *             if reading the track or writing the document fails
+	 */
+	public static long export (TrackReader reader, OutputStream out, String name, boolean gzip)
+			throws IOException
+	{
+		GpxWriter writer = new GpxWriter(out, name, gzip);
+		long count = 0;
+		try
+		{
+			while (reader.next())
+			{
+				writer.add(reader.getTime(), reader.getLatitude(), reader.getLongitude(), reader.getAltitude());
+				count++;
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+		return count;
+	}
+}
@@ -0,0 +1,193 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * Converts UTC times in milliseconds since the epoch to and from the ISO 8601
+ * form of GPX and KML, for example "2011-03-14T09:26:53.589Z", directly in
+ * byte arrays and without Calendar or SimpleDateFormat.
+ */
+final class IsoTime
+{
+	/** Maximum number of bytes written by format(). */
+	static final int MAX_LENGTH = 24;
+	/** Returned by parse() for text that is not a time. */
+	static final long INVALID = Long.MIN_VALUE;
+
+	private static final long MILLIS_PER_DAY = 86400000L;
+
+	private IsoTime()
+	{
+	}
+
+	/**
+	 * Writes a time as yyyy-mm-ddThh:mm:ssZ, with the milliseconds before the
+	 * Z if it is not a whole second.
+	 *
+	 * @param millis
+	 *            the UTC time in milliseconds since the epoch, in the years 0
+	 *            to 9999
+	 * @param buf
+	 *            the destination, with room for MAX_LENGTH bytes at offset
+	 * @param offset
+	 *            the index of the first byte to write
+	 * @return the number of bytes written
+	 * @throws java.lang.IllegalArgumentException
+	 *             if the year is out of range
+	 */
+	static int format (long millis, byte[] buf, int offset)
+	{
+		long days = millis / MILLIS_PER_DAY;
+		int ms = (int) (millis % MILLIS_PER_DAY);
+		if (ms < 0)
+		{
+			days--;
+			ms += MILLIS_PER_DAY;
+		}
+		// inverse of daysSinceEpoch, again with years starting in March
+		long z = days + 719468;
+		long era = (z >= 0 ? z : z - 146096) / 146097;
+		int dayOfEra = (int) (z - era * 146097);
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int mp = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		long year = era * 400 + yearOfEra + (month <= 2 ? 1 : 0);
+		if (year < 0 || year > 9999)
+			throw new IllegalArgumentException("Time out of range: " + millis);
+
+		int pos = writeDigits(buf, offset, (int) year, 4);
+		buf[pos++] = '-';
+		pos = writeDigits(buf, pos, month, 2);
+		buf[pos++] = '-';
+		pos = writeDigits(buf, pos, day, 2);
+		buf[pos++] = 'T';
+		pos = writeDigits(buf, pos, ms / 3600000, 2);
+		buf[pos++] = ':';
+		pos = writeDigits(buf, pos, ms / 60000 % 60, 2);
+		buf[pos++] = ':';
+		pos = writeDigits(buf, pos, ms / 1000 % 60, 2);
+		if (ms % 1000 != 0)
+		{
+			buf[pos++] = '.';
+			pos = writeDigits(buf, pos, ms % 1000, 3);
+		}
+		buf[pos++] = 'Z';
+		return pos - offset;
+	}
+
+	/**
+	 * Parses a time of the form yyyy-mm-ddThh:mm:ss with optional fractional
+	 * seconds and an optional zone, Z or +hh:mm or -hh:mm. A time without a
+	 * zone is taken as UTC, as GPX requires. Surrounding white space is
+	 * ignored, fractions beyond milliseconds are cut off.
+	 *
+	 * @param buf
+	 *            holds the text
+	 * @param offset
+	 *            the index of the first byte of the text
+	 * @param length
+	 *            the number of bytes of the text
+	 * @return the UTC time in milliseconds since the epoch, or INVALID
+	 */
+	static long parse (byte[] buf, int offset, int length)
+	{
+		int p = offset;
+		int end = offset + length;
+		while (p < end && buf[p] <= ' ')
+			p++;
+		while (end > p && buf[end - 1] <= ' ')
+			end--;
+		if (end - p < 19 || buf[p + 4] != '-' || buf[p + 7] != '-' || (buf[p + 10] != 'T' && buf[p + 10] != 't')
+				|| buf[p + 13] != ':' || buf[p + 16] != ':')
+			return INVALID;
+		int year = digits(buf, p, 4);
+		int month = digits(buf, p + 5, 2);
+		int day = digits(buf, p + 8, 2);
+		int hour = digits(buf, p + 11, 2);
+		int minute = digits(buf, p + 14, 2);
+		int second = digits(buf, p + 17, 2);
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 24 || minute < 0
+				|| minute > 59 || second < 0 || second > 60)
+			return INVALID;
+		p += 19;
+		int millis = 0;
+		if (p < end && buf[p] == '.')
+		{
+			p++;
+			int scale = 100;
+			int start = p;
+			while (p < end && buf[p] >= '0' && buf[p] <= '9')
+			{
+				millis += (buf[p++] - '0') * scale;
+				scale /= 10;
+			}
+			if (p == start)
+				return INVALID;
+		}
+		int zone = 0;
+		if (p < end && (buf[p] == 'Z' || buf[p] == 'z'))
+			p++;
+		else if (p < end && (buf[p] == '+' || buf[p] == '-'))
+		{
+			int sign = buf[p] == '-' ? -1 : 1;
+			int zoneHour = digits(buf, p + 1, Math.min(2, end - p - 1));
+			p += 3;
+			if (p < end && buf[p] == ':')
+				p++;
+			int zoneMinute = end - p >= 2 ? digits(buf, p, 2) : (p == end ? 0 : -1);
+			if (zoneHour < 0 || zoneMinute < 0 || end - p > 2)
+				return INVALID;
+			p = end;
+			zone = sign * (zoneHour * 60 + zoneMinute) * 60000;
+		}
+		if (p != end)
+			return INVALID;
+		return daysSinceEpoch(year, month, day) * MILLIS_PER_DAY
+				+ ((hour * 60 + minute) * 60 + second) * 1000L + millis - zone;
+	}
+
+	/**
+	 * @return the days from 1970-01-01 to a date of the Gregorian calendar
+	 */
+	static long daysSinceEpoch (int year, int month, int day)
+	{
+		// years start in March, so that the leap day is the last day
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
+	}
+
+	/**
+	 * @return the value of count digits at offset, or -1 if one is not a
+	 *         digit
+	 */
+	private static int digits (byte[] buf, int offset, int count)
+	{
+		if (count <= 0)
+			return -1;
+		int value = 0;
+		for (int i = offset; i < offset + count; i++)
+		{
+			if (buf[i] < '0' || buf[i] > '9')
+				return -1;
+			value = value * 10 + (buf[i] - '0');
+		}
+		return value;
+	}
+
+	/**
+	 * Writes the lowest digits of a non-negative int, padded with zeros.
+	 */
+	private static int writeDigits (byte[] buf, int pos, int value, int digits)
+	{
+		for (int i = pos + digits - 1; i >= pos; i--)
+		{
+			buf[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		return pos + digits;
+	}
+}
@@ -0,0 +1,302 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * Smooths location fixes with a constant-velocity Kalman filter.
+ *
+ * The state is a position and a velocity in a local east/north plane, in
+ * meters and meters per second. The plane is tangent at the current
+ * estimate and moves with it, so there is no projection error however far
+ * the track goes. East and north are filtered independently with the same
+ * model; because both axes also see the same noise, they share one
+ * covariance matrix. Acceleration is modelled as white noise, and every fix
+ * is weighted by its reported accuracy, so a poor fix moves the estimate
+ * less than a good one.
+ *
+ * update() keeps all its state in primitive fields and does not allocate,
+ * so it can run for every fix delivered to a LocationListener. smooth()
+ * post-processes a recorded track with the same filter followed by a
+ * Rauch-Tung-Striebel pass, which also uses the fixes after each point.
+ *
+ * Instances are not thread safe.
+ */
+public final class KalmanSmoother
+{
+	/** Default standard deviation of the acceleration in m/s^2. */
+	public static final double DEFAULT_ACCELERATION = 1.0;
+
+	/** Accuracy in meters assumed for a fix that does not report one. */
+	public static final float DEFAULT_ACCURACY = 50;
+
+	// variance of the velocity of the first fix, (10 m/s)^2
+	private static final double INITIAL_VELOCITY_VARIANCE = 100;
+	private static final double METERS_PER_DEGREE = Coordinates.EARTH_RADIUS * Math.PI / 180;
+
+	private final double accelerationVariance;
+
+	private boolean initialized;
+	private long time;
+	private double latitude;
+	private double longitude;
+	private double velocityEast;
+	private double velocityNorth;
+	// covariance of position and velocity along each axis
+	private double p00;
+	private double p01;
+	private double p11;
+
+	/**
+	 * Constructs a filter with the default acceleration noise.
+	 */
+	public KalmanSmoother()
+	{
+		this(DEFAULT_ACCELERATION);
+	}
+
+	/**
+	 * @param acceleration
+	 *            the standard deviation of the acceleration in m/s^2; larger
+	 *            values follow turns faster, smaller ones smooth more
+	 * @throws java.lang.IllegalArgumentException
+	 *             if acceleration is not positive
+	 */
+	public KalmanSmoother (double acceleration)
+	{
+		if (!(acceleration > 0))
+			throw new IllegalArgumentException("acceleration: " + acceleration);
+		this.accelerationVariance = acceleration * acceleration;
+	}
+
+	/**
+	 * Adds a fix and updates the estimate. A fix that is not newer than the
+	 * previous one is ignored.
+	 *
+	 * @param time
+	 *            the time of the fix in milliseconds
+	 * @param latitude
+	 *            the latitude in degrees
+	 * @param longitude
+	 *            the longitude in degrees
+	 * @param accuracy
+	 *            the accuracy of the fix in meters, or Float.NaN for
+	 *            DEFAULT_ACCURACY
+	 */
+	public void update (long time, double latitude, double longitude, float accuracy)
+	{
+		double r = accuracy > 0 ? (double) accuracy * accuracy : (double) DEFAULT_ACCURACY * DEFAULT_ACCURACY;
+		if (!initialized)
+		{
+			initialized = true;
+			this.time = time;
+			this.latitude = latitude;
+			this.longitude = longitude;
+			velocityEast = 0;
+			velocityNorth = 0;
+			p00 = r;
+			p01 = 0;
+			p11 = INITIAL_VELOCITY_VARIANCE;
+			return;
+		}
+		if (time <= this.time)
+			return;
+
+		// predict
+		double dt = (time - this.time) / 1000.0;
+		this.time = time;
+		predictCovariance(dt);
+		double east = velocityEast * dt;
+		double north = velocityNorth * dt;
+
+		// correct with the fix, measured from the current estimate
+		double cosLat = Math.cos(Math.toRadians(this.latitude));
+		double dEast = lonDelta(longitude, this.longitude) * METERS_PER_DEGREE * cosLat - east;
+		double dNorth = (latitude - this.latitude) * METERS_PER_DEGREE - north;
+		double s = p00 + r;
+		double k0 = p00 / s;
+		double k1 = p01 / s;
+		east += k0 * dEast;
+		north += k0 * dNorth;
+		velocityEast += k1 * dEast;
+		velocityNorth += k1 * dNorth;
+		p11 -= k1 * p01;
+		p01 *= 1 - k0;
+		p00 *= 1 - k0;
+
+		move(east, north, cosLat);
+	}
+
+	private void predictCovariance (double dt)
+	{
+		double dt2 = dt * dt;
+		double q = accelerationVariance;
+		p00 += 2 * dt * p01 + dt2 * p11 + q * dt2 * dt2 / 4;
+		p01 += dt * p11 + q * dt2 * dt / 2;
+		p11 += q * dt2;
+	}
+
+	/**
+	 * Moves the estimate by a displacement in meters.
+	 */
+	private void move (double east, double north, double cosLat)
+	{
+		latitude += north / METERS_PER_DEGREE;
+		longitude = normalize(longitude + east / (METERS_PER_DEGREE * cosLat));
+	}
+
+	/**
+	 * Forgets all fixes. The next fix starts a new track.
+	 */
+	public void reset()
+	{
+		initialized = false;
+	}
+
+	/**
+	 * @return the estimated latitude in degrees
+	 */
+	public double getLatitude()
+	{
+		return latitude;
+	}
+
+	/**
+	 * @return the estimated longitude in degrees
+	 */
+	public double getLongitude()
+	{
+		return longitude;
+	}
+
+	/**
+	 * @return the estimated speed in meters per second
+	 */
+	public double getSpeed()
+	{
+		return Math.sqrt(velocityEast * velocityEast + velocityNorth * velocityNorth);
+	}
+
+	/**
+	 * @return the standard deviation of the estimated position along each
+	 *         axis in meters
+	 */
+	public double getAccuracy()
+	{
+		return Math.sqrt(p00);
+	}
+
+	/**
+	 * Smooths a recorded track. Each fix is estimated from all fixes of the
+	 * track, before and after it, with a forward Kalman filter and a
+	 * Rauch-Tung-Striebel smoother. The fixes have to be ordered by time; a
+	 * fix with the time of its predecessor gets the same estimate.
+	 *
+	 * @param acceleration
+	 *            the standard deviation of the acceleration in m/s^2
+	 * @param times
+	 *            the times of the fixes in milliseconds
+	 * @param lats
+	 *            the latitudes in degrees
+	 * @param lons
+	 *            the longitudes in degrees
+	 * @param accuracies
+	 *            the accuracies in meters, or null if unknown
+	 * @param offset
+	 *            the index of the first fix in the arrays
+	 * @param count
+	 *            the number of fixes
+	 * @param outLats
+	 *            receives the smoothed latitudes, may be lats
+	 * @param outLons
+	 *            receives the smoothed longitudes, may be lons
+	 * @param outOffset
+	 *            the index in outLats and outLons for the first result
+	 * @throws java.lang.IllegalArgumentException
+	 *             if acceleration is not positive
+	 */
+	public static void smooth (double acceleration, long[] times, double[] lats, double[] lons,
+			float[] accuracies, int offset, int count, double[] outLats, double[] outLons, int outOffset)
+	{
+		if (count == 0)
+			return;
+		KalmanSmoother filter = new KalmanSmoother(acceleration);
+		// filtered velocities and covariances
+		double[] state = new double[5 * count];
+		for (int i = 0; i < count; i++)
+		{
+			filter.update(times[offset + i], lats[offset + i], lons[offset + i],
+					accuracies == null ? Float.NaN : accuracies[offset + i]);
+			outLats[outOffset + i] = filter.latitude;
+			outLons[outOffset + i] = filter.longitude;
+			state[5 * i] = filter.velocityEast;
+			state[5 * i + 1] = filter.velocityNorth;
+			state[5 * i + 2] = filter.p00;
+			state[5 * i + 3] = filter.p01;
+			state[5 * i + 4] = filter.p11;
+		}
+
+		// backward pass, the smoothed state of i + 1 corrects the filtered
+		// state of i; positions are differences in the plane at fix i
+		double q = acceleration * acceleration;
+		double nextVe = state[5 * (count - 1)];
+		double nextVn = state[5 * (count - 1) + 1];
+		for (int i = count - 2; i >= 0; i--)
+		{
+			int k = 5 * i;
+			double ve = state[k], vn = state[k + 1];
+			double f00 = state[k + 2], f01 = state[k + 3], f11 = state[k + 4];
+			double dt = (times[offset + i + 1] - times[offset + i]) / 1000.0;
+			if (dt < 0)
+				dt = 0;
+
+			// predicted covariance of i + 1
+			double dt2 = dt * dt;
+			double a00 = f00 + 2 * dt * f01 + dt2 * f11 + q * dt2 * dt2 / 4;
+			double a01 = f01 + dt * f11 + q * dt2 * dt / 2;
+			double a11 = f11 + q * dt2;
+			double det = a00 * a11 - a01 * a01;
+			if (det <= 0)
+			{
+				nextVe = ve;
+				nextVn = vn;
+				continue;
+			}
+
+			// gain C = P F^T A^-1
+			double b00 = f00 + dt * f01, b01 = f01;
+			double b10 = f01 + dt * f11, b11 = f11;
+			double c00 = (b00 * a11 - b01 * a01) / det;
+			double c01 = (b01 * a00 - b00 * a01) / det;
+			double c10 = (b10 * a11 - b11 * a01) / det;
+			double c11 = (b11 * a00 - b10 * a01) / det;
+
+			double lat = outLats[outOffset + i];
+			double lon = outLons[outOffset + i];
+			double cosLat = Math.cos(Math.toRadians(lat));
+			double ePos = lonDelta(outLons[outOffset + i + 1], lon) * METERS_PER_DEGREE * cosLat - ve * dt;
+			double nPos = (outLats[outOffset + i + 1] - lat) * METERS_PER_DEGREE - vn * dt;
+			double eVel = nextVe - ve;
+			double nVel = nextVn - vn;
+
+			outLats[outOffset + i] = lat + (c00 * nPos + c01 * nVel) / METERS_PER_DEGREE;
+			outLons[outOffset + i] = normalize(lon + (c00 * ePos + c01 * eVel) / (METERS_PER_DEGREE * cosLat));
+			nextVe = ve + c10 * ePos + c11 * eVel;
+			nextVn = vn + c10 * nPos + c11 * nVel;
+		}
+	}
+
+	/**
+	 * @return lon1 - lon2 in degrees, within [-180, 180)
+	 */
+	private static double lonDelta (double lon1, double lon2)
+	{
+		return normalize(lon1 - lon2);
+	}
+
+	private static double normalize (double lon)
+	{
+		if (lon >= 180)
+			return lon - 360;
+		if (lon < -180)
+			return lon + 360;
+		return lon;
+	}
+}
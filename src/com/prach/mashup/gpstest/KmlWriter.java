@@ -0,0 +1,124 @@
+package com.prach.mashup.gpstest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streams fixes into a KML 2.2 document as the coordinates of one LineString,
+ * in constant memory like GpxWriter. Altitudes are kept in the coordinates
+ * where known, though Google Earth draws the line on the ground by default.
+ *
+ * KML has no times for the points of a LineString. A gx:Track would hold
+ * them, but it lists all times before all coordinates, which cannot be
+ * written in one pass without keeping the track in memory; use GPX where the
+ * times matter.
+ *
+ * The document is complete only after close(). Instances are not thread
+ * safe.
+ */
+public final class KmlWriter extends XmlTrackWriter
+{
+	private static final byte[] HEADER = markup("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n<Document>\n<Placemark>\n");
+	private static final byte[] NAME = markup("<name>");
+	private static final byte[] NAME_END = markup("</name>\n");
+	private static final byte[] LINE = markup("<LineString>\n<tessellate>1</tessellate>\n<coordinates>\n");
+	private static final byte[] COMMA = markup(",");
+	private static final byte[] NEWLINE = markup("\n");
+	private static final byte[] FOOTER = markup("</coordinates>\n</LineString>\n</Placemark>\n</Document>\n</kml>\n");
+
+	/**
+	 * Writes the start of the document.
+	 *
+	 * @param out
+	 *            receives the document and is closed by close()
+	 * @param name
+	 *            the name of the track, or null
+	 * @param gzip
+	 *            whether to compress the document with gzip
+	 * @throws java.io.IOException
+	 *             if out fails
+	 */
+	public KmlWriter (OutputStream out, String name, boolean gzip) throws IOException
+	{
+		super(out, gzip);
+		ascii(HEADER);
+		if (name != null)
+		{
+			ascii(NAME);
+			text(name);
+			ascii(NAME_END);
+		}
+		ascii(LINE);
+	}
+
+	/**
+	 * Writes the next point of the line.
+	 *
+	 * @param latitude
+	 *            the latitude in degrees
+	 * @param longitude
+	 *            the longitude in degrees
+	 * @param altitude
+	 *            the altitude in meters, or Double.NaN if it is unknown
+	 * @throws java.io.IOException
+	 *             if the stream fails
+	 * @throws java.lang.IllegalArgumentException
+	 *             if a coordinate is out of range
+	 */
+	public void add (double latitude, double longitude, double altitude) throws IOException
+	{
+		coordinate(longitude);
+		ascii(COMMA);
+		coordinate(latitude);
+		if (!Double.isNaN(altitude))
+		{
+			ascii(COMMA);
+			number(altitude);
+		}
+		ascii(NEWLINE);
+	}
+
+	@Override
+	void footer() throws IOException
+	{
+		ascii(FOOTER);
+	}
+
+	/**
+	 * Writes all fixes of a track from the current position of the reader to
+	 * its end as a KML document, and closes out.
+	 *
+	 * @param reader
+	 *            supplies the fixes
+	 * @param out
+	 *            receives the document
+	 * @param name
+	 *            the name of the track, or null
+	 * @param gzip
+	 *            whether to compress the document with gzip, which gives a
+	 *            .kml.gz file rather than a .kmz archive
+	 * @return the number of fixes written
+	 * @throws java.io.IOException
+	 *             if reading the track or writing the document fails
+	 */
+	public static long export (TrackReader reader, OutputStream out, String name, boolean gzip)
+			throws IOException
+	{
+		KmlWriter writer = new KmlWriter(out, name, gzip);
+		long count = 0;
+		try
+		{
+			while (reader.next())
+			{
+				writer.add(reader.getLatitude(), reader.getLongitude(), reader.getAltitude());
+				count++;
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+		return count;
+	}
+}
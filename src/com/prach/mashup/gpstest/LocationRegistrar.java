@@ -0,0 +1,24 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * The part of a location manager that UpdateScheduler drives. The activity
+ * forwards these calls to android.location.LocationManager; a fake can
+ * record them instead.
+ */
+public interface LocationRegistrar
+{
+	/**
+	 * Registers for location updates, replacing any earlier registration.
+	 *
+	 * @param minTime
+	 *            the minimum time between updates in milliseconds
+	 * @param minDistance
+	 *            the minimum distance between updates in meters
+	 */
+	void requestUpdates (long minTime, float minDistance);
+
+	/**
+	 * Removes the registration.
+	 */
+	void removeUpdates();
+}
@@ -0,0 +1,32 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * Delivers fixes to a FixListener while it is registered for updates. The
+ * registration of LocationRegistrar starts and stops the delivery, so an
+ * UpdateScheduler can drive any source; the device's location provider is
+ * one, a replayed log is another.
+ */
+public interface LocationSource extends LocationRegistrar
+{
+	/**
+	 * Sets the listener for the fixes. Must be called before the first
+	 * registration.
+	 *
+	 * @param listener
+	 *            receives the fixes
+	 */
+	void setListener (FixListener listener);
+
+	/**
+	 * Passes the last fix known to the source to the listener right away,
+	 * if there is one.
+	 */
+	void deliverLastFix();
+
+	/**
+	 * @return the current UTC time in milliseconds since the epoch on the
+	 *         clock the fixes of this source follow, or Long.MIN_VALUE if the
+	 *         source has no time yet
+	 */
+	long currentTimeMillis();
+}
@@ -0,0 +1,367 @@
+package com.prach.mashup.gpstest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histograms of the hot paths, from a fix arriving to
+ * the screen being refreshed.
+ *
+ * Recording is lock free: a counter is an AtomicLong, a histogram has one
+ * AtomicLong per power of two, so recording a value is a bit count and one
+ * increment, without allocation. Values are read as a snapshot, or written to
+ * a file with dump().
+ *
+ * Metrics can be switched off at compile time with ENABLED, in which case the
+ * compiler drops the recording code, and at run time with setEnabled(), in
+ * which case recording costs a volatile read. A timed section is measured as
+ *
+ * <pre>
+ * long start = Metrics.start();
+ * ...
+ * Metrics.REFRESH.recordSince(start);
+ * </pre>
+ *
+ * where start() returns 0 while the metrics are off, so the clock is not read
+ * at all. Sections that take about as long as reading the clock twice are
+ * sampled instead, with Histogram.start() of a histogram that times only
+ * every n-th call.
+ */
+public final class Metrics
+{
+	/** Compile time switch; with false all recording is removed. */
+	public static final boolean ENABLED = true;
+
+	/** Number of buckets of a histogram, one per bit of a long. */
+	public static final int BUCKETS = 64;
+
+	/** Age of a fix in milliseconds when the provider delivers it. */
+	public static final Histogram FIX_AGE = new Histogram("fix_age", "ms");
+	/** Time in nanoseconds the activity takes to handle a fix. */
+	public static final Histogram FIX_HANDLING = new Histogram("fix_handling", "ns");
+	/** Time in nanoseconds of a screen refresh. */
+	public static final Histogram REFRESH = new Histogram("refresh", "ns");
+	/** Time in nanoseconds of Coordinates.convert(), of every 16th call. */
+	public static final Histogram CONVERT = new Histogram("convert", "ns", 16);
+	/** Time in milliseconds a message waits in the queue of the update handler. */
+	public static final Histogram HANDLER_DELAY = new Histogram("handler_delay", "ms");
+
+	/** Messages and runnables posted to the update handler. */
+	public static final Counter HANDLER_POSTED = new Counter("handler_posted");
+	/** Messages and runnables the update handler has run. */
+	public static final Counter HANDLER_HANDLED = new Counter("handler_handled");
+	/** Location update registrations with a provider. */
+	public static final Counter REGISTRATIONS = new Counter("provider_registrations");
+
+	private static final Counter[] COUNTERS = { HANDLER_POSTED, HANDLER_HANDLED, REGISTRATIONS };
+	private static final Histogram[] HISTOGRAMS = { FIX_AGE, FIX_HANDLING, REFRESH, CONVERT, HANDLER_DELAY };
+
+	private static volatile boolean enabled = true;
+
+	private Metrics()
+	{
+	}
+
+	/**
+	 * Switches recording on or off at run time. Recorded values are kept.
+	 *
+	 * @param on
+	 *            whether to record
+	 */
+	public static void setEnabled (boolean on)
+	{
+		enabled = on;
+	}
+
+	/**
+	 * @return true if values are recorded
+	 */
+	public static boolean isEnabled()
+	{
+		return ENABLED && enabled;
+	}
+
+	/**
+	 * @return the start of a timed section for Histogram.recordSince(), or 0
+	 *         if the metrics are off
+	 */
+	public static long start()
+	{
+		return ENABLED && enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Forgets all recorded values.
+	 */
+	public static void reset()
+	{
+		for (int i = 0; i < COUNTERS.length; i++)
+			COUNTERS[i].reset();
+		for (int i = 0; i < HISTOGRAMS.length; i++)
+			HISTOGRAMS[i].reset();
+	}
+
+	/**
+	 * Writes a snapshot of all metrics as text, one line per metric: the
+	 * counters with their value, the histograms with their count, sum and
+	 * percentiles, followed by the non-empty buckets as upper bound:count.
+	 *
+	 * @param out
+	 *            receives the text
+	 * @throws java.io.IOException
+	 *             if out fails
+	 */
+	public static void dump (Writer out) throws IOException
+	{
+		for (int i = 0; i < COUNTERS.length; i++)
+			out.write(COUNTERS[i].getName() + " " + COUNTERS[i].get() + "\n");
+		for (int i = 0; i < HISTOGRAMS.length; i++)
+		{
+			Histogram h = HISTOGRAMS[i];
+			long[] buckets = h.snapshot();
+			StringBuilder line = new StringBuilder(h.getName()).append('_').append(h.getUnit());
+			line.append(" count=").append(Histogram.getCount(buckets));
+			line.append(" sum=").append(h.getSum());
+			line.append(" p50<=").append(Histogram.percentile(buckets, 0.5));
+			line.append(" p90<=").append(Histogram.percentile(buckets, 0.9));
+			line.append(" p99<=").append(Histogram.percentile(buckets, 0.99));
+			for (int b = 0; b < BUCKETS; b++)
+			{
+				if (buckets[b] != 0)
+					line.append(' ').append(Histogram.upperBound(b)).append(':').append(buckets[b]);
+			}
+			out.write(line.append('\n').toString());
+		}
+	}
+
+	/**
+	 * Writes a snapshot of all metrics to a file, replacing its content.
+	 *
+	 * @param file
+	 *            receives the text
+	 * @throws java.io.IOException
+	 *             if the file cannot be written
+	 * @see #dump(Writer)
+	 */
+	public static void dump (File file) throws IOException
+	{
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try
+		{
+			dump(out);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * A number of events.
+	 */
+	public static final class Counter
+	{
+		private final String name;
+		private final AtomicLong value = new AtomicLong();
+
+		Counter (String name)
+		{
+			this.name = name;
+		}
+
+		/**
+		 * Counts one event, if the metrics are on.
+		 */
+		public void increment()
+		{
+			if (ENABLED && enabled)
+				value.incrementAndGet();
+		}
+
+		/**
+		 * @return the number of events counted
+		 */
+		public long get()
+		{
+			return value.get();
+		}
+
+		/**
+		 * @return the name used by dump()
+		 */
+		public String getName()
+		{
+			return name;
+		}
+
+		void reset()
+		{
+			value.set(0);
+		}
+	}
+
+	/**
+	 * A distribution of non-negative values in buckets of powers of two:
+	 * bucket 0 holds the values up to 0, bucket i the values from 2^(i-1) to
+	 * 2^i - 1. Percentiles are therefore accurate to a factor of two.
+	 */
+	public static final class Histogram
+	{
+		private final String name;
+		private final String unit;
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		private final AtomicLong sum = new AtomicLong();
+		private final int sampleMask;
+		// not atomic, a lost update only shifts the sampling
+		private int calls;
+
+		Histogram (String name, String unit)
+		{
+			this(name, unit, 1);
+		}
+
+		/**
+		 * @param sampling
+		 *            start() times every sampling-th call, a power of two
+		 */
+		Histogram (String name, String unit, int sampling)
+		{
+			this.name = name;
+			this.unit = unit;
+			sampleMask = sampling - 1;
+		}
+
+		/**
+		 * Starts a timed section that is sampled as given to the constructor.
+		 *
+		 * @return the start for recordSince(), or 0 if the metrics are off or
+		 *         this call is not sampled
+		 */
+		public long start()
+		{
+			if (!(ENABLED && enabled) || (++calls & sampleMask) != 0)
+				return 0;
+			return System.nanoTime();
+		}
+
+		/**
+		 * Records a value, if the metrics are on. Negative values count as 0.
+		 *
+		 * @param value
+		 *            the value in the unit of the histogram
+		 */
+		public void record (long value)
+		{
+			if (ENABLED && enabled)
+			{
+				if (value < 0)
+					value = 0;
+				buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+				sum.addAndGet(value);
+			}
+		}
+
+		/**
+		 * Records the nanoseconds since the start of a timed section.
+		 *
+		 * @param start
+		 *            the result of Metrics.start(); 0 records nothing
+		 */
+		public void recordSince (long start)
+		{
+			if (ENABLED && start != 0)
+				record(System.nanoTime() - start);
+		}
+
+		/**
+		 * @return a copy of the bucket counts; each bucket is read
+		 *         atomically, but not all of them at once
+		 */
+		public long[] snapshot()
+		{
+			long[] counts = new long[BUCKETS];
+			for (int i = 0; i < BUCKETS; i++)
+				counts[i] = buckets.get(i);
+			return counts;
+		}
+
+		/**
+		 * @return the sum of the recorded values
+		 */
+		public long getSum()
+		{
+			return sum.get();
+		}
+
+		/**
+		 * @return the name used by dump()
+		 */
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * @return the unit of the values, "ns" or "ms"
+		 */
+		public String getUnit()
+		{
+			return unit;
+		}
+
+		/**
+		 * @param snapshot
+		 *            bucket counts of snapshot()
+		 * @return the number of values in the snapshot
+		 */
+		public static long getCount (long[] snapshot)
+		{
+			long count = 0;
+			for (int i = 0; i < snapshot.length; i++)
+				count += snapshot[i];
+			return count;
+		}
+
+		/**
+		 * @param snapshot
+		 *            bucket counts of snapshot()
+		 * @param fraction
+		 *            the percentile as a fraction, such as 0.99
+		 * @return the upper bound of the bucket that holds the percentile,
+		 *         or 0 if the snapshot is empty
+		 */
+		public static long percentile (long[] snapshot, double fraction)
+		{
+			long count = getCount(snapshot);
+			long rank = (long) Math.ceil(fraction * count);
+			long seen = 0;
+			for (int i = 0; i < snapshot.length; i++)
+			{
+				seen += snapshot[i];
+				if (seen >= rank && seen > 0)
+					return upperBound(i);
+			}
+			return 0;
+		}
+
+		/**
+		 * @return the largest value that falls into a bucket
+		 */
+		public static long upperBound (int bucket)
+		{
+			return bucket == 0 ? 0 : bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+		}
+
+		void reset()
+		{
+			for (int i = 0; i < BUCKETS; i++)
+				buckets.set(i, 0);
+			sum.set(0);
+		}
+	}
+}
@@ -0,0 +1,623 @@
+package com.prach.mashup.gpstest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Replays a log of NMEA 0183 sentences as a LocationSource, in real time,
+ * faster, or as fast as it can be parsed.
+ *
+ * The log is memory-mapped and copied in windows of 64 kB into one reused
+ * array, which is parsed in place without creating strings; this is faster
+ * than reading the mapping byte by byte. GGA and RMC sentences from any
+ * talker ($GPGGA, $GNRMC and so on) are used, others are counted and
+ * skipped, and sentences with a wrong checksum are counted as errors. The
+ * sentences of one fix, those with the same time of day, are merged: RMC
+ * adds the date and the speed, GGA the altitude and an accuracy of 5 m times
+ * the horizontal dilution of precision. Sentences that report no valid
+ * position or have unreadable fields are ignored. Without any RMC the dates
+ * start at 1970-01-01 and advance at midnight.
+ *
+ * replay() runs a whole log on the calling thread, which is the way to feed
+ * millions of fixes through a pipeline on a JVM. As a LocationSource the
+ * replay runs on a thread of its own from requestUpdates() until the end of
+ * the log or removeUpdates(), and the fixes are delivered on that thread.
+ * The interval of requestUpdates() is honored, the distance is ignored.
+ * Logs are limited to Integer.MAX_VALUE bytes.
+ *
+ * The fixes keep the times of the log, which lie in the past. The clock of
+ * the source, currentTimeMillis(), therefore follows the log: it stands at
+ * the time of the fix being delivered, and goes back when a replay starts
+ * over.
+ */
+public final class NmeaReplaySource implements LocationSource
+{
+	/** Rate that replays as fast as possible. */
+	public static final double MAX_SPEED = 0;
+
+	// range error in meters that turns HDOP into an accuracy
+	private static final float UERE = 5;
+	private static final float METERS_PER_SECOND_PER_KNOT = 1852f / 3600;
+	private static final long MILLIS_PER_DAY = 86400000L;
+	// the mapping is copied into a window of this many bytes at a time
+	private static final int WINDOW_SIZE = 65536;
+	private static final double[] POWERS_OF_TEN = { 1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18 };
+
+	private final File file;
+	private final double rate;
+	private FixListener listener;
+	private volatile long minTime;
+	private volatile Thread thread;
+	private volatile IOException error;
+	// time of the last fix delivered, the clock of the source
+	private volatile long clock = Long.MIN_VALUE;
+
+	// statistics of the last replay that ended
+	private volatile long sentences;
+	private volatile long fixes;
+	private volatile long errors;
+	private volatile long nanos;
+
+	/**
+	 * @param file
+	 *            the NMEA log
+	 * @param rate
+	 *            1 for real time, larger values for faster replays, or
+	 *            MAX_SPEED
+	 * @throws java.lang.IllegalArgumentException
+	 *             if rate is negative
+	 */
+	public NmeaReplaySource (File file, double rate)
+	{
+		if (!(rate >= 0))
+			throw new IllegalArgumentException("rate: " + rate);
+		this.file = file;
+		this.rate = rate;
+	}
+
+	public void setListener (FixListener listener)
+	{
+		this.listener = listener;
+	}
+
+	/**
+	 * Starts the replay on a new thread, unless one is running. A running
+	 * replay takes the new interval.
+	 */
+	public synchronized void requestUpdates (long minTime, float minDistance)
+	{
+		this.minTime = minTime;
+		if (thread != null)
+			return;
+		final FixListener target = listener;
+		thread = new Thread("NmeaReplay")
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					replay(target);
+				}
+				catch (IOException e)
+				{
+					error = e;
+				}
+				finally
+				{
+					synchronized (NmeaReplaySource.this)
+					{
+						if (thread == this)
+							thread = null;
+					}
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the replay thread. The next requestUpdates() starts over at the
+	 * beginning of the log.
+	 */
+	public synchronized void removeUpdates()
+	{
+		if (thread != null)
+		{
+			thread.interrupt();
+			thread = null;
+		}
+	}
+
+	/**
+	 * Does nothing, there is no fix before the replay starts.
+	 */
+	public void deliverLastFix()
+	{
+	}
+
+	/**
+	 * @return the time of the fix being delivered or delivered last by the
+	 *         current or last replay, or Long.MIN_VALUE before its first fix
+	 */
+	public long currentTimeMillis()
+	{
+		return clock;
+	}
+
+	/**
+	 * Replays the whole log on the calling thread, at the rate of the source
+	 * and with the interval of the last requestUpdates(). Interrupting the
+	 * thread ends the replay early.
+	 *
+	 * @param listener
+	 *            receives the fixes
+	 * @return the number of fixes delivered
+	 * @throws java.io.IOException
+	 *             if the log cannot be read or is too large
+	 */
+	public long replay (FixListener listener) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException("NMEA log too large: " + size);
+			Parser parser = new Parser(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), listener);
+			clock = Long.MIN_VALUE;
+			long start = System.nanoTime();
+			parser.run();
+			nanos = System.nanoTime() - start;
+			sentences = parser.sentences;
+			fixes = parser.fixes;
+			errors = parser.errors;
+			return parser.fixes;
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	/**
+	 * @return the error that ended the last replay on the replay thread, or
+	 *         null
+	 */
+	public IOException getError()
+	{
+		return error;
+	}
+
+	/**
+	 * @return the number of sentences of the last replay, including the
+	 *         skipped ones and the errors
+	 */
+	public long getSentences()
+	{
+		return sentences;
+	}
+
+	/**
+	 * @return the number of fixes delivered by the last replay
+	 */
+	public long getFixes()
+	{
+		return fixes;
+	}
+
+	/**
+	 * @return the number of sentences of the last replay with a wrong
+	 *         checksum
+	 */
+	public long getErrors()
+	{
+		return errors;
+	}
+
+	/**
+	 * @return the throughput of the last replay, including the time spent in
+	 *         the listener
+	 */
+	public double getSentencesPerSecond()
+	{
+		return nanos > 0 ? sentences * 1e9 / nanos : 0;
+	}
+
+	/**
+	 * The state of one pass over the mapped log.
+	 */
+	private final class Parser
+	{
+		private final ByteBuffer buffer;
+		private final byte[] window = new byte[WINDOW_SIZE];
+		private final FixListener listener;
+		// number of bytes in the window and the position in it
+		private int limit;
+		private int p;
+		// checksum of the current sentence and the index of its '*', or -1
+		private int sum;
+		private int star;
+
+		long sentences;
+		long fixes;
+		long errors;
+
+		// the fix being merged from the sentences of one time of day
+		private boolean pending;
+		private int timeOfDay;
+		private double latitude;
+		private double longitude;
+		private double altitude;
+		private float accuracy;
+		private float speed;
+
+		// days since 1970 of the current fix and the time of the previous one
+		private long day;
+		private int lastTimeOfDay;
+		private long lastDelivered = Long.MIN_VALUE;
+
+		// pacing of replays that are not at MAX_SPEED
+		private long firstTime;
+		private long firstNanos;
+
+		Parser (ByteBuffer buffer, FixListener listener)
+		{
+			this.buffer = buffer;
+			this.listener = listener;
+		}
+
+		void run()
+		{
+			Thread current = Thread.currentThread();
+			int size = buffer.limit();
+			int offset = 0;
+			while (offset < size && !current.isInterrupted())
+			{
+				limit = Math.min(window.length, size - offset);
+				buffer.position(offset);
+				buffer.get(window, 0, limit);
+				offset += parseWindow(offset + limit == size, current);
+			}
+			if (!current.isInterrupted())
+				flush();
+		}
+
+		/**
+		 * Parses the complete sentences in the window.
+		 *
+		 * @return the number of bytes consumed; a sentence cut off by the
+		 *         end of the window is left for the next one
+		 */
+		private int parseWindow (boolean last, Thread current)
+		{
+			p = 0;
+			while (p < limit && !current.isInterrupted())
+			{
+				if (window[p] != '$')
+				{
+					p++;
+					continue;
+				}
+				int start = p;
+				int end = lineEnd(start);
+				if (end == limit && !last && start > 0)
+					return start;
+				sentences++;
+				if (checksumValid(end))
+					parseSentence(start, end);
+				else
+					errors++;
+				p = end;
+			}
+			return limit;
+		}
+
+		/**
+		 * Finds the end of the sentence at start and computes its checksum
+		 * on the way.
+		 *
+		 * @return the index of the line break after start, or the limit
+		 */
+		private int lineEnd (int start)
+		{
+			int x = 0;
+			int i = start + 1;
+			while (i < limit)
+			{
+				byte b = window[i];
+				if (b == '*' || b == '\n' || b == '\r' || b == '$')
+					break;
+				x ^= b;
+				i++;
+			}
+			sum = x;
+			star = i < limit && window[i] == '*' ? i : -1;
+			while (i < limit)
+			{
+				byte b = window[i];
+				if (b == '\n' || b == '\r' || b == '$')
+					return i;
+				i++;
+			}
+			return i;
+		}
+
+		/**
+		 * Checks the checksum of the sentence found by the last lineEnd().
+		 */
+		private boolean checksumValid (int end)
+		{
+			// the checksum is optional
+			if (star < 0)
+				return true;
+			return star + 2 < end && hex(star + 1) * 16 + hex(star + 2) == sum;
+		}
+
+		private int hex (int i)
+		{
+			if (i >= limit)
+				return -256;
+			int c = window[i];
+			if (c >= '0' && c <= '9')
+				return c - '0';
+			if (c >= 'A' && c <= 'F')
+				return c - 'A' + 10;
+			if (c >= 'a' && c <= 'f')
+				return c - 'a' + 10;
+			return -256;
+		}
+
+		private void parseSentence (int start, int end)
+		{
+			// "$ttGGA," with a talker of two letters
+			if (end - start < 7 || window[start + 6] != ',')
+				return;
+			byte a = window[start + 3], b = window[start + 4], c = window[start + 5];
+			p = start + 7;
+			if (a == 'G' && b == 'G' && c == 'A')
+				parseGga(end);
+			else if (a == 'R' && b == 'M' && c == 'C')
+				parseRmc(end);
+		}
+
+		private void parseGga (int end)
+		{
+			int time = timeField(end);
+			double lat = coordinateField(end);
+			int ns = charField(end);
+			double lon = coordinateField(end);
+			int ew = charField(end);
+			double quality = numberField(end);
+			skipField(end);
+			double hdop = numberField(end);
+			double alt = numberField(end);
+			if (time < 0 || !(quality > 0) || Double.isNaN(lat) || Double.isNaN(lon))
+				return;
+			merge(time, ns == 'S' ? -lat : lat, ew == 'W' ? -lon : lon);
+			altitude = alt;
+			accuracy = (float) hdop * UERE;
+		}
+
+		private void parseRmc (int end)
+		{
+			int time = timeField(end);
+			int status = charField(end);
+			double lat = coordinateField(end);
+			int ns = charField(end);
+			double lon = coordinateField(end);
+			int ew = charField(end);
+			double knots = numberField(end);
+			skipField(end);
+			long date = dateField(end);
+			if (time < 0 || status != 'A' || Double.isNaN(lat) || Double.isNaN(lon))
+				return;
+			merge(time, ns == 'S' ? -lat : lat, ew == 'W' ? -lon : lon);
+			speed = (float) knots * METERS_PER_SECOND_PER_KNOT;
+			if (date >= 0)
+			{
+				day = date;
+				lastTimeOfDay = time;
+			}
+		}
+
+		private void merge (int time, double lat, double lon)
+		{
+			if (pending && time != timeOfDay)
+				flush();
+			if (!pending)
+			{
+				pending = true;
+				timeOfDay = time;
+				altitude = Double.NaN;
+				accuracy = Float.NaN;
+				speed = Float.NaN;
+			}
+			latitude = lat;
+			longitude = lon;
+		}
+
+		private void flush()
+		{
+			if (!pending)
+				return;
+			pending = false;
+			// a time of day well before the previous one is on the next day
+			if (timeOfDay < lastTimeOfDay - MILLIS_PER_DAY / 2)
+				day++;
+			lastTimeOfDay = timeOfDay;
+			long time = day * MILLIS_PER_DAY + timeOfDay;
+			if (lastDelivered != Long.MIN_VALUE && time - lastDelivered < minTime)
+				return;
+			lastDelivered = time;
+			if (rate != MAX_SPEED && !pace(time))
+				return;
+			fixes++;
+			clock = time;
+			listener.onFix(time, latitude, longitude, altitude, accuracy, speed);
+		}
+
+		/**
+		 * Waits until the fix is due.
+		 *
+		 * @return false if the thread was interrupted
+		 */
+		private boolean pace (long time)
+		{
+			long now = System.nanoTime();
+			if (fixes == 0)
+			{
+				firstTime = time;
+				firstNanos = now;
+				return true;
+			}
+			long wait = firstNanos + (long) ((time - firstTime) * 1e6 / rate) - now;
+			if (wait <= 0)
+				return true;
+			try
+			{
+				Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+				return true;
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		private void skipField (int end)
+		{
+			while (p < end && window[p] != ',' && window[p] != '*')
+				p++;
+			if (p < end && window[p] == ',')
+				p++;
+		}
+
+		/**
+		 * @return the first char of the field, or 0 if it is empty
+		 */
+		private int charField (int end)
+		{
+			int c = p < end ? window[p] : 0;
+			if (c == ',' || c == '*')
+				c = 0;
+			skipField(end);
+			return c;
+		}
+
+		/**
+		 * @return the value of a decimal field, or Double.NaN if it is empty
+		 *         or unreadable
+		 */
+		private double numberField (int end)
+		{
+			boolean negative = false;
+			if (p < end && window[p] == '-')
+			{
+				negative = true;
+				p++;
+			}
+			long mantissa = 0;
+			int digits = 0;
+			int decimals = -1;
+			while (p < end)
+			{
+				byte b = window[p];
+				if (b >= '0' && b <= '9')
+				{
+					if (digits < 18)
+					{
+						mantissa = mantissa * 10 + (b - '0');
+						digits++;
+						if (decimals >= 0)
+							decimals++;
+					}
+				}
+				else if (b == '.' && decimals < 0)
+					decimals = 0;
+				else
+					break;
+				p++;
+			}
+			boolean valid = digits > 0 && (p == end || window[p] == ',' || window[p] == '*');
+			skipField(end);
+			if (!valid)
+				return Double.NaN;
+			double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+			return negative ? -value : value;
+		}
+
+		/**
+		 * @return a coordinate field of the form dddmm.mmmm in degrees, or
+		 *         Double.NaN
+		 */
+		private double coordinateField (int end)
+		{
+			double value = numberField(end);
+			double degrees = Math.floor(value / 100);
+			return degrees + (value - degrees * 100) / 60;
+		}
+
+		/**
+		 * @return a time field of the form hhmmss.sss in milliseconds of the
+		 *         day, or -1
+		 */
+		private int timeField (int end)
+		{
+			int h = digits(end, 2), m = digits(end, 2), s = digits(end, 2);
+			int millis = 0;
+			if (p < end && window[p] == '.')
+			{
+				p++;
+				int scale = 100;
+				while (p < end && window[p] >= '0' && window[p] <= '9')
+				{
+					millis += (window[p++] - '0') * scale;
+					scale /= 10;
+				}
+			}
+			boolean valid = h >= 0 && m >= 0 && s >= 0 && h < 24 && m < 60 && s < 61
+					&& (p == end || window[p] == ',' || window[p] == '*');
+			skipField(end);
+			return valid ? ((h * 60 + m) * 60 + s) * 1000 + millis : -1;
+		}
+
+		/**
+		 * @return a date field of the form ddmmyy in days since 1970, or -1
+		 */
+		private long dateField (int end)
+		{
+			int d = digits(end, 2), m = digits(end, 2), y = digits(end, 2);
+			skipField(end);
+			if (d < 1 || m < 1 || m > 12 || y < 0)
+				return -1;
+			return IsoTime.daysSinceEpoch(y < 80 ? 2000 + y : 1900 + y, m, d);
+		}
+
+		/**
+		 * @return the value of count digits, or -1 if there are not enough
+		 */
+		private int digits (int end, int count)
+		{
+			int value = 0;
+			for (int i = 0; i < count; i++)
+			{
+				if (p >= end)
+					return -1;
+				byte b = window[p];
+				if (b < '0' || b > '9')
+					return -1;
+				value = value * 10 + (b - '0');
+				p++;
+			}
+			return value;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * Decides when a consumer of location fixes, such as the screen, has to be
+ * woken up. A refresh is only requested when a fix really differs from the
+ * previous one, fixes that arrive while a refresh is pending are coalesced
+ * into it, and refreshes are spaced at least a minimum interval apart.
+ *
+ * The class only does the bookkeeping; the caller schedules the refresh, for
+ * example with Handler.sendEmptyMessageDelayed(), and reports back through
+ * refreshed(long) when it ran. Times are in milliseconds from any monotonic
+ * clock. Instances are not thread safe.
+ */
+public final class RefreshThrottle
+{
+	/** Returned by offer() when no refresh has to be scheduled. */
+	public static final long NONE = -1;
+
+	private final long minInterval;
+	private double latitude = Double.NaN;
+	private double longitude = Double.NaN;
+	private boolean pending;
+	private boolean refreshedOnce;
+	private long lastRefresh;
+
+	/**
+	 * @param minInterval
+	 *            the minimum time between two refreshes in milliseconds
+	 * @throws java.lang.IllegalArgumentException
+	 *             if minInterval is negative
+	 */
+	public RefreshThrottle (long minInterval)
+	{
+		if (minInterval < 0)
+			throw new IllegalArgumentException("minInterval: " + minInterval);
+		this.minInterval = minInterval;
+	}
+
+	/**
+	 * Reports a new fix.
+	 *
+	 * @param latitude
+	 *            the latitude of the fix in degrees
+	 * @param longitude
+	 *            the longitude of the fix in degrees
+	 * @param now
+	 *            the current time in milliseconds
+	 * @return the delay in milliseconds after which the caller should run a
+	 *         refresh, or NONE if the fix did not change or a refresh is
+	 *         already pending
+	 */
+	public long offer (double latitude, double longitude, long now)
+	{
+		if (latitude == this.latitude && longitude == this.longitude)
+			return NONE;
+		this.latitude = latitude;
+		this.longitude = longitude;
+		if (pending)
+			return NONE;
+
+		pending = true;
+		if (!refreshedOnce)
+			return 0;
+		long due = lastRefresh + minInterval - now;
+		return due > 0 ? due : 0;
+	}
+
+	/**
+	 * Reports that the scheduled refresh ran.
+	 *
+	 * @param now
+	 *            the current time in milliseconds
+	 */
+	public void refreshed (long now)
+	{
+		pending = false;
+		refreshedOnce = true;
+		lastRefresh = now;
+	}
+
+	/**
+	 * Forgets the pending refresh and the last fix, for example when the
+	 * scheduled refresh was cancelled.
+	 */
+	public void reset()
+	{
+		pending = false;
+		latitude = Double.NaN;
+		longitude = Double.NaN;
+	}
+}
@@ -0,0 +1,320 @@
+package com.prach.mashup.gpstest;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Encodes fixes for the result of a request, as JSON or as compact binary
+ * payloads for Intent extras.
+ *
+ * JSON is written straight to a Writer; the numbers are formatted with
+ * CoordinateFormat.formatDecimal(), so the output does not depend on the
+ * locale and all methods can be called from any thread.
+ *
+ * There are two binary forms. pack() returns a double[] with the time,
+ * latitude and longitude of every fix, 24 bytes per fix and exact.
+ * encodeDeltas() rounds the coordinates to 1e-7 degrees (about 1 cm) and
+ * stores the differences between consecutive fixes as variable length
+ * integers; a fix per second of a walk takes about 6 bytes.
+ */
+public final class ResultEncoder
+{
+	/** Number of doubles per fix in the result of pack(). */
+	public static final int DOUBLES_PER_FIX = 3;
+
+	private static final double E7 = 1e7;
+	private static final long E7_TURN = 3600000000L;
+	private static final long BILLION = 1000000000L;
+	// a count, then per fix a time of up to 10 bytes and two coordinate
+	// differences of up to 5 bytes each
+	private static final int MAX_HEADER_SIZE = 5;
+	private static final int MAX_FIX_SIZE = 20;
+	private static final int CHUNK_SIZE = 4096;
+	// a fix in the JSON array, with a long of up to 20 chars
+	private static final int MAX_FIX_CHARS = 40 + 20 + 2 * CoordinateFormat.MAX_LENGTH;
+
+	private ResultEncoder()
+	{
+	}
+
+	/**
+	 * Writes one position as {"latitude":"48.1371","longitude":"11.5754"}.
+	 * The numbers are quoted like the JSON_RESULT of earlier versions.
+	 *
+	 * @param out
+	 *            receives the JSON
+	 * @param latitude
+	 *            the latitude in degrees
+	 * @param longitude
+	 *            the longitude in degrees
+	 * @throws java.io.IOException
+	 *             if out fails
+	 */
+	public static void writeJson (Writer out, double latitude, double longitude) throws IOException
+	{
+		char[] buf = new char[CoordinateFormat.MAX_LENGTH];
+		out.write("{\"latitude\":\"");
+		out.write(buf, 0, CoordinateFormat.formatDecimal(latitude, buf, 0));
+		out.write("\",\"longitude\":\"");
+		out.write(buf, 0, CoordinateFormat.formatDecimal(longitude, buf, 0));
+		out.write("\"}");
+	}
+
+	/**
+	 * Writes fixes as an array of objects of the form
+	 * {"time":1300000000000,"latitude":48.1371,"longitude":11.5754}.
+	 *
+	 * @param out
+	 *            receives the JSON
+	 * @param times
+	 *            the times of the fixes in milliseconds
+	 * @param lats
+	 *            the latitudes in degrees
+	 * @param lons
+	 *            the longitudes in degrees
+	 * @param offset
+	 *            the index of the first fix in the arrays
+	 * @param count
+	 *            the number of fixes
+	 * @throws java.io.IOException
+	 *             if out fails
+	 */
+	public static void writeJson (Writer out, long[] times, double[] lats, double[] lons, int offset,
+			int count) throws IOException
+	{
+		// the fixes are formatted into a chunk that is written to out as a
+		// whole, since every Writer call has its overhead
+		char[] chunk = new char[CHUNK_SIZE];
+		int pos = 0;
+		chunk[pos++] = '[';
+		for (int i = offset; i < offset + count; i++)
+		{
+			if (pos > CHUNK_SIZE - MAX_FIX_CHARS)
+			{
+				out.write(chunk, 0, pos);
+				pos = 0;
+			}
+			if (i != offset)
+				chunk[pos++] = ',';
+			pos = append(chunk, pos, "{\"time\":");
+			pos += writeLong(chunk, pos, times[i]);
+			pos = append(chunk, pos, ",\"latitude\":");
+			pos += CoordinateFormat.formatDecimal(lats[i], chunk, pos);
+			pos = append(chunk, pos, ",\"longitude\":");
+			pos += CoordinateFormat.formatDecimal(lons[i], chunk, pos);
+			chunk[pos++] = '}';
+		}
+		chunk[pos++] = ']';
+		out.write(chunk, 0, pos);
+	}
+
+	/**
+	 * Packs fixes into one array: time, latitude and longitude of the first
+	 * fix, then of the second, and so on. Times are exact up to 2^53 ms.
+	 *
+	 * @param times
+	 *            the times of the fixes in milliseconds
+	 * @param lats
+	 *            the latitudes in degrees
+	 * @param lons
+	 *            the longitudes in degrees
+	 * @param offset
+	 *            the index of the first fix in the arrays
+	 * @param count
+	 *            the number of fixes
+	 * @return DOUBLES_PER_FIX * count values
+	 */
+	public static double[] pack (long[] times, double[] lats, double[] lons, int offset, int count)
+	{
+		double[] packed = new double[DOUBLES_PER_FIX * count];
+		for (int i = 0; i < count; i++)
+		{
+			packed[DOUBLES_PER_FIX * i] = times[offset + i];
+			packed[DOUBLES_PER_FIX * i + 1] = lats[offset + i];
+			packed[DOUBLES_PER_FIX * i + 2] = lons[offset + i];
+		}
+		return packed;
+	}
+
+	/**
+	 * Encodes fixes as differences to their predecessors. The first fix is
+	 * stored as its difference to time 0 at latitude and longitude 0.
+	 * Longitude differences take the short way across the antimeridian.
+	 *
+	 * @param times
+	 *            the times of the fixes in milliseconds
+	 * @param lats
+	 *            the latitudes in degrees
+	 * @param lons
+	 *            the longitudes in degrees, within [-180, 180]
+	 * @param offset
+	 *            the index of the first fix in the arrays
+	 * @param count
+	 *            the number of fixes
+	 * @return the encoded fixes
+	 * @see #decodeDeltas(byte[], long[], double[], double[], int)
+	 */
+	public static byte[] encodeDeltas (long[] times, double[] lats, double[] lons, int offset, int count)
+	{
+		byte[] buf = new byte[MAX_HEADER_SIZE + MAX_FIX_SIZE * count];
+		int pos = writeVarint(buf, 0, count);
+		long time = 0, lat = 0, lon = 0;
+		for (int i = offset; i < offset + count; i++)
+		{
+			long t = times[i];
+			long y = Math.round(lats[i] * E7);
+			long x = Math.round(lons[i] * E7);
+			long dx = (x - lon) % E7_TURN;
+			if (dx >= E7_TURN / 2)
+				dx -= E7_TURN;
+			else if (dx < -E7_TURN / 2)
+				dx += E7_TURN;
+			pos = writeVarint(buf, pos, zigzag(t - time));
+			pos = writeVarint(buf, pos, zigzag(y - lat));
+			pos = writeVarint(buf, pos, zigzag(dx));
+			time = t;
+			lat = y;
+			lon = x;
+		}
+		byte[] encoded = new byte[pos];
+		System.arraycopy(buf, 0, encoded, 0, pos);
+		return encoded;
+	}
+
+	/**
+	 * @param data
+	 *            fixes encoded by encodeDeltas()
+	 * @return the number of fixes in data
+	 */
+	public static int deltaCount (byte[] data)
+	{
+		return (int) readVarint(data, new int[1]);
+	}
+
+	/**
+	 * Decodes fixes encoded by encodeDeltas().
+	 *
+	 * @param data
+	 *            the encoded fixes
+	 * @param times
+	 *            receives the times in milliseconds
+	 * @param lats
+	 *            receives the latitudes in degrees
+	 * @param lons
+	 *            receives the longitudes in degrees, within [-180, 180)
+	 * @param offset
+	 *            the index in the arrays for the first fix
+	 * @return the number of fixes
+	 * @throws java.lang.IllegalArgumentException
+	 *             if data is truncated
+	 */
+	public static int decodeDeltas (byte[] data, long[] times, double[] lats, double[] lons, int offset)
+	{
+		int[] pos = new int[1];
+		int count = (int) readVarint(data, pos);
+		long time = 0, lat = 0, lon = 0;
+		for (int i = offset; i < offset + count; i++)
+		{
+			time += unzigzag(readVarint(data, pos));
+			lat += unzigzag(readVarint(data, pos));
+			lon += unzigzag(readVarint(data, pos));
+			if (lon >= E7_TURN / 2)
+				lon -= E7_TURN;
+			else if (lon < -E7_TURN / 2)
+				lon += E7_TURN;
+			times[i] = time;
+			lats[i] = lat / E7;
+			lons[i] = lon / E7;
+		}
+		return count;
+	}
+
+	private static long zigzag (long value)
+	{
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag (long value)
+	{
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static int writeVarint (byte[] buf, int pos, long value)
+	{
+		while ((value & ~0x7fL) != 0)
+		{
+			buf[pos++] = (byte) (value | 0x80);
+			value >>>= 7;
+		}
+		buf[pos++] = (byte) value;
+		return pos;
+	}
+
+	/**
+	 * Reads a variable length integer at pos[0] and advances pos[0].
+	 */
+	private static long readVarint (byte[] data, int[] pos)
+	{
+		long value = 0;
+		int p = pos[0];
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			if (p >= data.length)
+				throw new IllegalArgumentException("Truncated data");
+			byte b = data[p++];
+			value |= (long) (b & 0x7f) << shift;
+			if (b >= 0)
+			{
+				pos[0] = p;
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Malformed data");
+	}
+
+	private static int append (char[] buf, int pos, String s)
+	{
+		s.getChars(0, s.length(), buf, pos);
+		return pos + s.length();
+	}
+
+	/**
+	 * Writes a long in decimal.
+	 *
+	 * @return the number of chars written
+	 */
+	private static int writeLong (char[] buf, int offset, long value)
+	{
+		if (value == Long.MIN_VALUE)
+			return append(buf, offset, Long.toString(value)) - offset;
+		int pos = offset;
+		if (value < 0)
+		{
+			buf[pos++] = '-';
+			value = -value;
+		}
+		// the digits come from ints of nine digits, int division is cheaper
+		if (value >= BILLION)
+		{
+			pos += writeLong(buf, pos, value / BILLION);
+			return writeDigits(buf, pos, (int) (value % BILLION), 9) - offset;
+		}
+		int digits = 1;
+		for (int v = (int) value; v >= 10; v /= 10)
+			digits++;
+		return writeDigits(buf, pos, (int) value, digits) - offset;
+	}
+
+	/**
+	 * Writes the lowest digits of a non-negative int, padded with zeros.
+	 */
+	private static int writeDigits (char[] buf, int pos, int value, int digits)
+	{
+		for (int i = pos + digits - 1; i >= pos; i--)
+		{
+			buf[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		return pos + digits;
+	}
+}
@@ -0,0 +1,420 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * Static k-d tree over points on the earth for k-nearest and radius
+ * queries.
+ *
+ * The points are stored as unit vectors in primitive arrays, ordered as an
+ * implicit balanced tree: the node of a range is its middle element, and the
+ * two halves are its subtrees. Straight-line (chord) distance between unit
+ * vectors grows monotonically with the great circle distance, so the tree is
+ * searched in three dimensions and needs no special handling for the
+ * antimeridian or the poles. Only the final candidates are measured with the
+ * haversine formula of Coordinates.distances().
+ *
+ * An index is immutable after construction and can be queried from several
+ * threads at once.
+ */
+public final class SpatialIndex
+{
+	private final int size;
+	// x, y, z of each point in tree order
+	private final double[] xyz;
+	// split axis of each node
+	private final byte[] axis;
+	// original index of each point in tree order
+	private final int[] ids;
+	private final double[] lats;
+	private final double[] lons;
+
+	/**
+	 * Builds an index over points given as parallel arrays of latitudes and
+	 * longitudes in degrees. The arrays are copied.
+	 *
+	 * @param lats
+	 *            the latitudes in degrees
+	 * @param lons
+	 *            the longitudes in degrees
+	 * @param offset
+	 *            the index of the first point in lats and lons
+	 * @param count
+	 *            the number of points
+	 */
+	public SpatialIndex (double[] lats, double[] lons, int offset, int count)
+	{
+		size = count;
+		xyz = new double[3 * count];
+		axis = new byte[count];
+		ids = new int[count];
+		Coordinates.unitVectors(lats, lons, offset, 0, count, xyz);
+		for (int i = 0; i < count; i++)
+			ids[i] = offset + i;
+		build(0, count);
+
+		this.lats = new double[count];
+		this.lons = new double[count];
+		for (int i = 0; i < count; i++)
+		{
+			this.lats[i] = lats[ids[i]];
+			this.lons[i] = lons[ids[i]];
+		}
+	}
+
+	/**
+	 * @return the number of points in the index
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Finds the k points nearest to a location.
+	 *
+	 * @param latitude
+	 *            the latitude of the location in degrees
+	 * @param longitude
+	 *            the longitude of the location in degrees
+	 * @param k
+	 *            the number of points wanted
+	 * @param ids
+	 *            receives the indices of the points in the arrays passed to
+	 *            the constructor, nearest first; needs room for k entries
+	 * @param distances
+	 *            receives the distances in meters, or null if not needed
+	 * @return the number of points found, min(k, size())
+	 */
+	public int nearest (double latitude, double longitude, int k, int[] ids, float[] distances)
+	{
+		if (k <= 0 || size == 0)
+			return 0;
+		Nearest search = new Nearest(latitude, longitude, Math.min(k, size), ids);
+		search.search(0, size);
+
+		// the heap holds tree positions, turn it into ids sorted by distance
+		int n = search.count;
+		for (int end = n - 1; end > 0; end--)
+		{
+			search.swap(0, end);
+			search.siftDown(0, end);
+		}
+		for (int i = 0; i < n; i++)
+		{
+			int pos = ids[i];
+			if (distances != null)
+				distances[i] = (float) haversine(latitude, longitude, pos);
+			ids[i] = this.ids[pos];
+		}
+		return n;
+	}
+
+	/**
+	 * Finds all points within a radius of a location, in no particular
+	 * order.
+	 *
+	 * @param latitude
+	 *            the latitude of the location in degrees
+	 * @param longitude
+	 *            the longitude of the location in degrees
+	 * @param radius
+	 *            the radius in meters
+	 * @param ids
+	 *            receives the indices of the points in the arrays passed to
+	 *            the constructor, as many as fit
+	 * @param distances
+	 *            receives the distances in meters, or null if not needed
+	 * @return the number of points within the radius; if this is larger than
+	 *         ids.length, only the first ids.length points were stored
+	 */
+	public int withinRadius (double latitude, double longitude, double radius, int[] ids, float[] distances)
+	{
+		if (size == 0)
+			return 0;
+		double angle = Math.min(radius / Coordinates.EARTH_RADIUS, Math.PI);
+		double chord = 2 * Math.sin(angle / 2);
+		Radius search = new Radius(latitude, longitude, chord * chord, ids);
+		search.search(0, size);
+
+		int n = Math.min(search.count, ids.length);
+		for (int i = 0; i < n; i++)
+		{
+			int pos = ids[i];
+			if (distances != null)
+				distances[i] = (float) haversine(latitude, longitude, pos);
+			ids[i] = this.ids[pos];
+		}
+		return search.count;
+	}
+
+	private double haversine (double latitude, double longitude, int pos)
+	{
+		double lat1 = Math.toRadians(latitude);
+		double lat2 = Math.toRadians(lats[pos]);
+		return Coordinates.haversine(lat1, Math.cos(lat1), lat2, Math.cos(lat2),
+				Math.toRadians(longitude - lons[pos]), Float11.TIER_PRECISE);
+	}
+
+	/**
+	 * Arranges [lo, hi) as a subtree: the middle element splits the points
+	 * along the axis with the largest extent.
+	 */
+	private void build (int lo, int hi)
+	{
+		while (hi - lo > 1)
+		{
+			int a = widestAxis(lo, hi);
+			int mid = (lo + hi) >>> 1;
+			select(lo, hi - 1, mid, a);
+			axis[mid] = (byte) a;
+			build(lo, mid);
+			lo = mid + 1;
+		}
+	}
+
+	private int widestAxis (int lo, int hi)
+	{
+		double minX = 2, minY = 2, minZ = 2, maxX = -2, maxY = -2, maxZ = -2;
+		for (int i = lo; i < hi; i++)
+		{
+			double x = xyz[3 * i], y = xyz[3 * i + 1], z = xyz[3 * i + 2];
+			if (x < minX) minX = x;
+			if (x > maxX) maxX = x;
+			if (y < minY) minY = y;
+			if (y > maxY) maxY = y;
+			if (z < minZ) minZ = z;
+			if (z > maxZ) maxZ = z;
+		}
+		double dx = maxX - minX, dy = maxY - minY, dz = maxZ - minZ;
+		if (dx >= dy && dx >= dz)
+			return 0;
+		return dy >= dz ? 1 : 2;
+	}
+
+	/**
+	 * Quickselect: moves the element of rank k within [left, right] along axis
+	 * a to position k, smaller ones before it and larger ones after it.
+	 */
+	private void select (int left, int right, int k, int a)
+	{
+		while (right > left)
+		{
+			// median of three as pivot
+			int mid = (left + right) >>> 1;
+			if (coord(mid, a) < coord(left, a))
+				swap(mid, left);
+			if (coord(right, a) < coord(left, a))
+				swap(right, left);
+			if (coord(right, a) < coord(mid, a))
+				swap(right, mid);
+			double pivot = coord(mid, a);
+
+			int i = left;
+			int j = right;
+			while (i <= j)
+			{
+				while (coord(i, a) < pivot)
+					i++;
+				while (coord(j, a) > pivot)
+					j--;
+				if (i <= j)
+					swap(i++, j--);
+			}
+			if (k <= j)
+				right = j;
+			else if (k >= i)
+				left = i;
+			else
+				return;
+		}
+	}
+
+	private double coord (int i, int a)
+	{
+		return xyz[3 * i + a];
+	}
+
+	private void swap (int i, int j)
+	{
+		for (int a = 0; a < 3; a++)
+		{
+			double t = xyz[3 * i + a];
+			xyz[3 * i + a] = xyz[3 * j + a];
+			xyz[3 * j + a] = t;
+		}
+		int t = ids[i];
+		ids[i] = ids[j];
+		ids[j] = t;
+	}
+
+	/**
+	 * State of one query: the query point as a unit vector.
+	 */
+	private abstract class Search
+	{
+		final double qx, qy, qz;
+
+		Search (double latitude, double longitude)
+		{
+			double lat = Math.toRadians(latitude);
+			double lon = Math.toRadians(longitude);
+			double cosLat = Math.cos(lat);
+			qx = cosLat * Math.cos(lon);
+			qy = cosLat * Math.sin(lon);
+			qz = Math.sin(lat);
+		}
+
+		final double distance2 (int i)
+		{
+			double dx = xyz[3 * i] - qx;
+			double dy = xyz[3 * i + 1] - qy;
+			double dz = xyz[3 * i + 2] - qz;
+			return dx * dx + dy * dy + dz * dz;
+		}
+
+		final double q (int a)
+		{
+			return a == 0 ? qx : a == 1 ? qy : qz;
+		}
+
+		/** Squared chord beyond which a subtree can be skipped. */
+		abstract double bound();
+
+		abstract void visit (int i, double d2);
+
+		final void search (int lo, int hi)
+		{
+			while (lo < hi)
+			{
+				int mid = (lo + hi) >>> 1;
+				visit(mid, distance2(mid));
+				if (hi - lo == 1)
+					return;
+				double diff = q(axis[mid]) - coord(mid, axis[mid]);
+				// descend into the near side first, then the far side if the
+				// splitting plane is close enough
+				if (diff < 0)
+				{
+					search(lo, mid);
+					if (diff * diff > bound())
+						return;
+					lo = mid + 1;
+				}
+				else
+				{
+					search(mid + 1, hi);
+					if (diff * diff > bound())
+						return;
+					hi = mid;
+				}
+			}
+		}
+	}
+
+	/**
+	 * k-nearest search with a max-heap of tree positions in the caller's ids
+	 * array, keyed by squared chord.
+	 */
+	private final class Nearest extends Search
+	{
+		final int k;
+		final int[] heap;
+		final double[] keys;
+		int count;
+
+		Nearest (double latitude, double longitude, int k, int[] heap)
+		{
+			super(latitude, longitude);
+			this.k = k;
+			this.heap = heap;
+			this.keys = new double[k];
+		}
+
+		double bound()
+		{
+			return count < k ? Double.POSITIVE_INFINITY : keys[0];
+		}
+
+		void visit (int i, double d2)
+		{
+			if (count < k)
+			{
+				int c = count++;
+				heap[c] = i;
+				keys[c] = d2;
+				// sift up
+				while (c > 0)
+				{
+					int parent = (c - 1) >> 1;
+					if (keys[parent] >= keys[c])
+						break;
+					swap(parent, c);
+					c = parent;
+				}
+			}
+			else if (d2 < keys[0])
+			{
+				heap[0] = i;
+				keys[0] = d2;
+				siftDown(0, count);
+			}
+		}
+
+		void siftDown (int c, int n)
+		{
+			while (true)
+			{
+				int child = 2 * c + 1;
+				if (child >= n)
+					return;
+				if (child + 1 < n && keys[child + 1] > keys[child])
+					child++;
+				if (keys[c] >= keys[child])
+					return;
+				swap(c, child);
+				c = child;
+			}
+		}
+
+		void swap (int i, int j)
+		{
+			int t = heap[i];
+			heap[i] = heap[j];
+			heap[j] = t;
+			double d = keys[i];
+			keys[i] = keys[j];
+			keys[j] = d;
+		}
+	}
+
+	/**
+	 * Radius search that stores tree positions in the caller's ids array.
+	 */
+	private final class Radius extends Search
+	{
+		final double limit;
+		final int[] out;
+		int count;
+
+		Radius (double latitude, double longitude, double limit, int[] out)
+		{
+			super(latitude, longitude);
+			this.limit = limit;
+			this.out = out;
+		}
+
+		double bound()
+		{
+			return limit;
+		}
+
+		void visit (int i, double d2)
+		{
+			if (d2 <= limit)
+			{
+				if (count < out.length)
+					out[count] = i;
+				count++;
+			}
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * Simplifies a track while it is being recorded, in bounded memory.
+ *
+ * Points are numbered in the order they are added, starting at 0. The
+ * simplifier holds the last kept point (the anchor) and the points added
+ * since. As long as all of them are within the tolerance of the segment from
+ * the anchor to the newest point, they are dropped; when one is not, or the
+ * window is full, the point before the newest one is kept and becomes the
+ * new anchor. Every add() costs at most one distance per point in the window.
+ *
+ * The kept points differ from the ones of TrackSimplifier, but here too no
+ * dropped point is farther than the tolerance from the simplified track.
+ *
+ * Instances are not thread safe.
+ *
+ * @see TrackSimplifier
+ */
+public final class StreamingSimplifier
+{
+	/** Returned by add() when no point became final. */
+	public static final int NONE = -1;
+
+	private final double threshold;
+	private final int window;
+	private final TrackSimplifier.Segment segment = new TrackSimplifier.Segment();
+
+	// unit vectors of the points after the anchor, oldest first
+	private final double[] xyz;
+	private int size;
+	private double ax, ay, az;
+	private int anchor = NONE;
+	private int count;
+
+	/**
+	 * @param tolerance
+	 *            the largest distance in meters that a dropped point may have
+	 *            from the simplified track
+	 * @param window
+	 *            the largest number of points held, at least 2; bounds the
+	 *            memory and the cost of add()
+	 * @throws java.lang.IllegalArgumentException
+	 *             if window is less than 2
+	 */
+	public StreamingSimplifier (double tolerance, int window)
+	{
+		if (window < 2)
+			throw new IllegalArgumentException("window: " + window);
+		this.threshold = TrackSimplifier.threshold(tolerance);
+		this.window = window;
+		this.xyz = new double[3 * window];
+	}
+
+	/**
+	 * Adds the next point of the track.
+	 *
+	 * @param latitude
+	 *            the latitude in degrees
+	 * @param longitude
+	 *            the longitude in degrees
+	 * @return the number of a point that is now known to be kept, or NONE;
+	 *         the numbers are returned in increasing order
+	 */
+	public int add (double latitude, double longitude)
+	{
+		double lat = Math.toRadians(latitude);
+		double lon = Math.toRadians(longitude);
+		double cosLat = Math.cos(lat);
+		double px = cosLat * Math.cos(lon);
+		double py = cosLat * Math.sin(lon);
+		double pz = Math.sin(lat);
+		int number = count++;
+
+		if (anchor == NONE)
+		{
+			setAnchor(number, px, py, pz);
+			return number;
+		}
+
+		boolean keepPrevious = size == window;
+		if (!keepPrevious)
+		{
+			segment.set(ax, ay, az, px, py, pz);
+			for (int i = 0; i < size; i++)
+			{
+				if (segment.distance(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2]) > threshold)
+				{
+					keepPrevious = true;
+					break;
+				}
+			}
+		}
+
+		int kept = NONE;
+		if (keepPrevious)
+		{
+			kept = number - 1;
+			int last = 3 * (size - 1);
+			setAnchor(kept, xyz[last], xyz[last + 1], xyz[last + 2]);
+		}
+		xyz[3 * size] = px;
+		xyz[3 * size + 1] = py;
+		xyz[3 * size + 2] = pz;
+		size++;
+		return kept;
+	}
+
+	/**
+	 * Ends the track.
+	 *
+	 * @return the number of the last point if it was not returned by add()
+	 *         yet, otherwise NONE
+	 */
+	public int finish()
+	{
+		int last = size > 0 ? count - 1 : NONE;
+		reset();
+		return last;
+	}
+
+	/**
+	 * Forgets the track without reporting its last point. The next point
+	 * added is number 0.
+	 */
+	public void reset()
+	{
+		anchor = NONE;
+		size = 0;
+		count = 0;
+	}
+
+	private void setAnchor (int number, double x, double y, double z)
+	{
+		anchor = number;
+		ax = x;
+		ay = y;
+		az = z;
+		size = 0;
+	}
+}
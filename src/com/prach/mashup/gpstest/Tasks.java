@@ -0,0 +1,46 @@
+package com.prach.mashup.gpstest;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Helpers for the classes that split their work across an ExecutorService.
+ */
+final class Tasks
+{
+	private Tasks()
+	{
+	}
+
+	/**
+	 * Waits for all futures and clears the list. If a task failed, its
+	 * exception is rethrown unwrapped and the remaining tasks are cancelled.
+	 *
+	 * @throws java.lang.InterruptedException
+	 *             if the thread is interrupted while waiting
+	 */
+	static void await (List<Future<?>> futures) throws InterruptedException
+	{
+		try
+		{
+			for (int i = 0; i < futures.size(); i++)
+				futures.get(i).get();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}
+		finally
+		{
+			for (int i = 0; i < futures.size(); i++)
+				futures.get(i).cancel(true);
+			futures.clear();
+		}
+	}
+}
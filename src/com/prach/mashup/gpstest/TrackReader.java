@@ -0,0 +1,329 @@
+package com.prach.mashup.gpstest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Streams the fixes of a track file written by TrackRecorder.
+ *
+ * The file is memory-mapped, so only the pages that are read are brought in
+ * and nothing is copied to the heap. The reader works like a cursor: next()
+ * decodes the following fix, and the getters return its values.
+ *
+ * A damaged region is skipped up to the next checkpoint, and a record that
+ * was cut short at the end of the file ends the track. Files are limited to
+ * Integer.MAX_VALUE bytes, which is about 200 million fixes.
+ *
+ * Instances are not thread safe.
+ *
+ * @see TrackRecorder
+ */
+public final class TrackReader
+{
+	private final RandomAccessFile file;
+	private final ByteBuffer buffer;
+	private final int limit;
+
+	private int position = TrackRecorder.HEADER_SIZE;
+	// false until a checkpoint has been read, deltas cannot be decoded before
+	private boolean synced;
+	private long skipped;
+	// bounds of the delta record being decoded
+	private int cursor;
+	private int recordEnd;
+
+	private long time;
+	private int latitude;
+	private int longitude;
+	private int altitude;
+	private int accuracy;
+	private int speed;
+
+	private TrackReader (RandomAccessFile file, ByteBuffer buffer)
+	{
+		this.file = file;
+		this.buffer = buffer;
+		this.limit = buffer.limit();
+	}
+
+	/**
+	 * Opens a track file for reading.
+	 *
+	 * @param path
+	 *            the track file
+	 * @return the reader, positioned before the first fix
+	 * @throws java.io.IOException
+	 *             if the file cannot be opened or mapped, or it is not a
+	 *             track file
+	 */
+	public static TrackReader open (File path) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try
+		{
+			return new TrackReader(file, map(file.getChannel()));
+		}
+		catch (IOException e)
+		{
+			file.close();
+			throw e;
+		}
+	}
+
+	private static ByteBuffer map (FileChannel channel) throws IOException
+	{
+		long size = channel.size();
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("Track file too large: " + size);
+		ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (size < TrackRecorder.HEADER_SIZE || buffer.getInt(0) != TrackRecorder.MAGIC)
+			throw new IOException("Not a track file");
+		if (buffer.getInt(4) != TrackRecorder.VERSION)
+			throw new IOException("Unsupported track version: " + buffer.getInt(4));
+		return buffer;
+	}
+
+	/**
+	 * Finds the end of the last complete record in a track file.
+	 */
+	static long validLength (FileChannel channel) throws IOException
+	{
+		TrackReader reader = new TrackReader(null, map(channel));
+		int last = reader.limit - TrackRecorder.CHECKPOINT_SIZE;
+		while (last >= TrackRecorder.HEADER_SIZE && !reader.isCheckpoint(last))
+			last--;
+		if (last < TrackRecorder.HEADER_SIZE)
+			return TrackRecorder.HEADER_SIZE;
+		reader.position = last;
+		int end = last;
+		while (reader.next())
+			end = reader.position;
+		return end;
+	}
+
+	/**
+	 * Moves to the next fix.
+	 *
+	 * @return true if there is a next fix, false at the end of the track
+	 */
+	public boolean next()
+	{
+		while (position < limit)
+		{
+			int length = buffer.get(position) & 0xff;
+			if (length == 0xff)
+			{
+				if (isCheckpoint(position))
+				{
+					readCheckpoint(position);
+					return true;
+				}
+				if (limit - position < TrackRecorder.CHECKPOINT_SIZE)
+					break;
+			}
+			else if (length > 0 && length < TrackRecorder.MAX_DELTA_SIZE && synced)
+			{
+				if (limit - position <= length)
+					break;
+				if (readDelta(position + 1, position + 1 + length))
+					return true;
+			}
+
+			// damaged region, look for the next checkpoint
+			synced = false;
+			int from = position;
+			position = nextCheckpoint(position + 1);
+			skipped += position - from;
+		}
+		position = limit;
+		return false;
+	}
+
+	/**
+	 * Moves to the first fix at or after a time. The track has to be ordered
+	 * by time. Only a few checkpoints and at most CHECKPOINT_INTERVAL records
+	 * are decoded.
+	 *
+	 * @param time
+	 *            the UTC time in milliseconds since the epoch
+	 * @return true if there is such a fix and it is now the current one,
+	 *         false if all fixes are older
+	 */
+	public boolean seek (long time)
+	{
+		// binary search for the last checkpoint before the time
+		int lo = nextCheckpoint(TrackRecorder.HEADER_SIZE);
+		int hi = limit;
+		if (lo < limit && buffer.getLong(lo + 8) < time)
+		{
+			while (hi - lo > 1)
+			{
+				int mid = (lo + hi) >>> 1;
+				int c = nextCheckpoint(mid);
+				if (c < hi && buffer.getLong(c + 8) < time)
+					lo = c;
+				else
+					hi = mid;
+			}
+		}
+		position = lo;
+		synced = false;
+		while (next())
+		{
+			if (this.time >= time)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the number of bytes skipped because they could not be decoded
+	 */
+	public long getSkippedBytes()
+	{
+		return skipped;
+	}
+
+	/**
+	 * @return the UTC time of the current fix in milliseconds since the epoch
+	 */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * @return the latitude of the current fix in degrees
+	 */
+	public double getLatitude()
+	{
+		return latitude / 1e7;
+	}
+
+	/**
+	 * @return the longitude of the current fix in degrees
+	 */
+	public double getLongitude()
+	{
+		return longitude / 1e7;
+	}
+
+	/**
+	 * @return the altitude of the current fix in meters, or Double.NaN
+	 */
+	public double getAltitude()
+	{
+		return altitude == TrackRecorder.UNKNOWN ? Double.NaN : altitude / 100.0;
+	}
+
+	/**
+	 * @return the accuracy of the current fix in meters, or Float.NaN
+	 */
+	public float getAccuracy()
+	{
+		return accuracy == TrackRecorder.UNKNOWN ? Float.NaN : accuracy / 100f;
+	}
+
+	/**
+	 * @return the speed of the current fix in meters per second, or Float.NaN
+	 */
+	public float getSpeed()
+	{
+		return speed == TrackRecorder.UNKNOWN ? Float.NaN : speed / 100f;
+	}
+
+	/**
+	 * Closes the file. The reader must not be used afterwards.
+	 *
+	 * @throws java.io.IOException
+	 *             if the file cannot be closed
+	 */
+	public void close() throws IOException
+	{
+		file.close();
+	}
+
+	private boolean isCheckpoint (int pos)
+	{
+		if (limit - pos < TrackRecorder.CHECKPOINT_SIZE || buffer.getLong(pos) != TrackRecorder.SYNC)
+			return false;
+		return buffer.getInt(pos + 36) == TrackRecorder.checksum(buffer.getLong(pos + 8),
+				buffer.getInt(pos + 16), buffer.getInt(pos + 20), buffer.getInt(pos + 24),
+				buffer.getInt(pos + 28), buffer.getInt(pos + 32));
+	}
+
+	/**
+	 * @return the position of the first checkpoint at or after pos, or limit
+	 */
+	private int nextCheckpoint (int pos)
+	{
+		for (; pos < limit; pos++)
+		{
+			if (buffer.get(pos) == (byte) 0xff && isCheckpoint(pos))
+				return pos;
+		}
+		return limit;
+	}
+
+	private void readCheckpoint (int pos)
+	{
+		time = buffer.getLong(pos + 8);
+		latitude = buffer.getInt(pos + 16);
+		longitude = buffer.getInt(pos + 20);
+		altitude = buffer.getInt(pos + 24);
+		accuracy = buffer.getInt(pos + 28);
+		speed = buffer.getInt(pos + 32);
+		position = pos + TrackRecorder.CHECKPOINT_SIZE;
+		synced = true;
+	}
+
+	/**
+	 * Decodes the varints of a delta record in [pos, end).
+	 *
+	 * @return false if the record is malformed
+	 */
+	private boolean readDelta (int pos, int end)
+	{
+		cursor = pos;
+		recordEnd = end;
+		long dt = varint();
+		long dlat = varint();
+		long dlon = varint();
+		long dalt = varint();
+		long dacc = varint();
+		long dspd = varint();
+		if (cursor != end)
+			return false;
+		time += dt;
+		latitude += (int) dlat;
+		longitude += (int) dlon;
+		altitude += (int) dalt;
+		accuracy += (int) dacc;
+		speed += (int) dspd;
+		position = end;
+		return true;
+	}
+
+	/**
+	 * Reads a zigzag varint at cursor. Moves cursor past recordEnd if the
+	 * varint does not end within the record.
+	 */
+	private long varint()
+	{
+		long value = 0;
+		for (int shift = 0; shift < 64 && cursor < recordEnd; shift += 7)
+		{
+			byte b = buffer.get(cursor++);
+			value |= (long) (b & 0x7f) << shift;
+			if (b >= 0)
+				return (value >>> 1) ^ -(value & 1);
+		}
+		cursor = recordEnd + 1;
+		return 0;
+	}
+}
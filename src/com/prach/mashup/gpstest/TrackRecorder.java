@@ -0,0 +1,278 @@
+package com.prach.mashup.gpstest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Appends fixes to a compact binary track file.
+ *
+ * The file starts with an 8 byte header. Every fix is a record of its own:
+ * most records hold the differences to the previous fix as zigzag varints,
+ * prefixed with their length in one byte, which takes about 10 bytes for a
+ * fix per second. Every CHECKPOINT_INTERVAL records, and as the first record
+ * written after opening, the fix is stored as a checkpoint instead: a sync
+ * marker followed by the absolute values and a checksum. A reader can start
+ * decoding at any checkpoint, which gives random access and lets it skip a
+ * damaged region.
+ *
+ * Latitude and longitude are stored in units of 1e-7 degrees, altitude,
+ * accuracy and speed in centimeters and centimeters per second.
+ *
+ * Records are encoded into a byte array and written to the file through a
+ * direct buffer when the array is full, on flush() and on close(), so
+ * appending a fix does not make a system call. When the process dies, the
+ * fixes still in the buffer are lost; a record that was only partly written
+ * is cut off when the file is opened again.
+ *
+ * Instances are not thread safe.
+ *
+ * @see TrackReader
+ */
+public final class TrackRecorder
+{
+	/** Number of records from one checkpoint to the next. */
+	public static final int CHECKPOINT_INTERVAL = 256;
+
+	static final int MAGIC = 0x4b525447; // "GTRK"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 8;
+
+	/** First 8 bytes of a checkpoint; the first byte is never a valid length. */
+	static final long SYNC = 0x4b4f50544b5254ffL;
+	static final int CHECKPOINT_SIZE = 40;
+	/** Longest delta record, including its length byte. */
+	static final int MAX_DELTA_SIZE = 1 + 10 + 5 * 5;
+
+	/** Stored in place of an altitude, accuracy or speed that is unknown. */
+	static final int UNKNOWN = Integer.MIN_VALUE;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private final byte[] bytes = new byte[BUFFER_SIZE];
+	private int count;
+
+	private int sinceCheckpoint = CHECKPOINT_INTERVAL;
+	private long time;
+	private int latitude;
+	private int longitude;
+	private int altitude;
+	private int accuracy;
+	private int speed;
+
+	private TrackRecorder (RandomAccessFile file)
+	{
+		this.file = file;
+		this.channel = file.getChannel();
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	}
+
+	/**
+	 * Opens a track file for appending, creating it if it does not exist. A
+	 * record at the end of the file that was cut short is removed.
+	 *
+	 * @param path
+	 *            the track file
+	 * @return the recorder
+	 * @throws java.io.IOException
+	 *             if the file cannot be opened, or it exists and is not a
+	 *             track file
+	 */
+	public static TrackRecorder open (File path) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(path, "rw");
+		try
+		{
+			TrackRecorder recorder = new TrackRecorder(file);
+			recorder.recover();
+			return recorder;
+		}
+		catch (IOException e)
+		{
+			file.close();
+			throw e;
+		}
+	}
+
+	private void recover() throws IOException
+	{
+		if (channel.size() < HEADER_SIZE)
+		{
+			// new file, or the header never made it to the disk
+			channel.truncate(0);
+			putInt(MAGIC);
+			putInt(VERSION);
+			return;
+		}
+		long end = TrackReader.validLength(channel);
+		if (end < channel.size())
+			channel.truncate(end);
+		channel.position(end);
+	}
+
+	/**
+	 * Appends a fix.
+	 *
+	 * @param time
+	 *            the UTC time of the fix in milliseconds since the epoch
+	 * @param latitude
+	 *            the latitude in degrees
+	 * @param longitude
+	 *            the longitude in degrees
+	 * @param altitude
+	 *            the altitude in meters, or Double.NaN if unknown
+	 * @param accuracy
+	 *            the accuracy in meters, or Float.NaN if unknown
+	 * @param speed
+	 *            the speed in meters per second, or Float.NaN if unknown
+	 * @throws java.io.IOException
+	 *             if the buffer was full and could not be written
+	 */
+	public void append (long time, double latitude, double longitude, double altitude, float accuracy,
+			float speed) throws IOException
+	{
+		if (BUFFER_SIZE - count < CHECKPOINT_SIZE)
+			drain();
+
+		int lat = (int) Math.round(latitude * 1e7);
+		int lon = (int) Math.round(longitude * 1e7);
+		int alt = Double.isNaN(altitude) ? UNKNOWN : (int) Math.round(altitude * 100);
+		int acc = Float.isNaN(accuracy) ? UNKNOWN : Math.round(accuracy * 100);
+		int spd = Float.isNaN(speed) ? UNKNOWN : Math.round(speed * 100);
+
+		if (sinceCheckpoint >= CHECKPOINT_INTERVAL)
+		{
+			putLong(SYNC);
+			putLong(time);
+			putInt(lat);
+			putInt(lon);
+			putInt(alt);
+			putInt(acc);
+			putInt(spd);
+			putInt(checksum(time, lat, lon, alt, acc, spd));
+			sinceCheckpoint = 0;
+		}
+		else
+		{
+			int start = count++;
+			putVarint(zigzag(time - this.time));
+			putVarint(zigzag((long) lat - this.latitude));
+			putVarint(zigzag((long) lon - this.longitude));
+			putVarint(zigzag((long) alt - this.altitude));
+			putVarint(zigzag((long) acc - this.accuracy));
+			putVarint(zigzag((long) spd - this.speed));
+			bytes[start] = (byte) (count - start - 1);
+			sinceCheckpoint++;
+		}
+
+		this.time = time;
+		this.latitude = lat;
+		this.longitude = lon;
+		this.altitude = alt;
+		this.accuracy = acc;
+		this.speed = spd;
+	}
+
+	/**
+	 * Writes the buffered records to the file. The data reaches the operating
+	 * system, which keeps it when the process dies; it is not forced to the
+	 * storage device.
+	 *
+	 * @throws java.io.IOException
+	 *             if the records cannot be written
+	 */
+	public void flush() throws IOException
+	{
+		drain();
+	}
+
+	/**
+	 * Writes the buffered records and closes the file. The recorder must not
+	 * be used afterwards.
+	 *
+	 * @throws java.io.IOException
+	 *             if the records cannot be written or the file cannot be
+	 *             closed
+	 */
+	public void close() throws IOException
+	{
+		try
+		{
+			drain();
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	private void drain() throws IOException
+	{
+		buffer.clear();
+		buffer.put(bytes, 0, count);
+		buffer.flip();
+		count = 0;
+		try
+		{
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		}
+		catch (IOException e)
+		{
+			// part of the buffer may be in the file, restart the deltas
+			sinceCheckpoint = CHECKPOINT_INTERVAL;
+			throw e;
+		}
+	}
+
+	private void putVarint (long v)
+	{
+		byte[] b = bytes;
+		int n = count;
+		while ((v & ~0x7fL) != 0)
+		{
+			b[n++] = (byte) ((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		b[n++] = (byte) v;
+		count = n;
+	}
+
+	private void putInt (int v)
+	{
+		byte[] b = bytes;
+		int n = count;
+		b[n] = (byte) v;
+		b[n + 1] = (byte) (v >>> 8);
+		b[n + 2] = (byte) (v >>> 16);
+		b[n + 3] = (byte) (v >>> 24);
+		count = n + 4;
+	}
+
+	private void putLong (long v)
+	{
+		putInt((int) v);
+		putInt((int) (v >>> 32));
+	}
+
+	private static long zigzag (long v)
+	{
+		return (v << 1) ^ (v >> 63);
+	}
+
+	static int checksum (long time, int lat, int lon, int alt, int acc, int spd)
+	{
+		long h = time;
+		h = h * 31 + lat;
+		h = h * 31 + lon;
+		h = h * 31 + alt;
+		h = h * 31 + acc;
+		h = h * 31 + spd;
+		return (int) (h ^ (h >>> 32));
+	}
+}
@@ -0,0 +1,339 @@
+package com.prach.mashup.gpstest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Reduces a track to the points needed to stay within a tolerance of the
+ * original line, with the Douglas-Peucker algorithm.
+ *
+ * The result is a list of indices into the original arrays, in increasing
+ * order and always including the first and the last point, so the kept
+ * points can be looked up in parallel data such as times or altitudes.
+ *
+ * The points are converted to unit vectors once, and the distance of a
+ * point from a segment is its cross-track distance from the great circle
+ * through the segment, or its distance from the nearer end when it lies
+ * beyond one. This costs three dot products per point and segment and works
+ * anywhere on the earth, including across the antimeridian.
+ *
+ * For large tracks, simplify(double[], double[], int, int, double, int[],
+ * ExecutorService) splits the first levels of the recursion sequentially
+ * and simplifies the resulting parts of the track in parallel.
+ *
+ * @see StreamingSimplifier
+ */
+public final class TrackSimplifier
+{
+	// parts smaller than this are not split up any further for parallel work
+	private static final int MIN_TASK_SIZE = 8192;
+	// number of parts per thread, so that uneven parts still balance out
+	private static final int TASKS_PER_THREAD = 4;
+
+	private TrackSimplifier()
+	{
+	}
+
+	/**
+	 * Simplifies a track.
+	 *
+	 * @param lats
+	 *            the latitudes in degrees
+	 * @param lons
+	 *            the longitudes in degrees
+	 * @param offset
+	 *            the index of the first point in lats and lons
+	 * @param count
+	 *            the number of points
+	 * @param tolerance
+	 *            the largest distance in meters that a dropped point may have
+	 *            from the simplified track
+	 * @param indices
+	 *            receives the indices in lats and lons of the kept points, in
+	 *            increasing order; needs room for count entries in the worst
+	 *            case
+	 * @return the number of kept points
+	 */
+	public static int simplify (double[] lats, double[] lons, int offset, int count, double tolerance,
+			int[] indices)
+	{
+		if (count <= 2)
+			return identity(offset, count, indices);
+		Worker worker = new Worker(count, tolerance);
+		Coordinates.unitVectors(lats, lons, offset, 0, count, worker.xyz);
+		worker.simplify(0, count - 1);
+		return worker.collect(offset, indices);
+	}
+
+	/**
+	 * Simplifies a track in parallel. The result is the same as the one of
+	 * the sequential method.
+	 *
+	 * @param executor
+	 *            runs the parts of the work; its threads are used as they
+	 *            become available
+	 * @throws java.lang.InterruptedException
+	 *             if the thread is interrupted while waiting for the parts
+	 * @see #simplify(double[], double[], int, int, double, int[])
+	 */
+	public static int simplify (double[] lats, double[] lons, int offset, int count, double tolerance,
+			int[] indices, ExecutorService executor) throws InterruptedException
+	{
+		if (count < 2 * MIN_TASK_SIZE)
+			return simplify(lats, lons, offset, count, tolerance, indices);
+		int tasks = TASKS_PER_THREAD * Runtime.getRuntime().availableProcessors();
+		Worker worker = new Worker(count, tolerance);
+
+		// convert to unit vectors in slices
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		int slice = (count + tasks - 1) / tasks;
+		for (int from = 0; from < count; from += slice)
+			futures.add(executor.submit(worker.projectTask(lats, lons, offset, from, Math.min(from + slice, count))));
+		Tasks.await(futures);
+
+		// split sequentially until there are enough parts, breadth first so
+		// that the parts are of similar size
+		int[] queue = new int[2 * tasks + 2];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = 0;
+		queue[tail++] = count - 1;
+		while (head < tail)
+		{
+			int lo = queue[head++];
+			int hi = queue[head++];
+			int pending = futures.size() + (tail - head) / 2;
+			if (hi - lo < MIN_TASK_SIZE || pending >= tasks || tail + 4 > queue.length)
+			{
+				futures.add(executor.submit(worker.simplifyTask(lo, hi)));
+				continue;
+			}
+			int split = worker.split(lo, hi);
+			if (split < 0)
+				continue;
+			worker.keep[split] = true;
+			if (head >= 4)
+			{
+				// compact the queue
+				System.arraycopy(queue, head, queue, 0, tail - head);
+				tail -= head;
+				head = 0;
+			}
+			queue[tail++] = lo;
+			queue[tail++] = split;
+			queue[tail++] = split;
+			queue[tail++] = hi;
+		}
+		Tasks.await(futures);
+		return worker.collect(offset, indices);
+	}
+
+	private static int identity (int offset, int count, int[] indices)
+	{
+		for (int i = 0; i < count; i++)
+			indices[i] = offset + i;
+		return count;
+	}
+
+	/**
+	 * @return the threshold for Segment.distance() that corresponds to a
+	 *         tolerance in meters
+	 */
+	static double threshold (double tolerance)
+	{
+		return Math.sin(Math.min(tolerance / Coordinates.EARTH_RADIUS, Math.PI / 2));
+	}
+
+	/**
+	 * Unit vectors and kept flags of one track. Parts of the track that do
+	 * not overlap, except for their end points, can be simplified by
+	 * different threads.
+	 */
+	private static final class Worker
+	{
+		final double[] xyz;
+		final boolean[] keep;
+		final double threshold;
+		final Segment segment = new Segment();
+
+		Worker (int count, double tolerance)
+		{
+			xyz = new double[3 * count];
+			keep = new boolean[count];
+			keep[0] = true;
+			keep[count - 1] = true;
+			threshold = threshold(tolerance);
+		}
+
+		/**
+		 * Shares the arrays of another worker, with a segment of its own.
+		 */
+		Worker (Worker shared)
+		{
+			xyz = shared.xyz;
+			keep = shared.keep;
+			threshold = shared.threshold;
+		}
+
+		Callable<Void> projectTask (final double[] lats, final double[] lons, final int offset, final int from,
+				final int to)
+		{
+			return new Callable<Void>()
+			{
+				public Void call()
+				{
+					Coordinates.unitVectors(lats, lons, offset, from, to, xyz);
+					return null;
+				}
+			};
+		}
+
+		Callable<Void> simplifyTask (final int lo, final int hi)
+		{
+			return new Callable<Void>()
+			{
+				public Void call()
+				{
+					// every task needs its own segment
+					new Worker(Worker.this).simplify(lo, hi);
+					return null;
+				}
+			};
+		}
+
+		/**
+		 * Finds the point in (lo, hi) farthest from the segment from lo to hi.
+		 *
+		 * @return its index if it is beyond the tolerance, otherwise -1
+		 */
+		int split (int lo, int hi)
+		{
+			double[] p = xyz;
+			segment.set(p[3 * lo], p[3 * lo + 1], p[3 * lo + 2], p[3 * hi], p[3 * hi + 1], p[3 * hi + 2]);
+			double max = threshold;
+			int index = -1;
+			for (int i = lo + 1; i < hi; i++)
+			{
+				double d = segment.distance(p[3 * i], p[3 * i + 1], p[3 * i + 2]);
+				if (d > max)
+				{
+					max = d;
+					index = i;
+				}
+			}
+			return index;
+		}
+
+		/**
+		 * Simplifies the points between lo and hi, which are both kept.
+		 */
+		void simplify (int lo, int hi)
+		{
+			int[] stack = new int[64];
+			int top = 0;
+			stack[top++] = lo;
+			stack[top++] = hi;
+			while (top > 0)
+			{
+				hi = stack[--top];
+				lo = stack[--top];
+				if (hi - lo < 2)
+					continue;
+				int split = split(lo, hi);
+				if (split < 0)
+					continue;
+				keep[split] = true;
+				if (top + 4 > stack.length)
+				{
+					int[] larger = new int[2 * stack.length];
+					System.arraycopy(stack, 0, larger, 0, top);
+					stack = larger;
+				}
+				stack[top++] = lo;
+				stack[top++] = split;
+				stack[top++] = split;
+				stack[top++] = hi;
+			}
+		}
+
+		int collect (int offset, int[] indices)
+		{
+			int n = 0;
+			for (int i = 0; i < keep.length; i++)
+			{
+				if (keep[i])
+					indices[n++] = offset + i;
+			}
+			return n;
+		}
+	}
+
+	/**
+	 * Distance of unit vectors from a great circle segment, as the sine of
+	 * the angle. For points beyond an end of the segment the distance from
+	 * that end is used.
+	 */
+	static final class Segment
+	{
+		private double ax, ay, az;
+		private double bx, by, bz;
+		// unit normal of the great circle
+		private double nx, ny, nz;
+		// normals of the planes through the ends that bound the segment
+		private double ux, uy, uz;
+		private double wx, wy, wz;
+		private boolean degenerate;
+
+		void set (double ax, double ay, double az, double bx, double by, double bz)
+		{
+			this.ax = ax;
+			this.ay = ay;
+			this.az = az;
+			this.bx = bx;
+			this.by = by;
+			this.bz = bz;
+			double x = ay * bz - az * by;
+			double y = az * bx - ax * bz;
+			double z = ax * by - ay * bx;
+			double length = Math.sqrt(x * x + y * y + z * z);
+			degenerate = length < 1e-15;
+			if (degenerate)
+				return;
+			nx = x / length;
+			ny = y / length;
+			nz = z / length;
+			// n x a and b x n point into the segment from a and from b
+			ux = ny * az - nz * ay;
+			uy = nz * ax - nx * az;
+			uz = nx * ay - ny * ax;
+			wx = by * nz - bz * ny;
+			wy = bz * nx - bx * nz;
+			wz = bx * ny - by * nx;
+		}
+
+		double distance (double px, double py, double pz)
+		{
+			if (!degenerate && px * ux + py * uy + pz * uz >= 0 && px * wx + py * wy + pz * wz >= 0)
+				return Math.abs(px * nx + py * ny + pz * nz);
+			double da = chord2(px - ax, py - ay, pz - az);
+			double db = chord2(px - bx, py - by, pz - bz);
+			return sine(degenerate ? da : Math.min(da, db));
+		}
+
+		private static double chord2 (double dx, double dy, double dz)
+		{
+			return dx * dx + dy * dy + dz * dz;
+		}
+
+		/**
+		 * Sine of the angle between two unit vectors from their squared chord.
+		 */
+		private static double sine (double chord2)
+		{
+			return Math.sqrt(chord2 * (1 - chord2 / 4));
+		}
+	}
+}
@@ -0,0 +1,324 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * Accumulates the statistics of a track one fix at a time, in constant time
+ * and memory: distance, elapsed and moving time, average and maximum speed,
+ * the current bearing and the elevation gain and loss.
+ *
+ * Distances and bearings are geodetic, from GeodeticOrigin. A segment
+ * between two fixes counts as moving when its speed reaches the minimum
+ * speed. The average speed is the distance of the moving segments over
+ * their time, so pauses neither lower it nor, with the position noise of a
+ * device standing still, raise it. The distance includes all segments.
+ * Changes of altitude smaller than the elevation threshold
+ * are treated as noise: the gain or loss is only counted once the altitude
+ * has moved at least the threshold away from the last counted altitude.
+ *
+ * Two accumulators for consecutive parts of a track can be combined with
+ * merge(TrackStats), so a long track can be summarized in parallel. The
+ * result is the same as for a single accumulator, except that the elevation
+ * gain and loss may differ by less than the threshold at each join.
+ *
+ * Instances are not thread safe.
+ */
+public final class TrackStats
+{
+	/** Default minimum speed of a moving segment in meters per second. */
+	public static final double DEFAULT_MIN_SPEED = 0.5;
+
+	/** Default elevation threshold in meters. */
+	public static final double DEFAULT_ELEVATION_THRESHOLD = 5;
+
+	private final double minSpeed;
+	private final double elevationThreshold;
+	private final GeodeticOrigin origin = new GeodeticOrigin(0, 0);
+
+	private int count;
+	private long firstTime;
+	private double firstLatitude;
+	private double firstLongitude;
+	// first altitude that is known, where merge() joins the elevation
+	private double firstAltitude = Double.NaN;
+	private long lastTime;
+	private double lastLatitude;
+	private double lastLongitude;
+
+	private double distance;
+	private double movingDistance;
+	private long movingTime;
+	private double maxSpeed;
+	private double bearing = Double.NaN;
+	private double gain;
+	private double loss;
+	// last altitude at which gain or loss was counted
+	private double reference = Double.NaN;
+
+	/**
+	 * Constructs an accumulator with the default minimum speed and elevation
+	 * threshold.
+	 */
+	public TrackStats()
+	{
+		this(DEFAULT_MIN_SPEED, DEFAULT_ELEVATION_THRESHOLD);
+	}
+
+	/**
+	 * @param minSpeed
+	 *            the minimum speed of a moving segment in meters per second
+	 * @param elevationThreshold
+	 *            the smallest change of altitude in meters that is counted
+	 * @throws java.lang.IllegalArgumentException
+	 *             if a parameter is negative
+	 */
+	public TrackStats (double minSpeed, double elevationThreshold)
+	{
+		if (!(minSpeed >= 0))
+			throw new IllegalArgumentException("minSpeed: " + minSpeed);
+		if (!(elevationThreshold >= 0))
+			throw new IllegalArgumentException("elevationThreshold: " + elevationThreshold);
+		this.minSpeed = minSpeed;
+		this.elevationThreshold = elevationThreshold;
+	}
+
+	/**
+	 * Adds the next fix of the track. A fix that is not newer than the
+	 * previous one is ignored.
+	 *
+	 * @param time
+	 *            the time of the fix in milliseconds
+	 * @param latitude
+	 *            the latitude in degrees
+	 * @param longitude
+	 *            the longitude in degrees
+	 * @param altitude
+	 *            the altitude in meters, or Double.NaN if unknown
+	 * @param speed
+	 *            the speed reported with the fix in meters per second, or
+	 *            Float.NaN if unknown
+	 */
+	public void add (long time, double latitude, double longitude, double altitude, float speed)
+	{
+		if (count == 0)
+		{
+			firstTime = time;
+			firstLatitude = latitude;
+			firstLongitude = longitude;
+		}
+		else
+		{
+			if (time <= lastTime)
+				return;
+			segment(lastTime, lastLatitude, lastLongitude, time, latitude, longitude);
+		}
+		if (!Float.isNaN(speed) && speed > maxSpeed)
+			maxSpeed = speed;
+		if (Double.isNaN(firstAltitude))
+			firstAltitude = altitude;
+		elevation(altitude);
+
+		count++;
+		lastTime = time;
+		lastLatitude = latitude;
+		lastLongitude = longitude;
+	}
+
+	/**
+	 * Appends the statistics of the part of the track that follows this one.
+	 * The segment from the last fix of this part to the first fix of the
+	 * other part is added as well. The other accumulator is not changed.
+	 *
+	 * @param other
+	 *            the statistics of the following part
+	 * @throws java.lang.IllegalArgumentException
+	 *             if the other part starts before this one ends
+	 */
+	public void merge (TrackStats other)
+	{
+		if (other.count == 0)
+			return;
+		if (count == 0)
+		{
+			copy(other);
+			return;
+		}
+		if (other.firstTime <= lastTime)
+			throw new IllegalArgumentException("other does not follow this track");
+
+		segment(lastTime, lastLatitude, lastLongitude, other.firstTime, other.firstLatitude, other.firstLongitude);
+		// the other part counted its elevation from its first known altitude
+		if (Double.isNaN(firstAltitude))
+			firstAltitude = other.firstAltitude;
+		elevation(other.firstAltitude);
+		if (!Double.isNaN(other.reference))
+			reference = other.reference;
+
+		count += other.count;
+		distance += other.distance;
+		movingDistance += other.movingDistance;
+		movingTime += other.movingTime;
+		maxSpeed = Math.max(maxSpeed, other.maxSpeed);
+		if (!Double.isNaN(other.bearing))
+			bearing = other.bearing;
+		gain += other.gain;
+		loss += other.loss;
+		lastTime = other.lastTime;
+		lastLatitude = other.lastLatitude;
+		lastLongitude = other.lastLongitude;
+	}
+
+	/**
+	 * Forgets all fixes.
+	 */
+	public void reset()
+	{
+		count = 0;
+		firstAltitude = Double.NaN;
+		distance = 0;
+		movingDistance = 0;
+		movingTime = 0;
+		maxSpeed = 0;
+		bearing = Double.NaN;
+		gain = 0;
+		loss = 0;
+		reference = Double.NaN;
+	}
+
+	private void segment (long time1, double lat1, double lon1, long time2, double lat2, double lon2)
+	{
+		origin.setOrigin(lat1, lon1);
+		double d = origin.distance(lat2, lon2);
+		long dt = time2 - time1;
+		double speed = d * 1000 / dt;
+		distance += d;
+		if (speed >= minSpeed)
+		{
+			movingDistance += d;
+			movingTime += dt;
+			if (d > 0)
+				bearing = origin.azimuth(lat2, lon2);
+		}
+		if (speed > maxSpeed)
+			maxSpeed = speed;
+	}
+
+	private void elevation (double altitude)
+	{
+		if (Double.isNaN(altitude))
+			return;
+		if (Double.isNaN(reference))
+			reference = altitude;
+		else if (altitude - reference >= elevationThreshold)
+		{
+			gain += altitude - reference;
+			reference = altitude;
+		}
+		else if (reference - altitude >= elevationThreshold)
+		{
+			loss += reference - altitude;
+			reference = altitude;
+		}
+	}
+
+	private void copy (TrackStats other)
+	{
+		count = other.count;
+		firstTime = other.firstTime;
+		firstLatitude = other.firstLatitude;
+		firstLongitude = other.firstLongitude;
+		firstAltitude = other.firstAltitude;
+		lastTime = other.lastTime;
+		lastLatitude = other.lastLatitude;
+		lastLongitude = other.lastLongitude;
+		distance = other.distance;
+		movingDistance = other.movingDistance;
+		movingTime = other.movingTime;
+		maxSpeed = other.maxSpeed;
+		bearing = other.bearing;
+		gain = other.gain;
+		loss = other.loss;
+		reference = other.reference;
+	}
+
+	/**
+	 * @return the number of fixes
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * @return the distance along the track in meters
+	 */
+	public double getDistance()
+	{
+		return distance;
+	}
+
+	/**
+	 * @return the time from the first to the last fix in milliseconds
+	 */
+	public long getElapsedTime()
+	{
+		return count == 0 ? 0 : lastTime - firstTime;
+	}
+
+	/**
+	 * @return the time spent in moving segments in milliseconds
+	 */
+	public long getMovingTime()
+	{
+		return movingTime;
+	}
+
+	/**
+	 * @return the distance of the moving segments in meters
+	 */
+	public double getMovingDistance()
+	{
+		return movingDistance;
+	}
+
+	/**
+	 * @return the moving distance over the moving time in meters per second,
+	 *         or 0 if there was no moving segment
+	 */
+	public double getAverageSpeed()
+	{
+		return movingTime == 0 ? 0 : movingDistance * 1000 / movingTime;
+	}
+
+	/**
+	 * @return the largest speed reported with a fix or measured over a
+	 *         segment, in meters per second
+	 */
+	public double getMaxSpeed()
+	{
+		return maxSpeed;
+	}
+
+	/**
+	 * @return the initial azimuth of the last moving segment in degrees,
+	 *         within [0.0, 360.0), or Double.NaN if there was none
+	 */
+	public double getBearing()
+	{
+		return bearing;
+	}
+
+	/**
+	 * @return the elevation gain in meters
+	 */
+	public double getElevationGain()
+	{
+		return gain;
+	}
+
+	/**
+	 * @return the elevation loss in meters, as a positive number
+	 */
+	public double getElevationLoss()
+	{
+		return loss;
+	}
+}
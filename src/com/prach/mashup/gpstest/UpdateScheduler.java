@@ -0,0 +1,226 @@
+package com.prach.mashup.gpstest;
+
+/**
+ * Chooses the interval and the minimum distance of location updates from
+ * the observed speed, the accuracy of the fixes and a caller-requested mode,
+ * and registers them through a LocationRegistrar.
+ *
+ * A device is classified as stationary, walking or driving from its smoothed
+ * speed, with hysteresis so that a speed near a threshold does not flip the
+ * state back and forth. Stationary devices are polled rarely and moving ones
+ * densely. The minimum distance is never below half the reported accuracy,
+ * so position noise alone does not produce updates. The registrar is only
+ * called again when the parameters actually change.
+ *
+ * Times are in milliseconds. Instances are not thread safe.
+ */
+public final class UpdateScheduler
+{
+	/** Few updates, for callers that only need a rough position. */
+	public static final int MODE_LOW_POWER = 0;
+	/** The default trade-off. */
+	public static final int MODE_BALANCED = 1;
+	/** Dense updates for tracking. */
+	public static final int MODE_HIGH_ACCURACY = 2;
+
+	static final int STATIONARY = 0;
+	static final int WALKING = 1;
+	static final int DRIVING = 2;
+
+	// speed thresholds in m/s to enter WALKING and DRIVING
+	private static final float[] ENTER_SPEED = { 0, 0.7f, 4.0f };
+	// a state is left when the speed drops below this fraction of its threshold
+	private static final float HYSTERESIS = 0.6f;
+	// weight of a new speed sample in the smoothed speed
+	private static final float SMOOTHING = 0.3f;
+
+	// base interval and minimum distance for each state in BALANCED mode
+	private static final long[] INTERVAL = { 60000, 10000, 2000 };
+	private static final float[] DISTANCE = { 50, 10, 20 };
+
+	private static final long MIN_INTERVAL = 1000;
+	private static final float MAX_ACCURACY_DISTANCE = 100;
+
+	private final LocationRegistrar registrar;
+	private int mode;
+	private boolean started;
+
+	private int state = WALKING;
+	private float speed = Float.NaN;
+	private float accuracy = Float.NaN;
+	private long lastTime;
+	private double lastLatitude = Double.NaN;
+	private double lastLongitude;
+
+	private long minTime = -1;
+	private float minDistance = -1;
+	private int registrations;
+
+	/**
+	 * @param registrar
+	 *            receives the registrations
+	 * @param mode
+	 *            MODE_LOW_POWER, MODE_BALANCED or MODE_HIGH_ACCURACY
+	 * @throws java.lang.IllegalArgumentException
+	 *             if the mode is unknown
+	 */
+	public UpdateScheduler (LocationRegistrar registrar, int mode)
+	{
+		this.registrar = registrar;
+		setMode(mode);
+	}
+
+	/**
+	 * Registers with the parameters for the current state. Until the first
+	 * fix the device is assumed to be walking.
+	 */
+	public void start()
+	{
+		started = true;
+		minTime = -1;
+		update();
+	}
+
+	/**
+	 * Removes the registration. The observed state is kept for the next
+	 * start().
+	 */
+	public void stop()
+	{
+		if (started)
+			registrar.removeUpdates();
+		started = false;
+	}
+
+	/**
+	 * Forgets the previous fix and the smoothed speed, for fixes that start
+	 * over on an earlier time line, such as a replay. The state and the
+	 * registration are kept until the next fix.
+	 */
+	public void reset()
+	{
+		speed = Float.NaN;
+		lastTime = 0;
+		lastLatitude = Double.NaN;
+	}
+
+	/**
+	 * Changes the requested mode and re-registers if that changes the
+	 * parameters.
+	 *
+	 * @throws java.lang.IllegalArgumentException
+	 *             if the mode is unknown
+	 */
+	public void setMode (int mode)
+	{
+		if (mode < MODE_LOW_POWER || mode > MODE_HIGH_ACCURACY)
+			throw new IllegalArgumentException("mode: " + mode);
+		this.mode = mode;
+		update();
+	}
+
+	/**
+	 * Reports a fix. If the provider does not report a speed, it is derived
+	 * from the distance to the previous fix.
+	 *
+	 * @param time
+	 *            the time of the fix in milliseconds
+	 * @param latitude
+	 *            the latitude in degrees
+	 * @param longitude
+	 *            the longitude in degrees
+	 * @param speed
+	 *            the speed in m/s, or Float.NaN if unknown
+	 * @param accuracy
+	 *            the accuracy in meters, or Float.NaN if unknown
+	 */
+	public void onFix (long time, double latitude, double longitude, float speed, float accuracy)
+	{
+		if (Float.isNaN(speed) && !Double.isNaN(lastLatitude) && time > lastTime)
+		{
+			double lat1 = Math.toRadians(lastLatitude);
+			double lat2 = Math.toRadians(latitude);
+			double distance = Coordinates.haversine(lat1, Math.cos(lat1), lat2, Math.cos(lat2),
+					Math.toRadians(longitude - lastLongitude), Float11.TIER_PRECISE);
+			speed = (float) (distance * 1000 / (time - lastTime));
+		}
+		lastTime = time;
+		lastLatitude = latitude;
+		lastLongitude = longitude;
+		this.accuracy = accuracy;
+
+		if (!Float.isNaN(speed))
+		{
+			this.speed = Float.isNaN(this.speed) ? speed : this.speed + SMOOTHING * (speed - this.speed);
+			state = classify(state, this.speed);
+		}
+		update();
+	}
+
+	/**
+	 * @return the registered interval in milliseconds, or -1 before start()
+	 */
+	public long getMinTime()
+	{
+		return minTime;
+	}
+
+	/**
+	 * @return the registered minimum distance in meters, or -1 before start()
+	 */
+	public float getMinDistance()
+	{
+		return minDistance;
+	}
+
+	/**
+	 * @return how often the registrar was asked to register
+	 */
+	public int getRegistrations()
+	{
+		return registrations;
+	}
+
+	static int classify (int state, float speed)
+	{
+		// move up as soon as a threshold is crossed
+		while (state < DRIVING && speed >= ENTER_SPEED[state + 1])
+			state++;
+		// move down only well below the threshold of the current state
+		while (state > STATIONARY && speed < ENTER_SPEED[state] * HYSTERESIS)
+			state--;
+		return state;
+	}
+
+	private void update()
+	{
+		if (!started)
+			return;
+
+		long time = INTERVAL[state];
+		float distance = DISTANCE[state];
+		if (mode == MODE_LOW_POWER)
+		{
+			time *= 3;
+			distance *= 2;
+		}
+		else if (mode == MODE_HIGH_ACCURACY)
+		{
+			time = Math.max(MIN_INTERVAL, time / 2);
+			distance = state == STATIONARY ? distance / 2 : 0;
+		}
+		if (accuracy > 0)
+			distance = Math.max(distance, Math.min(accuracy, MAX_ACCURACY_DISTANCE) / 2);
+
+		// a few meters of accuracy change should not cause a re-registration
+		distance = (float) Math.ceil(distance / 5) * 5;
+
+		if (time != minTime || distance != minDistance)
+		{
+			minTime = time;
+			minDistance = distance;
+			registrations++;
+			registrar.requestUpdates(time, distance);
+		}
+	}
+}
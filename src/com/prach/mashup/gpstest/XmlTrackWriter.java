@@ -0,0 +1,225 @@
+package com.prach.mashup.gpstest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The output of GpxWriter and KmlWriter: UTF-8 encoded markup is collected
+ * in a byte array of fixed size that is written to the stream, optionally
+ * through gzip, whenever it is full, so the memory used does not grow with
+ * the track and the stream is called once per chunk rather than once per
+ * fix. Numbers and times are written straight into the array.
+ */
+abstract class XmlTrackWriter implements Closeable
+{
+	private static final int CHUNK_SIZE = 8192;
+	/** Room kept for a number or time written directly into the chunk. */
+	private static final int MAX_NUMBER_LENGTH = 24;
+	/** Values with more digits before the point are not written by number(). */
+	private static final double MAX_NUMBER = 1e12;
+
+	private final OutputStream out;
+	private final GZIPOutputStream gzip;
+	private final byte[] chunk = new byte[CHUNK_SIZE];
+	private final char[] digits = new char[CoordinateFormat.MAX_LENGTH];
+	private int pos;
+	private boolean closed;
+
+	/**
+	 * @param out
+	 *            receives the document
+	 * @param gzip
+	 *            whether to compress the document with gzip
+	 * @throws java.io.IOException
+	 *             if the gzip header cannot be written
+	 */
+	XmlTrackWriter (OutputStream out, boolean gzip) throws IOException
+	{
+		this.gzip = gzip ? new GZIPOutputStream(out, CHUNK_SIZE) : null;
+		this.out = gzip ? this.gzip : out;
+	}
+
+	/**
+	 * Writes the end of the document.
+	 */
+	abstract void footer() throws IOException;
+
+	/**
+	 * Writes the end of the document and closes the stream.
+	 *
+	 * @throws java.io.IOException
+	 *             if the stream fails
+	 */
+	public final void close() throws IOException
+	{
+		if (closed)
+			return;
+		closed = true;
+		try
+		{
+			footer();
+			flushChunk();
+			if (gzip != null)
+				gzip.finish();
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes markup that is known to be ASCII, without escaping.
+	 */
+	final void ascii (byte[] markup) throws IOException
+	{
+		if (pos + markup.length > CHUNK_SIZE)
+		{
+			flushChunk();
+			if (markup.length > CHUNK_SIZE)
+			{
+				out.write(markup);
+				return;
+			}
+		}
+		System.arraycopy(markup, 0, chunk, pos, markup.length);
+		pos += markup.length;
+	}
+
+	/**
+	 * Writes text as escaped UTF-8. Characters that XML does not allow are
+	 * replaced by '?'.
+	 */
+	final void text (String text) throws IOException
+	{
+		for (int i = 0; i < text.length(); i++)
+		{
+			if (pos > CHUNK_SIZE - 6)
+				flushChunk();
+			char c = text.charAt(i);
+			if (c == '<')
+				pos = append(chunk, pos, "&lt;");
+			else if (c == '>')
+				pos = append(chunk, pos, "&gt;");
+			else if (c == '&')
+				pos = append(chunk, pos, "&amp;");
+			else if (c == '"')
+				pos = append(chunk, pos, "&quot;");
+			else if (c < 0x80)
+				chunk[pos++] = (byte) (c >= ' ' || c == '\t' || c == '\n' || c == '\r' ? c : '?');
+			else if (c < 0x800)
+			{
+				chunk[pos++] = (byte) (0xc0 | c >> 6);
+				chunk[pos++] = (byte) (0x80 | c & 0x3f);
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+					&& Character.isLowSurrogate(text.charAt(i + 1)))
+			{
+				int cp = Character.toCodePoint(c, text.charAt(++i));
+				chunk[pos++] = (byte) (0xf0 | cp >> 18);
+				chunk[pos++] = (byte) (0x80 | cp >> 12 & 0x3f);
+				chunk[pos++] = (byte) (0x80 | cp >> 6 & 0x3f);
+				chunk[pos++] = (byte) (0x80 | cp & 0x3f);
+			}
+			else if ((c >= 0xd800 && c <= 0xdfff) || c >= 0xfffe)
+				chunk[pos++] = '?';
+			else
+			{
+				chunk[pos++] = (byte) (0xe0 | c >> 12);
+				chunk[pos++] = (byte) (0x80 | c >> 6 & 0x3f);
+				chunk[pos++] = (byte) (0x80 | c & 0x3f);
+			}
+		}
+	}
+
+	/**
+	 * Writes a coordinate as CoordinateFormat.formatDecimal() does.
+	 */
+	final void coordinate (double coordinate) throws IOException
+	{
+		ensureRoom();
+		int n = CoordinateFormat.formatDecimal(coordinate, digits, 0);
+		for (int i = 0; i < n; i++)
+			chunk[pos + i] = (byte) digits[i];
+		pos += n;
+	}
+
+	/**
+	 * Writes a number rounded to centimeters, such as an altitude in meters,
+	 * without trailing zeros but with at least one decimal.
+	 *
+	 * @throws java.lang.IllegalArgumentException
+	 *             if the value is Double.NaN or has more than 12 digits before
+	 *             the point
+	 */
+	final void number (double value) throws IOException
+	{
+		if (!(Math.abs(value) < MAX_NUMBER))
+			throw new IllegalArgumentException("Number out of range: " + value);
+		ensureRoom();
+		long t = Math.round(Math.abs(value) * 100);
+		if (value < 0 && t != 0)
+			chunk[pos++] = '-';
+		long whole = t / 100;
+		int start = pos;
+		do
+		{
+			chunk[pos++] = (byte) ('0' + whole % 10);
+			whole /= 10;
+		}
+		while (whole != 0);
+		for (int i = start, j = pos - 1; i < j; i++, j--)
+		{
+			byte b = chunk[i];
+			chunk[i] = chunk[j];
+			chunk[j] = b;
+		}
+		chunk[pos++] = '.';
+		int cents = (int) (t % 100);
+		chunk[pos++] = (byte) ('0' + cents / 10);
+		if (cents % 10 != 0)
+			chunk[pos++] = (byte) ('0' + cents % 10);
+	}
+
+	/**
+	 * Writes a time in ISO 8601 form, as IsoTime.format() does.
+	 */
+	final void time (long millis) throws IOException
+	{
+		ensureRoom();
+		pos += IsoTime.format(millis, chunk, pos);
+	}
+
+	/**
+	 * @return the bytes of ASCII markup, for the constants of the writers
+	 */
+	static byte[] markup (String markup)
+	{
+		byte[] bytes = new byte[markup.length()];
+		append(bytes, 0, markup);
+		return bytes;
+	}
+
+	private void ensureRoom() throws IOException
+	{
+		if (pos > CHUNK_SIZE - MAX_NUMBER_LENGTH)
+			flushChunk();
+	}
+
+	private void flushChunk() throws IOException
+	{
+		if (pos == 0)
+			return;
+		out.write(chunk, 0, pos);
+		pos = 0;
+	}
+
+	private static int append (byte[] buf, int pos, String ascii)
+	{
+		for (int i = 0; i < ascii.length(); i++)
+			buf[pos++] = (byte) ascii.charAt(i);
+		return pos;
+	}
+}